@@ -3,9 +3,11 @@ package com.example.config;
 import com.example.qualifier.CodingModel;
 import com.example.qualifier.ReviewModel;
 import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.ollama.OllamaChatModel;
 import dev.langchain4j.model.ollama.OllamaEmbeddingModel;
+import dev.langchain4j.model.ollama.OllamaStreamingChatModel;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
@@ -25,6 +27,12 @@ public class OllamaConfig {
     @ConfigProperty(name = "ollama.review.model")
     String reviewModelName;
 
+    @ConfigProperty(name = "ollama.review.structured-output", defaultValue = "false")
+    boolean reviewStructuredOutput;
+
+    @ConfigProperty(name = "ollama.review.context-tokens", defaultValue = "8192")
+    int reviewContextTokens;
+
     @Produces
     @ApplicationScoped
     public EmbeddingModel embeddingModel() {
@@ -48,9 +56,25 @@ public class OllamaConfig {
     @ApplicationScoped
     @ReviewModel
     public ChatLanguageModel reviewModel() {
+        // Ollama's JSON mode constrains decoding to valid JSON; the schema itself is given in the prompt.
+        // The context size is set explicitly so it matches the budget the review prompt is compacted to.
         return OllamaChatModel.builder()
                 .baseUrl(baseUrl)
                 .modelName(reviewModelName)
+                .format(reviewStructuredOutput ? "json" : null)
+                .numCtx(reviewContextTokens)
+                .build();
+    }
+
+    @Produces
+    @ApplicationScoped
+    @ReviewModel
+    public StreamingChatLanguageModel reviewStreamingModel() {
+        return OllamaStreamingChatModel.builder()
+                .baseUrl(baseUrl)
+                .modelName(reviewModelName)
+                .format(reviewStructuredOutput ? "json" : null)
+                .numCtx(reviewContextTokens)
                 .build();
     }
 }
\ No newline at end of file
@@ -1,16 +1,49 @@
 package com.example.controller;
 
+import com.example.dto.AnalysisJob;
 import com.example.dto.CodeImplementation;
 import com.example.dto.FeedbackResponse;
 import com.example.dto.Requirement;
+import com.example.dto.RequirementMatch;
+import com.example.service.AdmissionRejectedException;
+import com.example.service.AnalysisCoalescer;
+import com.example.service.AnalysisException;
+import com.example.service.AnalysisJobService;
 import com.example.service.CodeAnalysisService;
+import com.example.service.EmbeddingCache;
 import com.example.service.EmbeddingService;
+import com.example.service.LexicalRequirementIndex;
+import com.example.service.ModelAdmissionService;
+import com.example.service.PromptBudgetService;
+import com.example.service.RequestPriority;
+import com.example.service.RequirementCache;
+import com.example.service.RequirementFilter;
+import com.example.service.RequirementIdIndex;
+import com.example.service.RequirementSearchService;
+import com.example.service.ReviewCache;
+import com.example.service.ReviewResponseParser;
+import com.example.service.ReviewStreamListener;
+import com.example.service.StructuralAnalysisService;
+import com.example.service.VectorIndexMigration;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
 @Path("/api")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
@@ -22,31 +55,78 @@ public class AnalysisController {
     @Inject
     CodeAnalysisService codeAnalysisService;
 
+    @Inject
+    RequirementCache requirementCache;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    EmbeddingCache embeddingCache;
+
+    @Inject
+    ReviewCache reviewCache;
+
+    @Inject
+    AnalysisCoalescer analysisCoalescer;
+
+    @Inject
+    AnalysisJobService analysisJobService;
+
+    @Inject
+    ModelAdmissionService modelAdmissionService;
+
+    @Inject
+    ReviewResponseParser reviewResponseParser;
+
+    @Inject
+    PromptBudgetService promptBudgetService;
+
+    @Inject
+    StructuralAnalysisService structuralAnalysisService;
+
+    @Inject
+    RequirementIdIndex requirementIdIndex;
+
+    @Inject
+    RequirementSearchService requirementSearchService;
+
+    @Inject
+    LexicalRequirementIndex lexicalRequirementIndex;
+
+    @Inject
+    VectorIndexMigration vectorIndexMigration;
+
     @ConfigProperty(name = "app.max-code-size")
     int maxCodeSize;
 
     @ConfigProperty(name = "app.supported-languages")
     String supportedLanguages;
 
+    @ConfigProperty(name = "app.search.max-results", defaultValue = "20")
+    int maxSearchResults;
+
+    @ConfigProperty(name = "app.jobs.max-wait-seconds", defaultValue = "60")
+    int maxJobWaitSeconds;
+
+    @ConfigProperty(name = "app.jobs.retry-after-seconds", defaultValue = "30")
+    int jobRetryAfterSeconds;
+
     @POST
     @Path("/requirements")
     public Response storeRequirement(Requirement requirement) {
         try {
-            if (requirement.getContent() == null || requirement.getContent().trim().isEmpty()) {
-                return Response.status(Response.Status.BAD_REQUEST)
-                        .entity("{\"error\": \"Requirement content cannot be empty\"}")
-                        .build();
-            }
-
-            if (requirement.getMetadata() == null ||
-                    (!requirement.getMetadata().equals("Req") && !requirement.getMetadata().equals("Def"))) {
-                return Response.status(Response.Status.BAD_REQUEST)
-                        .entity("{\"error\": \"Metadata must be either 'Req' or 'Def'\"}")
-                        .build();
+            Response invalid = validateRequirement(requirement);
+            if (invalid != null) {
+                return invalid;
             }
 
             String id = embeddingService.storeRequirement(requirement);
             return Response.ok().entity("{\"id\": \"" + id + "\"}").build();
+        } catch (AnalysisException e) {
+            return Response.status(e.getStatus())
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"Failed to store requirement: " + e.getMessage() + "\"}")
@@ -54,11 +134,66 @@ public class AnalysisController {
         }
     }
 
+    /**
+     * Replaces a requirement of the body's tenant; only chunks whose content changed are embedded again.
+     */
+    @PUT
+    @Path("/requirements/{id}")
+    public Response updateRequirement(@PathParam("id") String id, Requirement requirement) {
+        try {
+            Response invalid = validateRequirement(requirement);
+            if (invalid != null) {
+                return invalid;
+            }
+
+            requirement.setId(id);
+            embeddingService.storeRequirement(requirement);
+            return Response.ok().entity("{\"id\": \"" + id + "\"}").build();
+        } catch (AnalysisException e) {
+            return Response.status(e.getStatus())
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
+        } catch (Exception e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Failed to update requirement: " + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+
+    /**
+     * Deletes a requirement of the given tenant, the default one when omitted.
+     */
+    @DELETE
+    @Path("/requirements/{id}")
+    public Response deleteRequirement(@PathParam("id") String id, @QueryParam("tenant") String tenant) {
+        try {
+            if (tenant != null && !RequirementFilter.isValidTenant(tenant)) {
+                return invalidTenant();
+            }
+
+            if (!embeddingService.deleteRequirement(id, tenant)) {
+                return Response.status(Response.Status.NOT_FOUND)
+                        .entity("{\"error\": \"Requirement not found: " + id + "\"}")
+                        .build();
+            }
+            return Response.noContent().build();
+        } catch (Exception e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Failed to delete requirement: " + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+
+    /**
+     * Requirements the given code most likely implements, best first, one entry per requirement; only those of
+     * the implementation's tenant and, with {@code type}, of that kind.
+     */
     @POST
-    @Path("/implementations")
-    public Response analyzeImplementation(CodeImplementation implementation) {
+    @Path("/requirements/search")
+    public Response searchRequirements(CodeImplementation implementation,
+                                       @QueryParam("limit") @DefaultValue("5") int limit,
+                                       @QueryParam("type") String type) {
         try {
-            // Validate code size
             if (implementation.getCode() == null || implementation.getCode().trim().isEmpty()) {
                 return Response.status(Response.Status.BAD_REQUEST)
                         .entity("{\"error\": \"Code cannot be empty\"}")
@@ -71,50 +206,67 @@ public class AnalysisController {
                         .build();
             }
 
-            // Validate language
-            if (implementation.getLanguage() == null || implementation.getLanguage().trim().isEmpty()) {
+            if (type != null && !type.equals("Req") && !type.equals("Def")) {
                 return Response.status(Response.Status.BAD_REQUEST)
-                        .entity("{\"error\": \"Language must be specified\"}")
+                        .entity("{\"error\": \"Type must be either 'Req' or 'Def'\"}")
                         .build();
             }
 
-            String language = implementation.getLanguage().toLowerCase();
-            if (!supportedLanguages.contains(language)) {
-                return Response.status(Response.Status.BAD_REQUEST)
-                        .entity("{\"error\": \"Unsupported language: " + implementation.getLanguage() +
-                                ". Supported languages: " + supportedLanguages + "\"}")
-                        .build();
+            if (implementation.getTenant() != null && !RequirementFilter.isValidTenant(implementation.getTenant())) {
+                return invalidTenant();
             }
 
-            // Extract or find requirement ID
-            String requirementId = implementation.getRequirementId();
-            if (requirementId == null) {
-                requirementId = codeAnalysisService.extractRequirementId(implementation);
-            }
+            List<RequirementMatch> matches = requirementSearchService.search(implementation.getCode(),
+                    Math.max(1, Math.min(limit, maxSearchResults)),
+                    new RequirementFilter(implementation.getTenant(), type));
+            return Response.ok(matches).build();
+        } catch (Exception e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Search failed: " + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
 
-            if (requirementId == null) {
-                return Response.status(Response.Status.BAD_REQUEST)
-                        .entity("{\"error\": \"Could not identify requirement for this implementation. " +
-                                "Please provide a requirementId or include a UC-{id} comment in your code.\"}")
-                        .build();
-            }
+    /**
+     * Rebuilds the vector index at the configured dimension, reusing cached embeddings.
+     */
+    @POST
+    @Path("/requirements/reindex")
+    public Response reindexRequirements() {
+        try {
+            return Response.ok(vectorIndexMigration.rebuild()).build();
+        } catch (Exception e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Reindex failed: " + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
 
-            // Get requirement
-            var requirement = embeddingService.findRequirementById(requirementId);
-            if (requirement == null) {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity("{\"error\": \"Requirement not found: " + requirementId + "\"}")
-                        .build();
+    @POST
+    @Path("/implementations")
+    public Response analyzeImplementation(CodeImplementation implementation,
+                                          @HeaderParam("X-Force-Review") boolean forceReview,
+                                          @HeaderParam("X-Priority") String priority) {
+        try {
+            Response invalid = validateImplementation(implementation);
+            if (invalid != null) {
+                return invalid;
             }
 
-            // Perform AST analysis
-            codeAnalysisService.performAstAnalysis(implementation);
-
-            // Analyze code alignment
-            FeedbackResponse feedback = codeAnalysisService.analyzeCode(implementation, requirement);
+            FeedbackResponse feedback = codeAnalysisService.analyzeImplementation(implementation, forceReview,
+                    RequestPriority.from(priority, RequestPriority.INTERACTIVE));
 
             return Response.ok(feedback).build();
 
+        } catch (AdmissionRejectedException e) {
+            return Response.status(e.getStatus())
+                    .header(HttpHeaders.RETRY_AFTER, e.getRetryAfterSeconds())
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
+        } catch (AnalysisException e) {
+            return Response.status(e.getStatus())
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"Analysis failed: " + e.getMessage() + "\"}")
@@ -122,12 +274,204 @@ public class AnalysisController {
         }
     }
 
+    @POST
+    @Path("/implementations/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamImplementation(CodeImplementation implementation,
+                                     @HeaderParam("X-Force-Review") boolean forceReview,
+                                     @HeaderParam("X-Priority") String priority,
+                                     @Context SseEventSink sink, @Context Sse sse) {
+        Response invalid = validateImplementation(implementation);
+        if (invalid != null) {
+            sink.send(sse.newEvent("error", String.valueOf(invalid.getEntity())));
+            sink.close();
+            return;
+        }
+
+        // The coding model call blocks, so the pipeline runs off the request thread, once admitted
+        try {
+            codeAnalysisService.startStream(implementation, forceReview,
+                    RequestPriority.from(priority, RequestPriority.INTERACTIVE), new ReviewStreamListener() {
+                        @Override
+                        public void onStage(String stage, long elapsedMillis) {
+                            send("stage", "{\"stage\": \"" + stage + "\", \"elapsedMillis\": " + elapsedMillis + "}");
+                        }
+
+                        @Override
+                        public void onField(String name, String json) {
+                            send(name, json);
+                        }
+
+                        @Override
+                        public void onComplete(FeedbackResponse feedback) {
+                            try {
+                                send("result", objectMapper.writeValueAsString(feedback));
+                                sink.close();
+                            } catch (JsonProcessingException e) {
+                                onError(e);
+                            }
+                        }
+
+                        @Override
+                        public void onError(Throwable error) {
+                            if (error instanceof AdmissionRejectedException rejected) {
+                                send("error", "{\"error\": \"" + rejected.getMessage() + "\", \"status\": "
+                                        + rejected.getStatus() + ", \"retryAfterSeconds\": "
+                                        + rejected.getRetryAfterSeconds() + "}");
+                            } else {
+                                String message = error instanceof AnalysisException ? error.getMessage()
+                                        : "Analysis failed: " + error.getMessage();
+                                send("error", "{\"error\": \"" + message + "\"}");
+                            }
+                            sink.close();
+                        }
+
+                        private void send(String name, String json) {
+                            // Field values are already JSON text; send them as-is rather than re-serializing
+                            if (!sink.isClosed()) {
+                                sink.send(sse.newEvent(name, json));
+                            }
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            sink.send(sse.newEvent("error", "{\"error\": \"Analysis failed: " + e.getMessage() + "\"}"));
+            sink.close();
+        }
+    }
+
+    @POST
+    @Path("/implementations/jobs")
+    public Response submitAnalysisJob(CodeImplementation implementation,
+                                      @HeaderParam("X-Force-Review") boolean forceReview,
+                                      @HeaderParam("X-Priority") String priority) {
+        Response invalid = validateImplementation(implementation);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        try {
+            AnalysisJob job = analysisJobService.submit(implementation, forceReview,
+                    RequestPriority.from(priority, RequestPriority.BATCH));
+            return Response.accepted(job)
+                    .location(URI.create("/api/implementations/jobs/" + job.getId()))
+                    .build();
+        } catch (RejectedExecutionException e) {
+            return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, jobRetryAfterSeconds)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+
+    @GET
+    @Path("/implementations/jobs/{id}")
+    public Response getAnalysisJob(@PathParam("id") String id,
+                                   @QueryParam("wait") @DefaultValue("0") int waitSeconds) {
+        int wait = Math.max(0, Math.min(waitSeconds, maxJobWaitSeconds));
+        AnalysisJob job = analysisJobService.get(id, Duration.ofSeconds(wait));
+        if (job == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity("{\"error\": \"Analysis job not found: " + id + "\"}")
+                    .build();
+        }
+
+        boolean finished = job.getStatus() == AnalysisJob.Status.SUCCEEDED || job.getStatus() == AnalysisJob.Status.FAILED;
+        return Response.status(finished ? Response.Status.OK : Response.Status.ACCEPTED).entity(job).build();
+    }
+
+    private Response validateImplementation(CodeImplementation implementation) {
+        // Validate code size
+        if (implementation.getCode() == null || implementation.getCode().trim().isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"Code cannot be empty\"}")
+                    .build();
+        }
+
+        if (implementation.getCode().length() > maxCodeSize) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"Code exceeds maximum size limit of " + maxCodeSize + " characters\"}")
+                    .build();
+        }
+
+        // Validate language
+        if (implementation.getLanguage() == null || implementation.getLanguage().trim().isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"Language must be specified\"}")
+                    .build();
+        }
+
+        String language = implementation.getLanguage().toLowerCase();
+        if (!supportedLanguages.contains(language)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"Unsupported language: " + implementation.getLanguage() +
+                            ". Supported languages: " + supportedLanguages + "\"}")
+                    .build();
+        }
+
+        if (implementation.getTenant() != null && !RequirementFilter.isValidTenant(implementation.getTenant())) {
+            return invalidTenant();
+        }
+
+        return null;
+    }
+
+    private Response validateRequirement(Requirement requirement) {
+        if (requirement.getContent() == null || requirement.getContent().trim().isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"Requirement content cannot be empty\"}")
+                    .build();
+        }
+
+        if (requirement.getMetadata() == null ||
+                (!requirement.getMetadata().equals("Req") && !requirement.getMetadata().equals("Def"))) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"Metadata must be either 'Req' or 'Def'\"}")
+                    .build();
+        }
+
+        if (requirement.getTenant() != null && !RequirementFilter.isValidTenant(requirement.getTenant())) {
+            return invalidTenant();
+        }
+
+        return null;
+    }
+
+    private static Response invalidTenant() {
+        return Response.status(Response.Status.BAD_REQUEST)
+                .entity("{\"error\": \"Tenant must be 1 to 64 letters, digits, '-' or '_'\"}")
+                .build();
+    }
+
     @GET
     @Path("/health")
     public Response healthCheck() {
         return Response.ok().entity("{\"status\": \"OK\", \"timestamp\": \"" + System.currentTimeMillis() + "\"}").build();
     }
 
+    @GET
+    @Path("/stats")
+    public Response getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ingest", embeddingService.getIngestStats());
+        stats.put("vectorStore", embeddingService.getVectorStoreStats());
+        stats.put("requirementCache", requirementCache.getStats());
+        stats.put("embeddingCache", embeddingCache.getStats());
+        stats.put("reviewCache", reviewCache.getStats());
+        stats.put("coalescing", analysisCoalescer.getStats());
+        stats.put("jobs", analysisJobService.getStats());
+        stats.put("streaming", codeAnalysisService.getStreamingStats());
+        stats.put("admission", modelAdmissionService.getStats());
+        stats.put("reviewParser", reviewResponseParser.getStats());
+        stats.put("structuredOutput", codeAnalysisService.getStructuredOutputStats());
+        stats.put("pipeline", codeAnalysisService.getPipelineStats());
+        stats.put("promptBudget", promptBudgetService.getStats());
+        stats.put("structure", structuralAnalysisService.getStats());
+        stats.put("requirementIndex", requirementIdIndex.getStats());
+        stats.put("search", requirementSearchService.getStats());
+        stats.put("lexicalIndex", lexicalRequirementIndex.getStats());
+        return Response.ok(stats).build();
+    }
+
     @GET
     @Path("/languages")
     public Response getSupportedLanguages() {
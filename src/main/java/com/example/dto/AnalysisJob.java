@@ -0,0 +1,86 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AnalysisJob {
+
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+
+    private String id;
+    private Status status;
+    private FeedbackResponse result;
+    private String error;
+    private Long submittedAt;
+    private Long completedAt;
+
+    public AnalysisJob() {
+    }
+
+    public AnalysisJob(String id, Status status, FeedbackResponse result, String error,
+                       Long submittedAt, Long completedAt) {
+        this.id = id;
+        this.status = status;
+        this.result = result;
+        this.error = error;
+        this.submittedAt = submittedAt;
+        this.completedAt = completedAt;
+    }
+
+    @JsonProperty("id")
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @JsonProperty("status")
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    @JsonProperty("result")
+    public FeedbackResponse getResult() {
+        return result;
+    }
+
+    public void setResult(FeedbackResponse result) {
+        this.result = result;
+    }
+
+    @JsonProperty("error")
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @JsonProperty("submittedAt")
+    public Long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(Long submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    @JsonProperty("completedAt")
+    public Long getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(Long completedAt) {
+        this.completedAt = completedAt;
+    }
+}
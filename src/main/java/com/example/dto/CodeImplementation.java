@@ -6,6 +6,7 @@ public class CodeImplementation {
     private String code;
     private String language;
     private String requirementId;
+    private String tenant;
 
     public CodeImplementation() {
     }
@@ -42,4 +43,13 @@ public class CodeImplementation {
     public void setRequirementId(String requirementId) {
         this.requirementId = requirementId;
     }
+
+    @JsonProperty("tenant")
+    public String getTenant() {
+        return tenant;
+    }
+
+    public void setTenant(String tenant) {
+        this.tenant = tenant;
+    }
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ public class Requirement {
     private String id;
     private String content;
     private String metadata;
+    private String tenant;
 
     public Requirement() {
         this.id = UUID.randomUUID().toString();
@@ -47,4 +48,13 @@ public class Requirement {
     public void setMetadata(String metadata) {
         this.metadata = metadata;
     }
+
+    @JsonProperty("tenant")
+    public String getTenant() {
+        return tenant;
+    }
+
+    public void setTenant(String tenant) {
+        this.tenant = tenant;
+    }
 }
\ No newline at end of file
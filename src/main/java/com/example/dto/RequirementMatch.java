@@ -0,0 +1,87 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RequirementMatch {
+    private String requirementId;
+    private double score;
+    private double bestChunkScore;
+    private int matchedChunks;
+    private String bestChunk;
+    private Double lexicalScore;
+
+    public RequirementMatch() {
+    }
+
+    public RequirementMatch(String requirementId, double score, double bestChunkScore, int matchedChunks,
+                            String bestChunk) {
+        this.requirementId = requirementId;
+        this.score = score;
+        this.bestChunkScore = bestChunkScore;
+        this.matchedChunks = matchedChunks;
+        this.bestChunk = bestChunk;
+    }
+
+    @JsonProperty("requirementId")
+    public String getRequirementId() {
+        return requirementId;
+    }
+
+    public void setRequirementId(String requirementId) {
+        this.requirementId = requirementId;
+    }
+
+    /**
+     * Confidence in [0, 1]: the best chunk score, raised towards 1 by the other chunks that matched. With hybrid
+     * search, the reciprocal-rank fusion of the vector and lexical rankings, scaled so that first in both is 1.
+     */
+    @JsonProperty("score")
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+
+    @JsonProperty("bestChunkScore")
+    public double getBestChunkScore() {
+        return bestChunkScore;
+    }
+
+    public void setBestChunkScore(double bestChunkScore) {
+        this.bestChunkScore = bestChunkScore;
+    }
+
+    @JsonProperty("matchedChunks")
+    public int getMatchedChunks() {
+        return matchedChunks;
+    }
+
+    public void setMatchedChunks(int matchedChunks) {
+        this.matchedChunks = matchedChunks;
+    }
+
+    @JsonProperty("bestChunk")
+    public String getBestChunk() {
+        return bestChunk;
+    }
+
+    public void setBestChunk(String bestChunk) {
+        this.bestChunk = bestChunk;
+    }
+
+    /**
+     * BM25 score of the best lexical chunk match; absent when the requirement was only found by vector search.
+     */
+    @JsonProperty("lexicalScore")
+    public Double getLexicalScore() {
+        return lexicalScore;
+    }
+
+    public void setLexicalScore(Double lexicalScore) {
+        this.lexicalScore = lexicalScore;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StructuralSummary {
+    private String language;
+    private int lineCount;
+    private int complexity;
+    private List<String> types;
+    private List<MethodSummary> methods;
+    private List<String> requirementTags;
+
+    public StructuralSummary() {
+    }
+
+    public StructuralSummary(String language, int lineCount, int complexity, List<String> types,
+                             List<MethodSummary> methods, List<String> requirementTags) {
+        this.language = language;
+        this.lineCount = lineCount;
+        this.complexity = complexity;
+        this.types = types;
+        this.methods = methods;
+        this.requirementTags = requirementTags;
+    }
+
+    /**
+     * A copy that shares nothing mutable with this summary: the lists are unmodifiable and the methods are copied.
+     */
+    public StructuralSummary copy() {
+        return new StructuralSummary(language, lineCount, complexity, copyOf(types),
+                methods == null ? null : methods.stream().map(MethodSummary::copy).toList(), copyOf(requirementTags));
+    }
+
+    private static List<String> copyOf(List<String> list) {
+        return list == null ? null : List.copyOf(list);
+    }
+
+    @JsonProperty("language")
+    public String getLanguage() {
+        return language;
+    }
+
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
+    @JsonProperty("lineCount")
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public void setLineCount(int lineCount) {
+        this.lineCount = lineCount;
+    }
+
+    /**
+     * Cyclomatic complexity of the whole submission: one plus every decision point.
+     */
+    @JsonProperty("complexity")
+    public int getComplexity() {
+        return complexity;
+    }
+
+    public void setComplexity(int complexity) {
+        this.complexity = complexity;
+    }
+
+    @JsonProperty("types")
+    public List<String> getTypes() {
+        return types;
+    }
+
+    public void setTypes(List<String> types) {
+        this.types = types;
+    }
+
+    @JsonProperty("methods")
+    public List<MethodSummary> getMethods() {
+        return methods;
+    }
+
+    public void setMethods(List<MethodSummary> methods) {
+        this.methods = methods;
+    }
+
+    @JsonProperty("requirementTags")
+    public List<String> getRequirementTags() {
+        return requirementTags;
+    }
+
+    public void setRequirementTags(List<String> requirementTags) {
+        this.requirementTags = requirementTags;
+    }
+
+    public static class MethodSummary {
+        private String signature;
+        private int complexity;
+        private List<String> calls;
+
+        public MethodSummary() {
+        }
+
+        public MethodSummary(String signature, int complexity, List<String> calls) {
+            this.signature = signature;
+            this.complexity = complexity;
+            this.calls = calls;
+        }
+
+        public MethodSummary copy() {
+            return new MethodSummary(signature, complexity, copyOf(calls));
+        }
+
+        @JsonProperty("signature")
+        public String getSignature() {
+            return signature;
+        }
+
+        public void setSignature(String signature) {
+            this.signature = signature;
+        }
+
+        @JsonProperty("complexity")
+        public int getComplexity() {
+            return complexity;
+        }
+
+        public void setComplexity(int complexity) {
+            this.complexity = complexity;
+        }
+
+        /**
+         * Names of the methods this one calls, i.e. its outgoing call graph edges.
+         */
+        @JsonProperty("calls")
+        public List<String> getCalls() {
+            return calls;
+        }
+
+        public void setCalls(List<String> calls) {
+            this.calls = calls;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.service;
+
+/**
+ * Thrown when a model has no capacity for a request: 429 when its wait queue is full, 503 when the request
+ * waited longer than the configured maximum.
+ */
+public class AdmissionRejectedException extends AnalysisException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(int status, String message, long retryAfterSeconds) {
+        super(status, message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.service;
+
+import com.example.dto.FeedbackResponse;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Request;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution of identical analysis requests. Within a node, concurrent callers with the same key
+ * share one computation. Across nodes, a Redis lease elects one node to run the models while the others wait
+ * for its result to land in the {@link ReviewCache}.
+ */
+@ApplicationScoped
+public class AnalysisCoalescer {
+
+    private static final Logger LOG = Logger.getLogger(AnalysisCoalescer.class);
+    private static final String LEASE_PREFIX = "reviews:lease:";
+    private static final String RELEASE_SCRIPT =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
+    @Inject
+    Redis redis;
+
+    @Inject
+    ReviewCache reviewCache;
+
+    @ConfigProperty(name = "app.coalescing.lease-ttl", defaultValue = "10m")
+    Duration leaseTtl;
+
+    @ConfigProperty(name = "app.coalescing.poll-interval", defaultValue = "500ms")
+    Duration pollInterval;
+
+    @ConfigProperty(name = "app.coalescing.wait-timeout", defaultValue = "10m")
+    Duration waitTimeout;
+
+    private final ConcurrentHashMap<String, CompletableFuture<FeedbackResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong localJoins = new AtomicLong();
+    private final AtomicLong remoteJoins = new AtomicLong();
+
+    /**
+     * Runs the computation unless an identical one is already in flight, in which case its result is shared.
+     * @param acrossNodes also coordinate with other nodes through a Redis lease; needs the review cache enabled.
+     */
+    public FeedbackResponse execute(String key, boolean acrossNodes, Supplier<FeedbackResponse> computation) {
+        CompletableFuture<FeedbackResponse> mine = new CompletableFuture<>();
+        CompletableFuture<FeedbackResponse> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            localJoins.incrementAndGet();
+            return await(existing);
+        }
+
+        try {
+            FeedbackResponse result = acrossNodes ? executeWithLease(key, computation) : run(computation);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", inFlight.size());
+        stats.put("executions", executions.get());
+        stats.put("localJoins", localJoins.get());
+        stats.put("remoteJoins", remoteJoins.get());
+        return stats;
+    }
+
+    private FeedbackResponse executeWithLease(String key, Supplier<FeedbackResponse> computation) {
+        String leaseKey = LEASE_PREFIX + key;
+        String token = UUID.randomUUID().toString();
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+
+        while (System.nanoTime() - deadline < 0) {
+            boolean acquired;
+            try {
+                acquired = tryAcquire(leaseKey, token);
+            } catch (Exception e) {
+                LOG.warn("Cross-node coalescing unavailable, analysing locally: " + e.getMessage());
+                break;
+            }
+
+            if (acquired) {
+                try {
+                    // The previous holder may have cached its result and released the lease since our last look
+                    FeedbackResponse shared = reviewCache.peek(key);
+                    if (shared != null) {
+                        remoteJoins.incrementAndGet();
+                        return shared;
+                    }
+                    return run(computation);
+                } finally {
+                    release(leaseKey, token);
+                }
+            }
+
+            FeedbackResponse shared = awaitRemote(key, leaseKey, deadline);
+            if (shared != null) {
+                remoteJoins.incrementAndGet();
+                return shared;
+            }
+        }
+
+        return run(computation);
+    }
+
+    /**
+     * Polls for the lease holder's result. Returns null once the lease is gone without a result (the holder
+     * failed or expired), so the caller can compete for the lease again.
+     */
+    private FeedbackResponse awaitRemote(String key, String leaseKey, long deadline) {
+        try {
+            do {
+                Thread.sleep(pollInterval.toMillis());
+                FeedbackResponse shared = reviewCache.peek(key);
+                if (shared != null) {
+                    return shared;
+                }
+            } while (leaseHeld(leaseKey) && System.nanoTime() - deadline < 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a shared analysis", e);
+        }
+        return reviewCache.peek(key);
+    }
+
+    private boolean tryAcquire(String leaseKey, String token) {
+        return redis.sendAndAwait(Request.cmd(Command.SET).arg(leaseKey).arg(token)
+                .arg("NX").arg("PX").arg(leaseTtl.toMillis())) != null;
+    }
+
+    private boolean leaseHeld(String leaseKey) {
+        try {
+            return redis.sendAndAwait(Request.cmd(Command.EXISTS).arg(leaseKey)).toInteger() > 0;
+        } catch (Exception e) {
+            LOG.warn("Failed to check analysis lease " + leaseKey + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void release(String leaseKey, String token) {
+        try {
+            redis.sendAndAwait(Request.cmd(Command.EVAL).arg(RELEASE_SCRIPT).arg(1).arg(leaseKey).arg(token));
+        } catch (Exception e) {
+            LOG.warn("Failed to release analysis lease " + leaseKey + ": " + e.getMessage());
+        }
+    }
+
+    private FeedbackResponse run(Supplier<FeedbackResponse> computation) {
+        executions.incrementAndGet();
+        return computation.get();
+    }
+
+    private static FeedbackResponse await(CompletableFuture<FeedbackResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.service;
+
+/**
+ * Signals an analysis request that cannot be served, carrying the HTTP status the API should answer with.
+ */
+public class AnalysisException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public AnalysisException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
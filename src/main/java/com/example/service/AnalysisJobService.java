@@ -0,0 +1,158 @@
+package com.example.service;
+
+import com.example.dto.AnalysisJob;
+import com.example.dto.CodeImplementation;
+import com.example.dto.FeedbackResponse;
+import io.quarkus.runtime.ShutdownEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Submit/poll execution of implementation analysis, so HTTP worker threads are not held for the length of
+ * two LLM generations. Jobs run on virtual threads, at most {@code app.jobs.max-concurrency} at a time, and
+ * finished results are kept for {@code app.jobs.result-ttl}.
+ */
+@ApplicationScoped
+public class AnalysisJobService {
+
+    private static final Logger LOG = Logger.getLogger(AnalysisJobService.class);
+
+    @Inject
+    CodeAnalysisService codeAnalysisService;
+
+    @ConfigProperty(name = "app.jobs.max-concurrency", defaultValue = "4")
+    int maxConcurrency;
+
+    @ConfigProperty(name = "app.jobs.max-queued", defaultValue = "100")
+    int maxQueued;
+
+    @ConfigProperty(name = "app.jobs.result-ttl", defaultValue = "30m")
+    Duration resultTtl;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentHashMap<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private Semaphore permits;
+
+    @Inject
+    void initPermits() {
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    void onStop(@Observes ShutdownEvent ev) {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues the analysis and returns immediately.
+     * @throws RejectedExecutionException when {@code app.jobs.max-queued} jobs are already waiting or running.
+     */
+    public AnalysisJob submit(CodeImplementation implementation, boolean forceReview, RequestPriority priority) {
+        expireFinished();
+
+        if (pending.incrementAndGet() > maxQueued) {
+            pending.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Analysis queue is full (" + maxQueued + " jobs)");
+        }
+
+        Job job = new Job(UUID.randomUUID().toString());
+        jobs.put(job.id, job);
+        executor.execute(() -> run(job, implementation, forceReview, priority));
+        return job.view();
+    }
+
+    /**
+     * Returns the job, waiting up to {@code wait} for it to finish, or null if it is unknown or expired.
+     */
+    public AnalysisJob get(String id, Duration wait) {
+        expireFinished();
+
+        Job job = jobs.get(id);
+        if (job == null) {
+            return null;
+        }
+
+        if (!wait.isZero() && !job.done.isDone()) {
+            try {
+                job.done.get(wait.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                // the job state below tells the caller what happened
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return job.view();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", pending.get());
+        stats.put("running", maxConcurrency - permits.availablePermits());
+        stats.put("retained", jobs.size());
+        stats.put("rejected", rejected.get());
+        stats.put("maxConcurrency", maxConcurrency);
+        stats.put("maxQueued", maxQueued);
+        return stats;
+    }
+
+    private void run(Job job, CodeImplementation implementation, boolean forceReview, RequestPriority priority) {
+        try {
+            permits.acquire();
+            try {
+                job.status = AnalysisJob.Status.RUNNING;
+                job.result = codeAnalysisService.analyzeImplementation(implementation, forceReview, priority);
+                job.status = AnalysisJob.Status.SUCCEEDED;
+            } finally {
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.error = "Analysis was interrupted";
+            job.status = AnalysisJob.Status.FAILED;
+        } catch (Exception e) {
+            LOG.error("Analysis job " + job.id + " failed", e);
+            job.error = e.getMessage();
+            job.status = AnalysisJob.Status.FAILED;
+        } finally {
+            job.completedAt = System.currentTimeMillis();
+            pending.decrementAndGet();
+            job.done.complete(null);
+        }
+    }
+
+    private void expireFinished() {
+        long cutoff = System.currentTimeMillis() - resultTtl.toMillis();
+        jobs.values().removeIf(job -> job.completedAt != null && job.completedAt < cutoff);
+    }
+
+    private static final class Job {
+        private final String id;
+        private final long submittedAt = System.currentTimeMillis();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile AnalysisJob.Status status = AnalysisJob.Status.QUEUED;
+        private volatile FeedbackResponse result;
+        private volatile String error;
+        private volatile Long completedAt;
+
+        private Job(String id) {
+            this.id = id;
+        }
+
+        private AnalysisJob view() {
+            return new AnalysisJob(id, status, result, error, submittedAt, completedAt);
+        }
+    }
+}
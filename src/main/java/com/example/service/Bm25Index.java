@@ -0,0 +1,231 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Inverted index over requirement chunks with Okapi BM25 ranking. Chunks are replaced a whole requirement at a
+ * time, which is how {@link EmbeddingService#storeRequirement} writes them.
+ */
+final class Bm25Index {
+
+    private final IdentifierTokenizer tokenizer;
+    private final double k1;
+    private final double b;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // guarded by lock
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, List<Chunk>> chunksByRequirement = new HashMap<>();
+    private int chunkCount;
+    private long totalLength;
+
+    Bm25Index(IdentifierTokenizer tokenizer, double k1, double b) {
+        this.tokenizer = tokenizer;
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /**
+     * Replaces the indexed chunks of a requirement; {@code tenant} and {@code type} may be null.
+     */
+    void put(String requirementId, String tenant, String type, List<String> chunkTexts) {
+        // Tokenize outside the lock; only the posting updates need it
+        List<Map<String, Integer>> frequencies = new ArrayList<>(chunkTexts.size());
+        List<Chunk> chunks = new ArrayList<>(chunkTexts.size());
+        for (int i = 0; i < chunkTexts.size(); i++) {
+            List<String> terms = tokenizer.tokenize(chunkTexts.get(i));
+            Map<String, Integer> tf = new HashMap<>();
+            for (String term : terms) {
+                tf.merge(term, 1, Integer::sum);
+            }
+            frequencies.add(tf);
+            String[] distinct = tf.keySet().toArray(String[]::new);
+            chunks.add(new Chunk(requirementId, tenant, type, i, chunkTexts.get(i), terms.size(), distinct));
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(requirementId);
+            for (int i = 0; i < chunks.size(); i++) {
+                Chunk chunk = chunks.get(i);
+                for (Map.Entry<String, Integer> term : frequencies.get(i).entrySet()) {
+                    postings.computeIfAbsent(term.getKey(), key -> new Postings()).add(chunk, term.getValue());
+                }
+                chunkCount++;
+                totalLength += chunk.length;
+            }
+            chunksByRequirement.put(requirementId, chunks);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String requirementId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(requirementId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the best {@code limit} chunks for the distinct terms of the query, best first.
+     */
+    List<Hit> search(CharSequence query, int limit) {
+        return search(query, limit, chunk -> true);
+    }
+
+    /**
+     * Like {@link #search(CharSequence, int)}, over the chunks the filter accepts. Term statistics stay those
+     * of the whole index, so a chunk scores the same whatever the filter.
+     */
+    List<Hit> search(CharSequence query, int limit, Predicate<Chunk> filter) {
+        Set<String> terms = new LinkedHashSet<>(tokenizer.tokenize(query));
+
+        lock.readLock().lock();
+        try {
+            if (chunkCount == 0) {
+                return List.of();
+            }
+            double avgLength = (double) totalLength / chunkCount;
+            Map<Chunk, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Postings postingList = postings.get(term);
+                if (postingList == null) {
+                    continue;
+                }
+                double idf = Math.log(1.0 + (chunkCount - postingList.live + 0.5) / (postingList.live + 0.5));
+                for (int i = 0; i < postingList.size; i++) {
+                    Chunk chunk = postingList.chunks[i];
+                    if (chunk.removed || !filter.test(chunk)) {
+                        continue;
+                    }
+                    int tf = postingList.frequencies[i];
+                    double norm = k1 * (1.0 - b + b * chunk.length / avgLength);
+                    scores.merge(chunk, idf * tf * (k1 + 1.0) / (tf + norm), Double::sum);
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(scores.size());
+            for (Map.Entry<Chunk, Double> score : scores.entrySet()) {
+                hits.add(new Hit(score.getKey(), score.getValue()));
+            }
+            hits.sort((x, y) -> Double.compare(y.score, x.score));
+            return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("requirements", chunksByRequirement.size());
+            stats.put("chunks", chunkCount);
+            stats.put("terms", postings.size());
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // caller holds the write lock
+    private void removeLocked(String requirementId) {
+        List<Chunk> previous = chunksByRequirement.remove(requirementId);
+        if (previous == null) {
+            return;
+        }
+        // Removed chunks stay in the posting arrays, skipped by searches, until a list is mostly dead
+        for (Chunk chunk : previous) {
+            chunk.removed = true;
+            for (String term : chunk.terms) {
+                Postings postingList = postings.get(term);
+                if (--postingList.live == 0) {
+                    postings.remove(term);
+                } else if (postingList.size > 2 * postingList.live + 8) {
+                    postingList.compact();
+                }
+            }
+            chunkCount--;
+            totalLength -= chunk.length;
+        }
+    }
+
+    static final class Chunk {
+        final String requirementId;
+        final String tenant;
+        final String type;
+        final int chunkIndex;
+        final String text;
+        final int length;
+        private final String[] terms;
+        // guarded by the index lock
+        private boolean removed;
+
+        private Chunk(String requirementId, String tenant, String type, int chunkIndex, String text, int length,
+                      String[] terms) {
+            this.requirementId = requirementId;
+            this.tenant = tenant;
+            this.type = type;
+            this.chunkIndex = chunkIndex;
+            this.text = text;
+            this.length = length;
+            this.terms = terms;
+        }
+    }
+
+    /**
+     * Posting list as parallel arrays, cheaper to scan and to grow than a map per term.
+     */
+    private static final class Postings {
+        private Chunk[] chunks = new Chunk[4];
+        private int[] frequencies = new int[4];
+        private int size;
+        private int live;
+
+        private void add(Chunk chunk, int frequency) {
+            if (size == chunks.length) {
+                chunks = Arrays.copyOf(chunks, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            chunks[size] = chunk;
+            frequencies[size] = frequency;
+            size++;
+            live++;
+        }
+
+        private void compact() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!chunks[i].removed) {
+                    chunks[kept] = chunks[i];
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            Arrays.fill(chunks, kept, size, null);
+            size = kept;
+        }
+    }
+
+    static final class Hit {
+        final Chunk chunk;
+        final double score;
+
+        private Hit(Chunk chunk, double score) {
+            this.chunk = chunk;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.service;
+
+import com.example.dto.StructuralSummary.MethodSummary;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+
+/**
+ * Analyzer for languages whose bodies are delimited by braces. Functions are recognised by a keyword
+ * ({@code func}, {@code fn}, {@code function}), by an arrow followed by a body, or, when {@code cStyle} is set,
+ * by {@code name(...) {} } outside any function body. Types are recognised by their keyword.
+ */
+abstract class BraceLanguageAnalyzer extends LexerLanguageAnalyzer {
+
+    private static final int ANONYMOUS = -2;
+
+    private enum ScopeKind {
+        BLOCK, TYPE, FUNCTION
+    }
+
+    private final Set<String> functionKeywords;
+    private final Set<String> typeKeywords;
+    private final Set<String> scopeKeywords;
+    private final boolean cStyle;
+    private final boolean arrowFunctions;
+
+    /**
+     * @param scopeKeywords keywords opening a named body of methods that is not itself a type, like Rust's impl.
+     */
+    BraceLanguageAnalyzer(SourceLexer.Syntax syntax, Set<String> branchTokens, Set<String> notCalls,
+                          Set<String> functionKeywords, Set<String> typeKeywords, Set<String> scopeKeywords,
+                          boolean cStyle, boolean arrowFunctions) {
+        super(syntax, branchTokens, notCalls);
+        this.functionKeywords = functionKeywords;
+        this.typeKeywords = typeKeywords;
+        this.scopeKeywords = scopeKeywords;
+        this.cStyle = cStyle;
+        this.arrowFunctions = arrowFunctions;
+    }
+
+    @Override
+    Collector newCollector(String code) {
+        return new BraceCollector(code);
+    }
+
+    private static final class Scope {
+        private final ScopeKind kind;
+        private final String name;
+        private final MethodSummary method;
+        private final Set<String> calls;
+
+        private Scope(ScopeKind kind, String name, MethodSummary method, Set<String> calls) {
+            this.kind = kind;
+            this.name = name;
+            this.method = method;
+            this.calls = calls;
+        }
+    }
+
+    private final class BraceCollector extends Collector {
+        private final Deque<Scope> scopes = new ArrayDeque<>();
+        private int openFunctions;
+        private int parenDepth;
+        private int angleDepth;
+        private int statementStart = -1;
+
+        private int functionStart = -1;
+        private int candidateStart = -1;
+        private boolean candidateClosed;
+        private int arrowStart = -1;
+
+        private String typeKind;
+        private String typeName;
+        private boolean namedScope;
+
+        private BraceCollector(String code) {
+            super(code);
+        }
+
+        @Override
+        void token(SourceLexer.Kind kind, int start, int end, int indent) {
+            if (statementStart < 0) {
+                statementStart = start;
+            }
+            // A type keyword without a body on its line declares nothing we track, e.g. Go's "type Id int"
+            if (indent >= 0 && typeKind != null && !is(kind, start, end, "{") && !namedScope) {
+                typeKind = null;
+                typeName = null;
+            }
+
+            if (kind == SourceLexer.Kind.IDENTIFIER) {
+                identifier(start, end);
+            } else if (kind == SourceLexer.Kind.PUNCTUATION) {
+                punctuation(start, end);
+            }
+        }
+
+        private void identifier(int start, int end) {
+            String text = code.substring(start, end);
+            boolean member = previousKind == SourceLexer.Kind.PUNCTUATION && is(previousKind, previousStart, previousEnd, ".");
+            if (member) {
+                return;
+            }
+            if (functionKeywords.contains(text) && parenDepth == 0) {
+                functionStart = start;
+            } else if (typeKind == null && (typeKeywords.contains(text) || scopeKeywords.contains(text)) && parenDepth == 0) {
+                typeKind = text;
+                namedScope = scopeKeywords.contains(text);
+                angleDepth = 0;
+            } else if (typeKind != null && angleDepth == 0 && !typeKeywords.contains(text)
+                    && (typeName == null || namedScope)) {
+                // impl Trait for Type: the last name before the body is the one the methods belong to
+                typeName = text;
+            }
+        }
+
+        private void punctuation(int start, int end) {
+            switch (code.substring(start, end)) {
+                case "(" -> {
+                    if (parenDepth == 0 && functionStart < 0 && candidateStart < 0 && cStyle && openFunctions == 0
+                            && previousKind == SourceLexer.Kind.IDENTIFIER
+                            && !notCalls.contains(code.substring(previousStart, previousEnd))) {
+                        candidateStart = statementStart;
+                    } else if (!(functionStart >= 0 && parenDepth == 0)) {
+                        maybeCall();
+                    }
+                    parenDepth++;
+                }
+                case ")" -> {
+                    parenDepth = Math.max(0, parenDepth - 1);
+                    if (parenDepth == 0 && candidateStart >= 0) {
+                        candidateClosed = true;
+                    }
+                }
+                case "<" -> angleDepth++;
+                case ">" -> angleDepth = Math.max(0, angleDepth - 1);
+                case "=>" -> {
+                    if (arrowFunctions) {
+                        // Callbacks passed as arguments have no name to show
+                        arrowStart = parenDepth == 0 ? statementStart : ANONYMOUS;
+                    }
+                }
+                case "=" -> {
+                    if (parenDepth == 0) {
+                        candidateStart = -1;
+                        candidateClosed = false;
+                    }
+                }
+                case ":" -> {
+                    // Access labels such as "public:" are not part of the declaration that follows
+                    if (parenDepth == 0 && candidateStart < 0 && functionStart < 0) {
+                        statementStart = -1;
+                    }
+                }
+                case ";" -> {
+                    if (parenDepth == 0) {
+                        clearPending();
+                    }
+                    statementStart = -1;
+                }
+                case "{" -> {
+                    openScope(start);
+                    statementStart = -1;
+                }
+                case "}" -> {
+                    closeScope();
+                    statementStart = -1;
+                }
+                default -> {
+                }
+            }
+        }
+
+        private void openScope(int braceStart) {
+            Scope enclosing = scopes.peek();
+            boolean arrowBody = arrowStart != -1 && is(previousKind, previousStart, previousEnd, "=>");
+            int signatureStart = arrowBody ? arrowStart
+                    : parenDepth > 0 ? -1
+                    : functionStart >= 0 ? functionStart
+                    : candidateStart >= 0 && candidateClosed ? candidateStart : -1;
+
+            if (arrowBody || signatureStart >= 0) {
+                String signature = signatureStart >= 0 ? signature(signatureStart, braceStart) : "(arrow function)";
+                if (enclosing != null && enclosing.kind == ScopeKind.TYPE) {
+                    signature = qualify(signature, enclosing.name);
+                }
+                MethodSummary method = openFunction(signature);
+                scopes.push(new Scope(ScopeKind.FUNCTION, null, method, calls));
+                openFunctions++;
+            } else if (typeKind != null && typeName != null && parenDepth == 0) {
+                String name = enclosing != null && enclosing.kind == ScopeKind.TYPE ? enclosing.name + "." + typeName : typeName;
+                if (!namedScope) {
+                    types.add(typeKind + " " + name);
+                }
+                scopes.push(new Scope(ScopeKind.TYPE, name, null, null));
+            } else {
+                scopes.push(new Scope(ScopeKind.BLOCK, null, null, null));
+            }
+            clearPending();
+        }
+
+        @Override
+        void finish() {
+            while (!scopes.isEmpty()) {
+                closeScope();
+            }
+        }
+
+        private void closeScope() {
+            Scope scope = scopes.poll();
+            if (scope == null || scope.kind != ScopeKind.FUNCTION) {
+                return;
+            }
+            closeFunction(scope.method, scope.calls);
+            openFunctions--;
+            function = null;
+            calls = null;
+            for (Scope outer : scopes) {
+                if (outer.kind == ScopeKind.FUNCTION) {
+                    function = outer.method;
+                    calls = outer.calls;
+                    break;
+                }
+            }
+        }
+
+        private void clearPending() {
+            functionStart = -1;
+            candidateStart = -1;
+            candidateClosed = false;
+            arrowStart = -1;
+            typeKind = null;
+            typeName = null;
+            namedScope = false;
+        }
+
+        /**
+         * Inserts the type name before the function name, the identifier in front of the parameter list.
+         */
+        private String qualify(String signature, String type) {
+            int paren = signature.indexOf('(');
+            int nameEnd = paren;
+            if (nameEnd > 0 && signature.charAt(nameEnd - 1) == '>') {
+                nameEnd = signature.lastIndexOf('<', nameEnd);
+            }
+            int nameStart = nameEnd;
+            while (nameStart > 0 && Character.isJavaIdentifierPart(signature.charAt(nameStart - 1))) {
+                nameStart--;
+            }
+            return nameStart < nameEnd
+                    ? signature.substring(0, nameStart) + type + "." + signature.substring(nameStart)
+                    : type + "." + signature;
+        }
+    }
+}
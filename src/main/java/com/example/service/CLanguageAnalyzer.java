@@ -0,0 +1,24 @@
+package com.example.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.Set;
+
+/**
+ * C and C++: function definitions are recognised by their shape, {@code name(...) { ... }}, outside any function body.
+ */
+@ApplicationScoped
+public class CLanguageAnalyzer extends BraceLanguageAnalyzer {
+
+    public CLanguageAnalyzer() {
+        super(SourceLexer.C_FAMILY, Set.of("if", "for", "while", "case", "catch", "&&", "||", "?"),
+                Set.of("if", "for", "while", "switch", "catch", "return", "sizeof", "alignof", "decltype", "else",
+                        "do", "new", "delete", "throw", "case", "static_assert", "noexcept"),
+                Set.of(), Set.of("class", "struct", "union", "enum"), Set.of(), true, false);
+    }
+
+    @Override
+    public Set<String> languages() {
+        return Set.of("c", "cpp");
+    }
+}
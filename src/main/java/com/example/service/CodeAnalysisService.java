@@ -3,21 +3,34 @@ package com.example.service;
 import com.example.dto.CodeImplementation;
 import com.example.dto.FeedbackResponse;
 import com.example.dto.Requirement;
+import com.example.dto.RequirementMatch;
+import com.example.dto.StructuralSummary;
 import com.example.qualifier.CodingModel;
 import com.example.qualifier.ReviewModel;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
 import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import io.quarkus.runtime.ShutdownEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
-import org.eclipse.jdt.core.JavaCore;
-import org.eclipse.jdt.core.dom.*;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 @ApplicationScoped
 public class CodeAnalysisService {
@@ -32,325 +45,838 @@ public class CodeAnalysisService {
     @ReviewModel
     ChatLanguageModel reviewModel;
 
+    @Inject
+    @ReviewModel
+    StreamingChatLanguageModel reviewStreamingModel;
+
     @Inject
     EmbeddingService embeddingService;
 
     @Inject
     ObjectMapper objectMapper;
 
+    @Inject
+    ReviewCache reviewCache;
+
+    @Inject
+    ReviewResponseParser reviewResponseParser;
+
+    @Inject
+    FeedbackSchema feedbackSchema;
+
+    @Inject
+    PromptBudgetService promptBudgetService;
+
+    @Inject
+    StructuralAnalysisService structuralAnalysisService;
+
+    @Inject
+    RequirementIdIndex requirementIdIndex;
+
+    @Inject
+    RequirementSearchService requirementSearchService;
+
+    @Inject
+    AnalysisCoalescer analysisCoalescer;
+
+    @Inject
+    ModelAdmissionService modelAdmissionService;
+
+    @ConfigProperty(name = "ollama.coding.model")
+    String codingModelName;
+
+    @ConfigProperty(name = "ollama.review.model")
+    String reviewModelName;
+
+    @ConfigProperty(name = "ollama.review.structured-output", defaultValue = "false")
+    boolean structuredOutput;
+
+    @ConfigProperty(name = "app.pipeline.strategy", defaultValue = "sequential")
+    PipelineStrategy pipelineStrategy;
+
+    @ConfigProperty(name = "app.pipeline.on-demand.min-lines", defaultValue = "60")
+    int onDemandMinLines;
+
+    @ConfigProperty(name = "app.pipeline.on-demand.min-branches", defaultValue = "10")
+    int onDemandMinBranches;
+
+    @ConfigProperty(name = "app.map-reduce.enabled", defaultValue = "true")
+    boolean mapReduceEnabled;
+
+    @ConfigProperty(name = "app.map-reduce.min-code-size", defaultValue = "20000")
+    int mapReduceMinCodeSize;
+
+    @ConfigProperty(name = "app.map-reduce.unit-size", defaultValue = "8000")
+    int unitSize;
+
+    @ConfigProperty(name = "app.map-reduce.max-parallel", defaultValue = "4")
+    int maxParallelUnits;
+
     @ConfigProperty(name = "app.supported-languages")
     List<String> supportedLanguages;
 
-    //private static final Pattern UC_ID_PATTERN = Pattern.compile("UC-(\\w+)");
-    //private static final Pattern UC_ID_PATTERN = Pattern.compile("UC-([^:]+):");
-    private static final Pattern UC_ID_PATTERN = Pattern.compile("UC-([A-Za-z0-9_-]+):?");
-    private static final Pattern JSON_PATTERN = Pattern.compile("\\{.*\\}", Pattern.DOTALL);
+    // Bump whenever the prompts below change, so cached reviews from the old prompts are not reused
+    static final String PROMPT_VERSION = "2";
+
+    private static final int STRUCTURED_RETRIES = 1;
+
+    private final AtomicLong streams = new AtomicLong();
+    private final AtomicLong firstFieldMillis = new AtomicLong();
+    private final AtomicLong structuredAttempts = new AtomicLong();
+    private final AtomicLong structuredInvalid = new AtomicLong();
+    private final AtomicLong structuredFallbacks = new AtomicLong();
+    private final AtomicLong structuredWastedMillis = new AtomicLong();
+    private final AtomicLong parallelCodingFailures = new AtomicLong();
+    private final AtomicLong mapReduceRuns = new AtomicLong();
+    private final AtomicLong mapReduceUnits = new AtomicLong();
+    private final AtomicLong mapReduceMissesDropped = new AtomicLong();
+    private final EnumMap<PipelineStrategy, AtomicLong> pipelineRuns = new EnumMap<>(PipelineStrategy.class);
+    private final StageTimings stageTimings = new StageTimings();
+    private final ExecutorService pipelineExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Inject
+    void initPipelineRuns() {
+        for (PipelineStrategy strategy : PipelineStrategy.values()) {
+            if (strategy != PipelineStrategy.ON_DEMAND) {
+                pipelineRuns.put(strategy, new AtomicLong());
+            }
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent ev) {
+        pipelineExecutor.shutdownNow();
+    }
 
+    /**
+     * Finds the requirement the code implements: the first of its requirement tags that names a stored
+     * requirement of the submitter's tenant or, for untagged code, the best requirement-level semantic match
+     * among that tenant's. Returns null when neither identifies one.
+     * @throws AnalysisException 404 when the code is tagged but none of its tags is a known requirement.
+     */
     public String extractRequirementId(CodeImplementation implementation) {
-        // First try to extract from comments
-        String code = implementation.getCode();
-        Matcher matcher = UC_ID_PATTERN.matcher(code);
-        if (matcher.find()) {
-            return matcher.group(1);
+        List<String> tags = structuralAnalysisService.analyze(implementation).getRequirementTags();
+        if (!tags.isEmpty()) {
+            if (!requirementIdIndex.isLoaded()) {
+                return tags.get(0);
+            }
+            for (String tag : tags) {
+                String id = requirementIdIndex.resolve(tag);
+                if (id != null && embeddingService.findRequirementById(id, implementation.getTenant()) != null) {
+                    return id;
+                }
+            }
+            throw new AnalysisException(404, "Requirement not found: UC-" + String.join(", UC-", tags));
         }
 
-        // If not found in comments, try semantic search
-        var matches = embeddingService.findSimilarRequirements(code, 3);
-        if (!matches.isEmpty()) {
-            // Extract ID from the first match (most relevant)
-            String embeddedText = matches.get(0).embedded().text();
-            // Parse the embedded text to extract ID
-            return extractIdFromEmbeddedText(embeddedText);
+        // Untagged code: take the most relevant requirement of the submitter's tenant
+        for (RequirementMatch match : requirementSearchService.search(implementation.getCode(), 3,
+                new RequirementFilter(implementation.getTenant(), null))) {
+            String id = match.getRequirementId();
+            if (!requirementIdIndex.isLoaded() || requirementIdIndex.resolve(id) != null) {
+                return id;
+            }
         }
 
         return null;
     }
 
-    private String extractIdFromEmbeddedText(String embeddedText) {
-        // Simple extraction - in a real implementation, you'd want a more robust method
-        if (embeddedText.contains("ID:")) {
-            String[] parts = embeddedText.split("ID:");
-            if (parts.length > 1) {
-                return parts[1].split(" ")[0].trim();
+    /**
+     * Runs the full pipeline for a validated submission: resolve the requirement, analyse the AST and review.
+     * @throws AnalysisException when the requirement cannot be identified or does not exist.
+     */
+    public FeedbackResponse analyzeImplementation(CodeImplementation implementation, boolean forceReview,
+                                                  RequestPriority priority) {
+        Requirement requirement = resolveRequirement(implementation);
+
+        // Perform AST analysis (cached for the prompts built below)
+        performAstAnalysis(implementation);
+
+        // Analyze code alignment
+        return analyzeCode(implementation, requirement, forceReview, priority);
+    }
+
+    /**
+     * Runs {@link #streamImplementation} on its own virtual thread once a stream permit is granted, so open
+     * streams are bounded and queued like blocking requests. The permit is waited for on that thread, not the
+     * caller's, and held until the listener has been told the outcome; a rejection is reported to the listener
+     * as an {@link AdmissionRejectedException}.
+     */
+    public void startStream(CodeImplementation implementation, boolean forceReview, RequestPriority priority,
+                            ReviewStreamListener listener) {
+        pipelineExecutor.execute(() -> {
+            ModelLimiter.Permit permit;
+            try {
+                permit = modelAdmissionService.acquireStream(priority);
+            } catch (AdmissionRejectedException e) {
+                listener.onError(e);
+                return;
             }
+            streamImplementation(implementation, forceReview, priority, new ReviewStreamListener() {
+                @Override
+                public void onStage(String stage, long elapsedMillis) {
+                    listener.onStage(stage, elapsedMillis);
+                }
+
+                @Override
+                public void onField(String name, String json) {
+                    listener.onField(name, json);
+                }
+
+                @Override
+                public void onComplete(FeedbackResponse feedback) {
+                    try {
+                        listener.onComplete(feedback);
+                    } finally {
+                        permit.close();
+                    }
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    try {
+                        listener.onError(error);
+                    } finally {
+                        permit.close();
+                    }
+                }
+            });
+        });
+    }
+
+    /**
+     * Streaming variant of {@link #analyzeImplementation}: reports each top-level review field to the listener as
+     * soon as the review model has finished generating it, then the complete result.
+     */
+    public void streamImplementation(CodeImplementation implementation, boolean forceReview,
+                                     RequestPriority priority, ReviewStreamListener listener) {
+        long start = System.nanoTime();
+        try {
+            Requirement requirement = resolveRequirement(implementation);
+            performAstAnalysis(implementation);
+
+            PipelineStrategy plan = planFor(implementation);
+            String cacheKey = reviewCache.key(implementation, requirement, promptVersion(implementation, plan), codingModelName, reviewModelName);
+            boolean cacheEnabled = reviewCache.isEnabled();
+            FeedbackResponse cached = null;
+            if (cacheEnabled && forceReview) {
+                reviewCache.recordBypass();
+            } else if (cacheEnabled) {
+                cached = reviewCache.get(cacheKey);
+            }
+            if (cached == null && splitsIntoUnits(implementation)) {
+                // Units are reviewed concurrently, so there is no single stream to forward field by field
+                cached = mapReduceFeedback(implementation, requirement, plan, priority);
+                if (cacheEnabled) {
+                    reviewCache.put(cacheKey, cached, (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+            if (cached != null) {
+                objectMapper.valueToTree(cached).fields()
+                        .forEachRemaining(field -> listener.onField(field.getKey(), field.getValue().toString()));
+                listener.onComplete(cached);
+                return;
+            }
+
+            CompletableFuture<FeedbackResponse.CodeFeedback> codingFeedback = null;
+            String initialAnalysis = null;
+            if (plan == PipelineStrategy.PARALLEL) {
+                codingFeedback = CompletableFuture.supplyAsync(() -> codeFeedback(implementation, priority), pipelineExecutor);
+            } else if (plan == PipelineStrategy.SEQUENTIAL) {
+                initialAnalysis = initialAnalysis(implementation, priority);
+                listener.onStage("initialAnalysis", (System.nanoTime() - start) / 1_000_000);
+            }
+            CompletableFuture<FeedbackResponse.CodeFeedback> pendingCodingFeedback = codingFeedback;
+
+            StringBuilder review = new StringBuilder();
+            AtomicBoolean firstField = new AtomicBoolean(true);
+            IncrementalJsonParser parser = new IncrementalJsonParser(structuredOutput, (name, json) -> {
+                if (firstField.compareAndSet(true, false)) {
+                    streams.incrementAndGet();
+                    firstFieldMillis.addAndGet((System.nanoTime() - start) / 1_000_000);
+                }
+                listener.onField(name, json);
+            });
+
+            // The review permit is held until the stream completes, not just until generate() returns. The
+            // answer is awaited here, so validation, retries and caching run on this thread, not the model's
+            String reviewPrompt = reviewPrompt(implementation, requirement, initialAnalysis);
+            CompletableFuture<String> answer = new CompletableFuture<>();
+            String streamed;
+            long reviewStart = System.nanoTime();
+            ModelLimiter.Permit reviewPermit = modelAdmissionService.acquire(ModelAdmissionService.Model.REVIEW, priority);
+            try {
+                reviewStreamingModel.generate(reviewPrompt, new StreamingResponseHandler<AiMessage>() {
+                    @Override
+                    public void onNext(String token) {
+                        review.append(token);
+                        parser.feed(token);
+                    }
+
+                    @Override
+                    public void onComplete(dev.langchain4j.model.output.Response<AiMessage> response) {
+                        answer.complete(review.toString());
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        answer.completeExceptionally(error);
+                    }
+                });
+                streamed = answer.join();
+            } finally {
+                reviewPermit.close();
+                stageTimings.record("review", reviewStart);
+            }
+
+            // An answer that fails schema validation is retried like a blocking review; the result event then
+            // supersedes the fields streamed from it
+            FeedbackResponse feedback = structuredOutput
+                    ? structuredReview(reviewPrompt, priority, streamed, reviewStart)
+                    : reviewResponseParser.parse(streamed);
+            if (pendingCodingFeedback != null) {
+                mergeCodeFeedback(feedback, pendingCodingFeedback);
+                // The merged feedback supersedes the review model's own codeFeedback event
+                listener.onField("codeFeedback", objectMapper.valueToTree(feedback.getCodeFeedback()).toString());
+            }
+            pipelineRuns.get(plan).incrementAndGet();
+            stageTimings.record("total." + plan.name().toLowerCase(), start);
+            if (cacheEnabled) {
+                reviewCache.put(cacheKey, feedback, (System.nanoTime() - start) / 1_000_000);
+            }
+            listener.onComplete(feedback);
+        } catch (CompletionException e) {
+            listener.onError(e.getCause() != null ? e.getCause() : e);
+        } catch (Exception e) {
+            listener.onError(e);
         }
-        return null;
     }
 
-    public FeedbackResponse analyzeCode(CodeImplementation implementation, Requirement requirement) {
-        // Initial analysis with coding model
-        String initialAnalysis = codingModel.generate("""
-    Analyze this %s code for quality, optimizations, and standards:
-    
-    %s
-    
-    Provide a concise analysis focusing on code quality, potential optimizations, and adherence to coding standards.
-    """.formatted(implementation.getLanguage(), implementation.getCode()));
+    public Map<String, Object> getStreamingStats() {
+        long count = streams.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("streams", count);
+        stats.put("avgFirstFieldMillis", count == 0 ? 0 : firstFieldMillis.get() / count);
+        return stats;
+    }
 
-        // Comprehensive review with review model
-        String reviewPrompt = """
-    Comprehensive code review task:
-    
-    REQUIREMENT: %s
-    
-    CODE:
-    %s
-    
-    LANGUAGE: %s
-    
-    INITIAL ANALYSIS: %s
-    
-    Please provide a comprehensive review with the following structure:
-    1. Alignment Score (0-10): A numerical score indicating how well the code fulfills the requirement.
-    Also consider while scoring if requirement is Completely, Partially or not met.
-    Penalize if requirement completely missed.
-    2. Requirement Misses: List any aspects of the requirement that are not addressed
-    Classify if the requirement is Completely, Partially or not met. Highlight all deviation.
-    3. Edge Cases: List any edge cases that should be handled
-    4. Code Feedback: 
-       - Quality: Comments on code quality
-       - Optimizations: Specific optimization suggestions
-       - Standards: Adherence to coding standards
-    5. Warnings: Any other warnings or concerns
-    
-    Please format your response as a JSON object with the following structure:
-    {
-      "alignmentScore": 8.5,
-      "requirementMiss": ["item1", "item2"],
-      "edgeCases": ["case1", "case2"],
-      "codeFeedback": {
-        "quality": "comments on quality",
-        "optimizations": ["opt1", "opt2"],
-        "standards": "comments on standards"
-      },
-      "warnings": ["warning1", "warning2"]
+    /**
+     * Per-stage timings of the review pipeline, plus how often each strategy ran, for comparing strategies on a
+     * deployment. {@code total.<strategy>} is the end-to-end time of a run with that effective strategy.
+     */
+    public Map<String, Object> getPipelineStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("strategy", pipelineStrategy.name().toLowerCase());
+        Map<String, Object> runs = new LinkedHashMap<>();
+        pipelineRuns.forEach((strategy, count) -> runs.put(strategy.name().toLowerCase(), count.get()));
+        stats.put("runs", runs);
+        stats.put("codingFailuresIgnored", parallelCodingFailures.get());
+        long splitRuns = mapReduceRuns.get();
+        stats.put("mapReduceRuns", splitRuns);
+        stats.put("avgUnitsPerRun", splitRuns == 0 ? 0.0 : (double) mapReduceUnits.get() / splitRuns);
+        stats.put("mapReduceMissesDropped", mapReduceMissesDropped.get());
+        stats.put("stages", stageTimings.getStats());
+        return stats;
     }
-    """.formatted(
-                requirement.getContent(),
-                implementation.getCode(),
-                implementation.getLanguage(),
-                initialAnalysis
-        );
 
-        String comprehensiveReview = reviewModel.generate(reviewPrompt);
-        LOG.info("Initial response: "+initialAnalysis);
-        LOG.info("Comprehensive response: "+comprehensiveReview);
-        // Extract JSON from the response
-        String jsonResponse = extractJsonFromResponse(comprehensiveReview);
+    private Requirement resolveRequirement(CodeImplementation implementation) {
+        // Extract or find requirement ID
+        String requirementId = implementation.getRequirementId();
+        if (requirementId == null) {
+            requirementId = extractRequirementId(implementation);
+        } else if (requirementIdIndex.isLoaded()) {
+            // Unknown IDs are rejected here, after a single EXISTS and before any model call
+            String known = requirementIdIndex.resolve(requirementId);
+            if (known == null) {
+                throw new AnalysisException(404, "Requirement not found: " + requirementId);
+            }
+            requirementId = known;
+        }
 
-        try {
-            return objectMapper.readValue(jsonResponse, FeedbackResponse.class);
-        } catch (JsonProcessingException e) {
-            // Fallback to parsing if JSON parsing fails
-            return parseReviewResponse(comprehensiveReview);
+        if (requirementId == null) {
+            throw new AnalysisException(400, "Could not identify requirement for this implementation. " +
+                    "Please provide a requirementId or include a UC-{id} comment in your code.");
         }
-    }
 
-    private String extractJsonFromResponse(String response) {
-        Matcher matcher = JSON_PATTERN.matcher(response);
-        if (matcher.find()) {
-            return matcher.group();
+        // Get requirement; one of another tenant is answered like a missing one
+        Requirement requirement = embeddingService.findRequirementById(requirementId, implementation.getTenant());
+        if (requirement == null) {
+            throw new AnalysisException(404, "Requirement not found: " + requirementId);
         }
-        return response; // Return the whole response if no JSON found
+        return requirement;
     }
 
-    private FeedbackResponse parseReviewResponse(String reviewText) {
-        // Fallback parsing if JSON parsing fails
-        FeedbackResponse response = new FeedbackResponse();
-        FeedbackResponse.CodeFeedback codeFeedback = new FeedbackResponse.CodeFeedback();
+    public FeedbackResponse analyzeCode(CodeImplementation implementation, Requirement requirement) {
+        return analyzeCode(implementation, requirement, false, RequestPriority.INTERACTIVE);
+    }
 
-        // Extract alignment score
-        if (reviewText.contains("Alignment Score")) {
-            String[] parts = reviewText.split("Alignment Score");
-            if (parts.length > 1) {
-                String scorePart = parts[1].split("\n")[0];
-                scorePart = scorePart.replaceAll("[^0-9.]", "");
-                try {
-                    response.setAlignmentScore(Double.parseDouble(scorePart));
-                } catch (NumberFormatException e) {
-                    response.setAlignmentScore(5.0); // Default score
+    /**
+     * Reviews the implementation against the requirement, serving repeated submissions from the review cache
+     * and sharing one model run between identical concurrent submissions.
+     * @param forceReview skip the cache lookup and always run both models; the fresh result is still cached.
+     * @param priority admission priority for the model calls.
+     * @throws AdmissionRejectedException when a model has no capacity for the request.
+     */
+    public FeedbackResponse analyzeCode(CodeImplementation implementation, Requirement requirement, boolean forceReview,
+                                        RequestPriority priority) {
+        PipelineStrategy plan = planFor(implementation);
+        String cacheKey = reviewCache.key(implementation, requirement, promptVersion(implementation, plan), codingModelName, reviewModelName);
+        boolean cacheEnabled = reviewCache.isEnabled();
+
+        if (cacheEnabled) {
+            if (forceReview) {
+                reviewCache.recordBypass();
+            } else {
+                FeedbackResponse cached = reviewCache.get(cacheKey);
+                if (cached != null) {
+                    return cached;
                 }
             }
         }
 
-        // Extract requirement misses
-        if (reviewText.contains("Requirement Misses")) {
-            String[] parts = reviewText.split("Requirement Misses");
-            if (parts.length > 1) {
-                String missesPart = parts[1].split("Edge Cases")[0];
-                response.setRequirementMiss(extractListItems(missesPart));
+        // Waiting on another node means reading its result back from the cache, which a forced review must not do;
+        // nor may it join a normal request that does
+        String coalescingKey = forceReview ? cacheKey + ":forced" : cacheKey;
+        return analysisCoalescer.execute(coalescingKey, cacheEnabled && !forceReview, () -> {
+            long start = System.nanoTime();
+            FeedbackResponse feedback = splitsIntoUnits(implementation)
+                    ? mapReduceFeedback(implementation, requirement, plan, priority)
+                    : generateFeedback(implementation, requirement, plan, priority);
+            if (cacheEnabled) {
+                reviewCache.put(cacheKey, feedback, (System.nanoTime() - start) / 1_000_000);
             }
-        }
+            return feedback;
+        });
+    }
 
-        // Extract edge cases
-        if (reviewText.contains("Edge Cases")) {
-            String[] parts = reviewText.split("Edge Cases");
-            if (parts.length > 1) {
-                String casesPart = parts[1].split("Code Feedback")[0];
-                response.setEdgeCases(extractListItems(casesPart));
-            }
+    private FeedbackResponse generateFeedback(CodeImplementation implementation, Requirement requirement,
+                                              PipelineStrategy plan, RequestPriority priority) {
+        long start = System.nanoTime();
+        FeedbackResponse feedback = switch (plan) {
+            case PARALLEL -> parallelFeedback(implementation, requirement, priority);
+            case REVIEW_ONLY -> review(implementation, requirement, null, priority);
+            default -> review(implementation, requirement, initialAnalysis(implementation, priority), priority);
+        };
+        pipelineRuns.get(plan).incrementAndGet();
+        stageTimings.record("total." + plan.name().toLowerCase(), start);
+        return feedback;
+    }
+
+    /**
+     * Map-reduce review of a large Java submission: the code is split at type and member boundaries, the units
+     * are reviewed concurrently, at most {@code app.map-reduce.max-parallel} at a time, and the results merged.
+     * Parts that fail are reported as warnings, unless a model rejected the work for lack of capacity.
+     */
+    private FeedbackResponse mapReduceFeedback(CodeImplementation implementation, Requirement requirement,
+                                               PipelineStrategy plan, RequestPriority priority) {
+        long start = System.nanoTime();
+        String code = implementation.getCode();
+        // Split along the outline kept by the AST analysis, so the code is parsed once per request
+        List<String> units = performAstAnalysis(implementation) instanceof JavaStructuralSummary summary
+                ? JavaSource.splitUnits(code, summary.outline(), unitSize) : List.of(code);
+        stageTimings.record("split", start);
+        if (units.size() < 2) {
+            return generateFeedback(implementation, requirement, plan, priority);
         }
 
-        // Extract code feedback
-        if (reviewText.contains("Code Feedback")) {
-            String[] parts = reviewText.split("Code Feedback");
-            if (parts.length > 1) {
-                String feedbackPart = parts[1].split("Warnings")[0];
-
-                // Extract quality
-                if (feedbackPart.contains("Quality:")) {
-                    String[] qualityParts = feedbackPart.split("Quality:");
-                    if (qualityParts.length > 1) {
-                        String quality = qualityParts[1].split("Optimizations:")[0].trim();
-                        codeFeedback.setQuality(quality);
-                    }
+        Semaphore fanOut = new Semaphore(maxParallelUnits);
+        ExecutorCompletionService<FeedbackResponse> completion = new ExecutorCompletionService<>(pipelineExecutor);
+        Map<Future<FeedbackResponse>, Integer> unitOf = new HashMap<>();
+        for (int i = 0; i < units.size(); i++) {
+            CodeImplementation part = new CodeImplementation(units.get(i), implementation.getLanguage(), implementation.getRequirementId());
+            unitOf.put(completion.submit(() -> {
+                fanOut.acquire();
+                try {
+                    return generateFeedback(part, requirement, plan, priority);
+                } finally {
+                    fanOut.release();
                 }
+            }), i);
+        }
 
-                // Extract optimizations
-                if (feedbackPart.contains("Optimizations:")) {
-                    String[] optParts = feedbackPart.split("Optimizations:");
-                    if (optParts.length > 1) {
-                        String optimizations = optParts[1].split("Standards:")[0];
-                        codeFeedback.setOptimizations(extractListItems(optimizations));
+        // Results are taken as units finish, so a rejection cancels the units still queued or running at once
+        FeedbackResponse[] reviewed = new FeedbackResponse[units.size()];
+        List<String> failures = new ArrayList<>();
+        RuntimeException failure = null;
+        try {
+            for (int done = 0; done < units.size(); done++) {
+                Future<FeedbackResponse> next = completion.take();
+                int i = unitOf.get(next);
+                try {
+                    reviewed[i] = next.get();
+                } catch (CancellationException e) {
+                    // cancelled after another unit failed the whole review
+                } catch (ExecutionException e) {
+                    RuntimeException cause = e.getCause() instanceof RuntimeException runtime
+                            ? runtime : new IllegalStateException(e.getCause());
+                    if (failure == null || cause instanceof AnalysisException) {
+                        failure = cause;
                     }
-                }
-
-                // Extract standards
-                if (feedbackPart.contains("Standards:")) {
-                    String[] stdParts = feedbackPart.split("Standards:");
-                    if (stdParts.length > 1) {
-                        String standards = stdParts[1].trim();
-                        codeFeedback.setStandards(standards);
+                    if (cause instanceof AnalysisException) {
+                        unitOf.keySet().forEach(review -> review.cancel(true));
                     }
+                    failures.add("Part " + (i + 1) + " of " + units.size() + " could not be reviewed: " + cause.getMessage());
                 }
             }
+        } catch (InterruptedException e) {
+            unitOf.keySet().forEach(review -> review.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reviewing the parts of the submission", e);
         }
 
-        // Extract warnings
-        if (reviewText.contains("Warnings")) {
-            String[] parts = reviewText.split("Warnings");
-            if (parts.length > 1) {
-                String warningsPart = parts[1];
-                response.setWarnings(extractListItems(warningsPart));
+        List<FeedbackResponse> results = new ArrayList<>(units.size());
+        List<Integer> weights = new ArrayList<>(units.size());
+        for (int i = 0; i < units.size(); i++) {
+            if (reviewed[i] != null) {
+                results.add(reviewed[i]);
+                weights.add(units.get(i).length());
             }
         }
+        if (results.isEmpty() || failure instanceof AnalysisException) {
+            throw failure;
+        }
 
-        response.setCodeFeedback(codeFeedback);
-        return response;
-    }
-
-    private List<String> extractListItems(String text) {
-        List<String> items = new ArrayList<>();
-        String[] lines = text.split("\n");
-        for (String line : lines) {
-            line = line.trim();
-            if (line.startsWith("-") || line.startsWith("*")) {
-                items.add(line.substring(1).trim());
-            } else if (line.matches("\\d+\\.\\s+.*")) {
-                items.add(line.replaceFirst("\\d+\\.\\s+", ""));
-            } else if (!line.isEmpty() && !line.contains(":")) {
-                items.add(line);
+        FeedbackResponse merged = FeedbackMerger.mergeUnits(results, weights);
+        merged.setRequirementMiss(confirmMisses(implementation, requirement, merged.getRequirementMiss(), priority));
+        merged.setWarnings(FeedbackMerger.union(merged.getWarnings(), failures.isEmpty() ? null : failures));
+        mapReduceRuns.incrementAndGet();
+        mapReduceUnits.addAndGet(units.size());
+        stageTimings.record("mapReduce", start);
+        return merged;
+    }
+
+    /**
+     * Reduce step for the requirement misses of a map-reduce review. Each unit was reviewed against the whole
+     * requirement, so it reports as missing what other units implement; the review model checks the merged misses
+     * once against the requirement and the structure of the whole submission and keeps those that still hold. When
+     * that call fails or its answer cannot be read, the merged misses are returned unchanged.
+     */
+    private List<String> confirmMisses(CodeImplementation implementation, Requirement requirement, List<String> misses,
+                                       RequestPriority priority) {
+        if (misses == null || misses.isEmpty()) {
+            return misses;
+        }
+        long start = System.nanoTime();
+        StringBuilder candidates = new StringBuilder();
+        for (int i = 0; i < misses.size(); i++) {
+            candidates.append(i + 1).append(". ").append(misses.get(i)).append('\n');
+        }
+        String prompt = """
+    The %s submission below was too large to review at once, so its parts were reviewed separately against the
+    whole requirement. Each part reported requirement misses without seeing the other parts, so some of them are
+    implemented elsewhere in the submission.
+
+    REQUIREMENT: %s
+
+    STRUCTURE OF THE WHOLE SUBMISSION:
+    %s
+    REPORTED MISSES:
+    %s
+    Keep only the misses that the submission as a whole does not address, worded as reported. Respond with only
+    a JSON object: {"requirementMiss": ["miss", ...]}
+    """.formatted(implementation.getLanguage(), requirement.getContent(),
+                structuralAnalysisService.describe(performAstAnalysis(implementation)), candidates);
+        try {
+            List<String> confirmed = reviewResponseParser.parse(generateReview(prompt, priority)).getRequirementMiss();
+            if (confirmed == null) {
+                LOG.warn("Could not read the checked requirement misses, keeping all " + misses.size());
+                return misses;
             }
+            mapReduceMissesDropped.addAndGet(Math.max(0, misses.size() - confirmed.size()));
+            return confirmed;
+        } catch (Exception e) {
+            LOG.warn("Checking the requirement misses of the parts failed, keeping all " + misses.size() + ": "
+                    + e.getMessage());
+            return misses;
+        } finally {
+            stageTimings.record("confirmMisses", start);
         }
-        return items;
-    }
-
-    public void performAstAnalysis(CodeImplementation implementation) {
-        String language = implementation.getLanguage().toLowerCase();
-
-        switch (language) {
-            case "java":
-                analyzeJavaAst(implementation.getCode());
-                break;
-            case "python":
-                analyzePythonAst(implementation.getCode());
-                break;
-            case "javascript":
-            case "typescript":
-                analyzeJavaScriptAst(implementation.getCode());
-                break;
-            case "cpp":
-            case "c":
-                analyzeCppAst(implementation.getCode());
-                break;
-            case "go":
-                analyzeGoAst(implementation.getCode());
-                break;
-            case "rust":
-                analyzeRustAst(implementation.getCode());
-                break;
-            default:
-                LOG.error("Unsupported language: " + language);
+    }
+
+    private boolean splitsIntoUnits(CodeImplementation implementation) {
+        return mapReduceEnabled && "java".equalsIgnoreCase(implementation.getLanguage())
+                && implementation.getCode().length() >= mapReduceMinCodeSize;
+    }
+
+    /**
+     * Runs the coding model's code feedback alongside the review instead of ahead of it. The review does not
+     * see the coding model's output; its code feedback is merged in afterwards, so a failed coding model call
+     * only costs that part of the result.
+     */
+    private FeedbackResponse parallelFeedback(CodeImplementation implementation, Requirement requirement,
+                                              RequestPriority priority) {
+        CompletableFuture<FeedbackResponse.CodeFeedback> codingFeedback =
+                CompletableFuture.supplyAsync(() -> codeFeedback(implementation, priority), pipelineExecutor);
+        FeedbackResponse feedback = review(implementation, requirement, null, priority);
+        mergeCodeFeedback(feedback, codingFeedback);
+        return feedback;
+    }
+
+    private void mergeCodeFeedback(FeedbackResponse feedback, CompletableFuture<FeedbackResponse.CodeFeedback> codingFeedback) {
+        FeedbackResponse.CodeFeedback coding;
+        try {
+            coding = codingFeedback.join();
+        } catch (CompletionException e) {
+            parallelCodingFailures.incrementAndGet();
+            LOG.warn("Coding model feedback failed, returning the review alone: " + e.getCause().getMessage());
+            return;
         }
+
+        long start = System.nanoTime();
+        FeedbackMerger.mergeCodeFeedback(feedback, coding);
+        stageTimings.record("merge", start);
     }
 
-    private void analyzeJavaAst(String code) {
+    private String initialAnalysis(CodeImplementation implementation, RequestPriority priority) {
+        long start = System.nanoTime();
+        ModelLimiter.Permit permit = modelAdmissionService.acquire(ModelAdmissionService.Model.CODING, priority);
         try {
-            ASTParser parser = ASTParser.newParser(AST.JLS21);
-            parser.setSource(code.toCharArray());
-            parser.setKind(ASTParser.K_COMPILATION_UNIT);
+            String initialAnalysis = codingModel.generate(initialAnalysisPrompt(implementation));
+            LOG.info("Initial response: "+initialAnalysis);
+            return initialAnalysis;
+        } finally {
+            permit.close();
+            stageTimings.record("initialAnalysis", start);
+        }
+    }
 
-            Map<String, String> options = JavaCore.getOptions();
-            JavaCore.setComplianceOptions(JavaCore.VERSION_21, options);
-            parser.setCompilerOptions(options);
+    private FeedbackResponse.CodeFeedback codeFeedback(CodeImplementation implementation, RequestPriority priority) {
+        long start = System.nanoTime();
+        ModelLimiter.Permit permit = modelAdmissionService.acquire(ModelAdmissionService.Model.CODING, priority);
+        try {
+            String response = codingModel.generate(codeFeedbackPrompt(implementation));
+            LOG.info("Code feedback response: "+response);
+            return reviewResponseParser.parse(response).getCodeFeedback();
+        } finally {
+            permit.close();
+            stageTimings.record("codeFeedback", start);
+        }
+    }
 
-            CompilationUnit cu = (CompilationUnit) parser.createAST(null);
+    /**
+     * Comprehensive review with the review model; {@code initialAnalysis} is null when the strategy skips it.
+     */
+    private FeedbackResponse review(CodeImplementation implementation, Requirement requirement, String initialAnalysis,
+                                    RequestPriority priority) {
+        long start = System.nanoTime();
+        try {
+            String reviewPrompt = reviewPrompt(implementation, requirement, initialAnalysis);
+            if (structuredOutput) {
+                return structuredReview(reviewPrompt, priority);
+            }
 
-            cu.accept(new ASTVisitor() {
-                @Override
-                public boolean visit(MethodDeclaration node) {
-                    LOG.info("Method: " + node.getName());
-                    return super.visit(node);
-                }
+            String comprehensiveReview = generateReview(reviewPrompt, priority);
+            LOG.info("Comprehensive response: "+comprehensiveReview);
+            return reviewResponseParser.parse(comprehensiveReview);
+        } finally {
+            stageTimings.record("review", start);
+        }
+    }
 
-                @Override
-                public boolean visit(VariableDeclarationFragment node) {
-                    LOG.info("Variable: " + node.getName());
-                    return super.visit(node);
-                }
-            });
-        } catch (Exception e) {
-            LOG.error("Java AST analysis failed: " + e.getMessage());
+    /**
+     * Resolves {@link PipelineStrategy#ON_DEMAND} for this submission: the coding model's analysis is only worth
+     * its latency for code that is long or has many branches.
+     */
+    PipelineStrategy planFor(CodeImplementation implementation) {
+        if (pipelineStrategy != PipelineStrategy.ON_DEMAND) {
+            return pipelineStrategy;
+        }
+        StructuralSummary structure = structuralAnalysisService.analyze(implementation);
+        // Cyclomatic complexity is one more than the number of branch points
+        return structure.getLineCount() >= onDemandMinLines || structure.getComplexity() - 1 >= onDemandMinBranches
+                ? PipelineStrategy.SEQUENTIAL : PipelineStrategy.REVIEW_ONLY;
+    }
+
+    /**
+     * Structured-output review: the model runs in JSON mode and its answer must validate against the
+     * {@link FeedbackSchema}. One invalid answer is retried with the validation errors; a second one falls back
+     * to the tolerant parser.
+     */
+    private FeedbackResponse structuredReview(String reviewPrompt, RequestPriority priority) {
+        return structuredReview(reviewPrompt, priority, null, 0);
+    }
+
+    /**
+     * @param streamedAnswer the first answer when the streaming model already generated it, starting at
+     *                       {@code streamStart}; null to generate it here.
+     */
+    private FeedbackResponse structuredReview(String reviewPrompt, RequestPriority priority, String streamedAnswer,
+                                              long streamStart) {
+        List<String> errors = new ArrayList<>();
+        String prompt = reviewPrompt;
+        String comprehensiveReview = null;
+
+        for (int attempt = 0; attempt <= STRUCTURED_RETRIES; attempt++) {
+            long start = System.nanoTime();
+            if (attempt == 0 && streamedAnswer != null) {
+                start = streamStart;
+                comprehensiveReview = streamedAnswer;
+            } else {
+                comprehensiveReview = generateReview(prompt, priority);
+            }
+            LOG.info("Comprehensive response: "+comprehensiveReview);
+            structuredAttempts.incrementAndGet();
+
+            errors.clear();
+            FeedbackResponse feedback = reviewResponseParser.parseStructured(comprehensiveReview, errors);
+            if (feedback != null) {
+                return feedback;
+            }
+
+            structuredInvalid.incrementAndGet();
+            structuredWastedMillis.addAndGet((System.nanoTime() - start) / 1_000_000);
+            LOG.warn("Review output failed schema validation: " + errors);
+            prompt = reviewPrompt + """
+
+    Your previous answer did not match the schema: %s
+    Answer again with only the corrected JSON object.
+    """.formatted(String.join("; ", errors));
+        }
+
+        structuredFallbacks.incrementAndGet();
+        return reviewResponseParser.parse(comprehensiveReview);
+    }
+
+    private String generateReview(String prompt, RequestPriority priority) {
+        ModelLimiter.Permit permit = modelAdmissionService.acquire(ModelAdmissionService.Model.REVIEW, priority);
+        try {
+            return reviewModel.generate(prompt);
+        } finally {
+            permit.close();
         }
     }
 
-    private void analyzePythonAst(String code) {
-        LOG.info("Python AST analysis: Basic structure analysis");
-        // Count functions and classes as a simple analysis
-        long functionCount = code.lines().filter(line -> line.trim().startsWith("def ")).count();
-        long classCount = code.lines().filter(line -> line.trim().startsWith("class ")).count();
-        LOG.info("Functions: " + functionCount + ", Classes: " + classCount);
+    public Map<String, Object> getStructuredOutputStats() {
+        long attempts = structuredAttempts.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", structuredOutput);
+        stats.put("attempts", attempts);
+        stats.put("invalid", structuredInvalid.get());
+        stats.put("fallbacks", structuredFallbacks.get());
+        stats.put("failureRate", attempts == 0 ? 0.0 : (double) structuredInvalid.get() / attempts);
+        stats.put("wastedMillis", structuredWastedMillis.get());
+        return stats;
     }
 
-    private void analyzeJavaScriptAst(String code) {
-        LOG.info("JavaScript AST analysis: Basic structure analysis");
-        // Count functions and classes as a simple analysis
-        long functionCount = code.lines().filter(line -> line.trim().startsWith("function ") || line.contains("=>")).count();
-        long classCount = code.lines().filter(line -> line.trim().startsWith("class ")).count();
-        LOG.info("Functions: " + functionCount + ", Classes: " + classCount);
+    private String promptVersion(CodeImplementation implementation, PipelineStrategy plan) {
+        String version = (structuredOutput ? PROMPT_VERSION + "-structured" : PROMPT_VERSION) + promptBudgetService.keySuffix();
+        if (splitsIntoUnits(implementation)) {
+            version += "-units" + unitSize + "-confirmed";
+        }
+        return plan == PipelineStrategy.SEQUENTIAL ? version : version + "-" + plan.name().toLowerCase();
     }
 
-    private void analyzeCppAst(String code) {
-        LOG.info("C++ AST analysis: Basic structure analysis");
-        // Count functions and classes as a simple analysis
-        long functionCount = code.lines().filter(line -> line.contains("(") && line.contains(")") && line.contains("{")).count();
-        long classCount = code.lines().filter(line -> line.trim().startsWith("class ")).count();
-        LOG.info("Functions: " + functionCount + ", Classes: " + classCount);
+    private String initialAnalysisPrompt(CodeImplementation implementation) {
+        return """
+    Analyze this %s code for quality, optimizations, and standards:
+    
+    %s
+    
+    Provide a concise analysis focusing on code quality, potential optimizations, and adherence to coding standards.
+    """.formatted(implementation.getLanguage(), implementation.getCode());
     }
 
-    private void analyzeGoAst(String code) {
-        LOG.info("Go AST analysis: Basic structure analysis");
-        // Count functions and structs as a simple analysis
-        long functionCount = code.lines().filter(line -> line.trim().startsWith("func ")).count();
-        long structCount = code.lines().filter(line -> line.trim().startsWith("type ") && line.contains("struct")).count();
-        LOG.info("Functions: " + functionCount + ", Structs: " + structCount);
+    private String codeFeedbackPrompt(CodeImplementation implementation) {
+        return """
+    Review this %s code for quality, optimizations, and standards:
+    
+    %s
+    
+    Please format your response as a JSON object with the following structure:
+    {
+      "codeFeedback": {
+        "quality": "comments on quality",
+        "optimizations": ["opt1", "opt2"],
+        "standards": "comments on standards"
+      }
+    }
+    """.formatted(implementation.getLanguage(), implementation.getCode());
+    }
+
+    /**
+     * Builds the review prompt. When the pipeline skipped the initial analysis, the structural summary takes its
+     * place. With the prompt budget enabled, code that does not fit even on its own is replaced by the summary.
+     */
+    private String reviewPrompt(CodeImplementation implementation, Requirement requirement, String initialAnalysis) {
+        StructuralSummary structure = structuralAnalysisService.analyze(implementation);
+        String code = implementation.getCode();
+        String label = initialAnalysis != null ? "INITIAL ANALYSIS" : "CODE STRUCTURE";
+        String analysis = initialAnalysis != null ? initialAnalysis : structuralAnalysisService.describe(structure);
+        if (!promptBudgetService.isEnabled()) {
+            return reviewPrompt(implementation, code, requirement.getContent(), label, analysis);
+        }
+
+        // Decide on the code before compacting, so the requirement and analysis are compacted (and counted) once
+        int fixedTokens = promptBudgetService.countTokens(reviewPrompt(implementation, code, "", label, null));
+        if (fixedTokens > promptBudgetService.budget()) {
+            code = "(" + structure.getLineCount() + " lines, too large to include in full; its structure is:)\n"
+                    + structuralAnalysisService.describe(structure);
+            analysis = initialAnalysis;
+            fixedTokens = promptBudgetService.countTokens(reviewPrompt(implementation, code, "", label, null));
+        }
+        PromptBudgetService.ReviewContext context = promptBudgetService.compactReview(
+                fixedTokens, implementation.getCode(), requirement.getContent(), analysis);
+        return reviewPrompt(implementation, code, context.getRequirement(), label, context.getInitialAnalysis());
+    }
+
+    private String reviewPrompt(CodeImplementation implementation, String code, String requirement, String analysisLabel,
+                                String analysis) {
+        String prompt = """
+    Comprehensive code review task:
+    
+    REQUIREMENT: %s
+    
+    CODE:
+    %s
+    
+    LANGUAGE: %s
+    
+    %sPlease provide a comprehensive review with the following structure:
+    1. Alignment Score (0-10): A numerical score indicating how well the code fulfills the requirement.
+    Also consider while scoring if requirement is Completely, Partially or not met.
+    Penalize if requirement completely missed.
+    2. Requirement Misses: List any aspects of the requirement that are not addressed
+    Classify if the requirement is Completely, Partially or not met. Highlight all deviation.
+    3. Edge Cases: List any edge cases that should be handled
+    4. Code Feedback: 
+       - Quality: Comments on code quality
+       - Optimizations: Specific optimization suggestions
+       - Standards: Adherence to coding standards
+    5. Warnings: Any other warnings or concerns
+    
+    Please format your response as a JSON object with the following structure:
+    {
+      "alignmentScore": 8.5,
+      "requirementMiss": ["item1", "item2"],
+      "edgeCases": ["case1", "case2"],
+      "codeFeedback": {
+        "quality": "comments on quality",
+        "optimizations": ["opt1", "opt2"],
+        "standards": "comments on standards"
+      },
+      "warnings": ["warning1", "warning2"]
+    }
+    """.formatted(
+                requirement,
+                code,
+                implementation.getLanguage(),
+                analysis == null ? "" : analysisLabel + ": " + analysis + "\n\n"
+        );
+
+        if (structuredOutput) {
+            prompt += """
+
+    Respond with only the JSON object, with no markdown or commentary. It must validate against this JSON schema:
+    %s
+    """.formatted(feedbackSchema.json());
+        }
+        return prompt;
     }
 
-    private void analyzeRustAst(String code) {
-        LOG.info("Rust AST analysis: Basic structure analysis");
-        // Count functions and structs as a simple analysis
-        long functionCount = code.lines().filter(line -> line.trim().startsWith("fn ")).count();
-        long structCount = code.lines().filter(line -> line.trim().startsWith("struct ")).count();
-        LOG.info("Functions: " + functionCount + ", Structs: " + structCount);
+    /**
+     * Structural summary of the submission; cached, so calling it ahead of the review warms the cache for the
+     * prompt building and pipeline planning that use it.
+     */
+    public StructuralSummary performAstAnalysis(CodeImplementation implementation) {
+        return structuralAnalysisService.analyze(implementation);
     }
-}
\ No newline at end of file
+}
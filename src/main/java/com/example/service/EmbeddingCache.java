@@ -0,0 +1,195 @@
+package com.example.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed embedding cache. Vectors are keyed by a SHA-256 of the embedding model name and the text,
+ * held as float arrays in a local LRU tier and as packed little-endian float32 values in a shared Redis tier.
+ */
+@ApplicationScoped
+public class EmbeddingCache {
+
+    private static final Logger LOG = Logger.getLogger(EmbeddingCache.class);
+    private static final String KEY_PREFIX = "embeddings:";
+
+    @Inject
+    EmbeddingModel embeddingModel;
+
+    @Inject
+    Redis redis;
+
+    @ConfigProperty(name = "ollama.embedding.model")
+    String embeddingModelName;
+
+    @ConfigProperty(name = "app.embedding-cache.local-size", defaultValue = "10000")
+    int localSize;
+
+    @ConfigProperty(name = "app.embedding-cache.ttl", defaultValue = "30d")
+    Duration ttl;
+
+    private final LinkedHashMap<String, float[]> local = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+            return size() > localSize;
+        }
+    };
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong redisHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public Embedding embed(String text) {
+        return embedAll(List.of(TextSegment.from(text))).get(0);
+    }
+
+    /**
+     * Returns one embedding per segment, in order. Local hits are served from memory, the remaining keys are
+     * fetched with a single MGET, and only what is still missing goes to the embedding model in one call.
+     */
+    public List<Embedding> embedAll(List<TextSegment> segments) {
+        return embedAll(segments, null);
+    }
+
+    /**
+     * Like {@link #embedAll(List)}, adding to {@code modelCalls}, when given, the number of texts this call sent
+     * to the model; the global miss counter also counts concurrent requests.
+     */
+    public List<Embedding> embedAll(List<TextSegment> segments, AtomicLong modelCalls) {
+        int size = segments.size();
+        String[] keys = new String[size];
+        float[][] vectors = new float[size][];
+        List<Integer> pending = new ArrayList<>();
+
+        synchronized (local) {
+            for (int i = 0; i < size; i++) {
+                keys[i] = key(segments.get(i).text());
+                vectors[i] = local.get(keys[i]);
+                if (vectors[i] == null) {
+                    pending.add(i);
+                }
+            }
+        }
+        localHits.addAndGet(size - pending.size());
+
+        if (!pending.isEmpty()) {
+            pending = fetchShared(keys, vectors, pending);
+        }
+
+        if (!pending.isEmpty()) {
+            misses.addAndGet(pending.size());
+            if (modelCalls != null) {
+                modelCalls.addAndGet(pending.size());
+            }
+            List<TextSegment> missing = new ArrayList<>(pending.size());
+            for (int i : pending) {
+                missing.add(segments.get(i));
+            }
+
+            List<Embedding> computed = embeddingModel.embedAll(missing).content();
+            for (int j = 0; j < pending.size(); j++) {
+                vectors[pending.get(j)] = computed.get(j).vector();
+            }
+            storeShared(keys, vectors, pending);
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(size);
+        for (float[] vector : vectors) {
+            embeddings.add(Embedding.from(vector));
+        }
+        return embeddings;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (local) {
+            stats.put("localEntries", local.size());
+        }
+        stats.put("localHits", localHits.get());
+        stats.put("redisHits", redisHits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    private List<Integer> fetchShared(String[] keys, float[][] vectors, List<Integer> pending) {
+        Request mget = Request.cmd(Command.MGET);
+        for (int i : pending) {
+            mget.arg(KEY_PREFIX + keys[i]);
+        }
+
+        List<Integer> stillMissing = new ArrayList<>();
+        try {
+            Response values = redis.sendAndAwait(mget);
+            for (int j = 0; j < pending.size(); j++) {
+                int i = pending.get(j);
+                Response value = values.get(j);
+                if (value == null) {
+                    stillMissing.add(i);
+                } else {
+                    vectors[i] = decode(value.toBytes());
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("Embedding cache read from Redis failed: " + e.getMessage());
+            return pending;
+        }
+
+        redisHits.addAndGet(pending.size() - stillMissing.size());
+        synchronized (local) {
+            for (int i : pending) {
+                if (vectors[i] != null) {
+                    local.put(keys[i], vectors[i]);
+                }
+            }
+        }
+        return stillMissing;
+    }
+
+    private void storeShared(String[] keys, float[][] vectors, List<Integer> computed) {
+        List<Request> writes = new ArrayList<>(computed.size());
+        synchronized (local) {
+            for (int i : computed) {
+                local.put(keys[i], vectors[i]);
+                writes.add(Request.cmd(Command.SET).arg(KEY_PREFIX + keys[i]).arg(encode(vectors[i]))
+                        .arg("PX").arg(ttl.toMillis()));
+            }
+        }
+
+        try {
+            redis.batchAndAwait(writes);
+        } catch (Exception e) {
+            LOG.warn("Embedding cache write to Redis failed: " + e.getMessage());
+        }
+    }
+
+    private String key(String text) {
+        return ContentHash.sha256(embeddingModelName, text);
+    }
+
+    static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    static float[] decode(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+}
@@ -4,33 +4,53 @@ import com.example.dto.Requirement;
 import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
 import dev.langchain4j.store.embedding.redis.RedisEmbeddingStore;
-import io.quarkus.redis.client.RedisClient;
-import io.quarkus.redis.datasource.ScanArgs;
-import io.quarkus.redis.datasource.keys.KeyScanCursor;
-import io.vertx.redis.client.Response;
+import io.quarkus.runtime.ShutdownEvent;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.RedisConnection;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 @ApplicationScoped
 public class EmbeddingService {
 
     @Inject
-    EmbeddingModel embeddingModel;
+    EmbeddingCache embeddingCache;
 
     @Inject
-    RedisClient redisClient;
+    Redis redis;
 
     @Inject
     TextChunkingService textChunkingService;
 
+    @Inject
+    RequirementCache requirementCache;
+
+    @Inject
+    RequirementIdIndex requirementIdIndex;
+
+    @Inject
+    LexicalRequirementIndex lexicalRequirementIndex;
+
     @ConfigProperty(name = "redis.vector.index")
     String indexName;
 
@@ -40,120 +60,837 @@ public class EmbeddingService {
     @ConfigProperty(name = "quarkus.redis.hosts")
     String redisHost;
 
+    @ConfigProperty(name = "app.embedding.batch-size", defaultValue = "32")
+    int embeddingBatchSize;
+
+    @ConfigProperty(name = "app.vector-store.type", defaultValue = "redis")
+    String vectorStoreType;
+
+    @ConfigProperty(name = "app.vector-store.redis.vector-type", defaultValue = "float32")
+    RedisVectorType redisVectorType;
+
+    @ConfigProperty(name = "app.vector-store.redis.rerank-factor", defaultValue = "4")
+    int redisReRankFactor;
+
+    @ConfigProperty(name = "app.vector-store.hnsw.m", defaultValue = "16")
+    int hnswM;
+
+    @ConfigProperty(name = "app.vector-store.hnsw.ef-construction", defaultValue = "200")
+    int hnswEfConstruction;
+
+    @ConfigProperty(name = "app.vector-store.hnsw.ef-search", defaultValue = "200")
+    int hnswEfSearch;
+
+    @ConfigProperty(name = "app.vector-store.hnsw.quantization", defaultValue = "none")
+    VectorQuantization hnswQuantization;
+
+    @ConfigProperty(name = "app.vector-store.hnsw.recall-probe-every", defaultValue = "100")
+    int hnswRecallProbeEvery;
+
+    @ConfigProperty(name = "app.vector-store.hnsw.snapshot-path", defaultValue = "data/requirements.hnsw")
+    String hnswSnapshotPath;
+
+    @ConfigProperty(name = "app.vector-store.hnsw.snapshot-interval", defaultValue = "5m")
+    Duration hnswSnapshotInterval;
+
+    @ConfigProperty(name = "app.vector-store.hnsw.compact-ratio", defaultValue = "0.2")
+    double hnswCompactRatio;
+
+    @ConfigProperty(name = "app.tenancy.default-tenant", defaultValue = "default")
+    String defaultTenant;
+
+    @ConfigProperty(name = "app.tenancy.partitioned", defaultValue = "false")
+    boolean partitioned;
+
+    @ConfigProperty(name = "app.tenancy.tenants")
+    Optional<List<String>> configuredTenants;
+
     private static final Logger LOG = Logger.getLogger(EmbeddingService.class);
+    private static final String SHARED = "";
+    // Every tenant that has stored a requirement; searches open a partition only for these and configured ones
+    private static final String TENANTS_KEY = "requirements:tenants";
+    // Over-fetch for indexes without TAG fields, which can only be filtered after the KNN query
+    private static final int POST_FILTER_OVER_FETCH = 4;
+    private static final int MAX_WRITE_ATTEMPTS = 5;
+
+    // One partition, SHARED, unless app.tenancy.partitioned gives every tenant its own index
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+
+    // Ingest holds the read lock; an index rebuild holds the write lock, so no requirement stored meanwhile is lost
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
 
-    private EmbeddingStore<TextSegment> embeddingStore;
+    // Writes of one requirement are serialized, so two of them never keep or remove each other's vectors
+    private final ReentrantLock[] requirementLocks = lockStripes(64);
+
+    private final AtomicLong ingestedChunks = new AtomicLong();
+    private final AtomicLong unchangedChunks = new AtomicLong();
+    private final AtomicLong removedVectors = new AtomicLong();
+    private final AtomicLong writeRetries = new AtomicLong();
+    private final AtomicLong ingestNanos = new AtomicLong();
+    private final AtomicLong filteredSearches = new AtomicLong();
+    private final AtomicLong postFilteredSearches = new AtomicLong();
+
+    private static ReentrantLock[] lockStripes(int count) {
+        ReentrantLock[] locks = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
 
     @Inject
     void initEmbeddingStore() {
+        if (!partitioned) {
+            partitions.put(SHARED, openPartition(SHARED));
+        }
+    }
+
+    /**
+     * The vector index of a tenant: its own when partitioned, opened on first use, else the shared one.
+     */
+    private Partition partition(String tenant) {
+        return partitioned ? partitions.computeIfAbsent(tenant, this::openPartition) : partitions.get(SHARED);
+    }
+
+    /**
+     * The partition to search for a tenant, or null for a tenant that is neither configured nor has stored a
+     * requirement, so requests naming arbitrary tenants cannot open an index each.
+     */
+    private Partition searchPartition(String tenant) {
+        if (!partitioned || partitions.containsKey(tenant)) {
+            return partition(tenant);
+        }
+        boolean known = tenant.equals(defaultTenant)
+                || configuredTenants.map(tenants -> tenants.contains(tenant)).orElse(false)
+                || redis.sendAndAwait(Request.cmd(Command.SISMEMBER).arg(TENANTS_KEY).arg(tenant)).toInteger() == 1;
+        return known ? partition(tenant) : null;
+    }
+
+    private Partition openPartition(String tenant) {
+        if ("hnsw".equalsIgnoreCase(vectorStoreType)) {
+            Path snapshot = Path.of(hnswSnapshotPath);
+            if (!tenant.isEmpty()) {
+                snapshot = snapshot.resolveSibling(snapshot.getFileName() + "." + tenant);
+            }
+            HnswEmbeddingStore store = HnswEmbeddingStore.open(snapshot, dimension, hnswM, hnswEfConstruction,
+                    hnswEfSearch, hnswQuantization, hnswRecallProbeEvery, hnswCompactRatio, hnswSnapshotInterval);
+            return new Partition(store, store, null);
+        }
+
+        RedisVectorIndex index = tenant.isEmpty()
+                ? new RedisVectorIndex(redis, indexName, "embedding:")
+                : new RedisVectorIndex(redis, indexName + ":" + tenant, "tenant:" + tenant + ":embedding:");
+        // Created here with TAG fields before the store would create it with TEXT fields; an existing index
+        // stays as it is until it is rebuilt
+        String info = index.info();
+        if (info == null) {
+            index.create(dimension, redisVectorType);
+            info = index.info();
+        }
+        Partition partition = new Partition(createRedisStore(index), null, index);
+        partition.refresh(info);
+        if (partition.indexDimension != dimension) {
+            LOG.warnf("Vector index %s has dimension %d, configured dimension is %d; searches fail until "
+                    + "POST /api/requirements/reindex rebuilds it", index.name(), partition.indexDimension, dimension);
+        }
+        if (partition.vectorType != redisVectorType) {
+            LOG.warnf("Vector index %s holds %s vectors, configured type is %s; it is searched as it is until "
+                    + "POST /api/requirements/reindex rebuilds it", index.name(), partition.vectorType, redisVectorType);
+        }
+        if (!partition.tagFields) {
+            LOG.warnf("Vector index %s has no TAG fields, so filters are applied after the KNN query; "
+                    + "POST /api/requirements/reindex rebuilds it", index.name());
+        }
+        return partition;
+    }
+
+    private EmbeddingStore<TextSegment> createRedisStore(RedisVectorIndex index) {
         try {
             // Extract host and port from the Redis URL
             String host = redisHost.replace("redis://", "").split(":")[0];
             int port = Integer.parseInt(redisHost.replace("redis://", "").split(":")[1]);
 
-            this.embeddingStore = RedisEmbeddingStore.builder()
+            return RedisEmbeddingStore.builder()
                     .host(host)
                     .port(port)
-                    .indexName(indexName)
+                    .indexName(index.name())
+                    .prefix(index.prefix())
                     .dimension(dimension)
+                    // Returned with every match, so a match can be traced back to its requirement
+                    .metadataKeys(RedisVectorIndex.METADATA_KEYS)
                     .build();
         } catch (Exception e) {
             throw new RuntimeException("Failed to initialize Redis embedding store: " + e.getMessage(), e);
         }
     }
 
+    void onStop(@Observes ShutdownEvent ev) {
+        for (Partition partition : partitions.values()) {
+            partition.close();
+        }
+    }
+
+    /**
+     * Stores a new requirement or updates a stored one. An update diffs the new chunks against the stored
+     * chunk hashes: a chunk with the same content at the same index keeps its vector, the others are embedded
+     * and added, and the vectors and chunk hashes no longer used are removed in the transaction that writes the
+     * new meta hash. The meta hash is watched from the read to that transaction, so a write of the same
+     * requirement by another node aborts it and the update starts over from a fresh read.
+     * @throws AnalysisException 404 when the id is stored for another tenant.
+     */
     public String storeRequirement(Requirement requirement) {
+        // Ensure ID exists
+        String id = requirement.getId() != null ? requirement.getId() : UUID.randomUUID().toString();
+        String tenant = requirement.getTenant() != null ? requirement.getTenant() : defaultTenant;
+
+        indexLock.readLock().lock();
+        ReentrantLock requirementLock = requirementLock(id);
+        requirementLock.lock();
         try {
-            // Ensure ID exists
-            String id = requirement.getId() != null ? requirement.getId() : UUID.randomUUID().toString();
+            for (int attempt = 1; !tryStore(id, tenant, requirement); attempt++) {
+                retryWrite(id, attempt);
+            }
+            return id;
+
+        } catch (AnalysisException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to store requirement: " + e.getMessage(), e);
+        } finally {
+            requirementLock.unlock();
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One attempt of {@link #storeRequirement}. Returns false when another node wrote the requirement after it
+     * was read; the transaction is then aborted and the vectors this attempt added are removed.
+     */
+    private boolean tryStore(String id, String tenant, Requirement requirement) {
+        String metaKey = "requirements:" + id + ":meta";
+        Partition partition = null;
+        List<String> added = new ArrayList<>();
+        boolean committed = false;
+        RedisConnection connection = redis.connectAndAwait();
+        boolean watching = false;
+        try {
+            connection.sendAndAwait(Request.cmd(Command.WATCH).arg(metaKey));
+            watching = true;
+            StoredRequirement stored = readStored(id);
+            if (stored != null && !tenant.equals(stored.tenant)) {
+                // Answered like a missing requirement, so ids of other tenants are not disclosed
+                throw new AnalysisException(404, "Requirement not found: " + id);
+            }
+            partition = partition(tenant);
+            // Vectors carry the kind in their metadata, so they are kept only while it is unchanged
+            boolean reusable = stored != null && stored.vectorIds != null
+                    && Objects.equals(requirement.getMetadata(), stored.type);
+
+            // A node-local store is asked for the vectors it holds: vector ids recorded in Redis would be those
+            // of whichever node wrote the requirement last
+            Map<String, TextSegment> local = partition.hnsw != null
+                    ? partition.hnsw.findSegments(requirementFilter(id)) : Map.of();
+            Map<String, String> localByChunk = new HashMap<>();
+            local.forEach((vectorId, segment) -> {
+                Metadata metadata = segment.metadata();
+                if (tenant.equals(metadata.getString("tenant"))
+                        && Objects.equals(requirement.getMetadata(), metadata.getString("metadata"))) {
+                    localByChunk.put(metadata.getString("chunkIndex") + ":" + ContentHash.sha256(segment.text()),
+                            vectorId);
+                }
+            });
 
             // Split into chunks
             List<TextSegment> chunks = textChunkingService.chunkText(requirement.getContent());
 
+            List<TextSegment> segments = new ArrayList<>(chunks.size());
+            String[] hashes = new String[chunks.size()];
+            String[] vectorIds = new String[chunks.size()];
+            List<Integer> changed = new ArrayList<>();
             for (int i = 0; i < chunks.size(); i++) {
+                segments.add(chunkSegment(id, i, chunks.get(i).text(), requirement.getMetadata(), tenant));
+                hashes[i] = ContentHash.sha256(chunks.get(i).text());
+                if (partition.hnsw != null) {
+                    vectorIds[i] = localByChunk.get(i + ":" + hashes[i]);
+                } else if (reusable && i < stored.chunkCount && hashes[i].equals(stored.hashes[i])) {
+                    vectorIds[i] = stored.vectorIds[i];
+                }
+                if (vectorIds[i] == null) {
+                    changed.add(i);
+                }
+            }
 
-                // build metadata
-                Map<String, String> metadataMap = new HashMap<>();
-                metadataMap.put("requirementId", id);
-                metadataMap.put("chunkIndex", String.valueOf(i));
-                metadataMap.put("metadata", requirement.getMetadata());
-
-                Metadata metadata = Metadata.from(metadataMap);
+            // Looked up before the new vectors are added, for requirements stored without vector ids
+            List<String> orphans = new ArrayList<>();
+            List<String> storedVectors = partition.hnsw != null ? new ArrayList<>(local.keySet())
+                    : stored == null ? List.of()
+                    : stored.vectorIds != null ? Arrays.asList(stored.vectorIds) : partition.vectorIds(id);
+            if (storedVectors == null) {
+                LOG.warnf("Vector index %s cannot be searched by requirement; the old vectors of %s stay until "
+                        + "POST /api/requirements/reindex rebuilds it", partition.index.name(), id);
+            } else {
+                Set<String> kept = new HashSet<>(Arrays.asList(vectorIds));
+                for (String vectorId : storedVectors) {
+                    if (!kept.contains(vectorId)) {
+                        orphans.add(vectorId);
+                    }
+                }
+            }
 
-                TextSegment segment = TextSegment.from(
-                        chunks.get(i).text(), metadata
-                );
+            long start = System.nanoTime();
 
-                // Embed each chunk
-                Embedding embedding = embeddingModel.embed(segment.text()).content();
+            // Embed and index changed chunks batch by batch; chunks seen before are served from the embedding cache
+            for (int from = 0; from < changed.size(); from += embeddingBatchSize) {
+                List<TextSegment> batch = changed.subList(from, Math.min(from + embeddingBatchSize, changed.size()))
+                        .stream().map(segments::get).toList();
+                List<Embedding> embeddings = truncateAll(embeddingCache.embedAll(batch), dimension);
+                added.addAll(partition.store.addAll(embeddings, batch));
+            }
+            for (int c = 0; c < changed.size(); c++) {
+                vectorIds[changed.get(c)] = added.get(c);
+            }
 
-                // Store in Redis vector index
-                embeddingStore.add(embedding, segment);
+            long elapsedNanos = System.nanoTime() - start;
+            ingestedChunks.addAndGet(changed.size());
+            ingestNanos.addAndGet(elapsedNanos);
+            unchangedChunks.addAndGet(segments.size() - changed.size());
+            LOG.infof("Embedded %d of %d chunks of requirement %s in %d ms (%.1f chunks/sec, batch size %d), "
+                            + "removing %d old vectors", changed.size(), segments.size(), id, elapsedNanos / 1_000_000,
+                    chunksPerSecond(changed.size(), elapsedNanos), embeddingBatchSize, orphans.size());
 
-                // Also store in Redis hash
+            // Write the changed chunk hashes, drop the ones past the new end and the orphaned vectors, and write
+            // the meta hash in one MULTI/EXEC, flushed as a single pipeline, so the meta key never becomes
+            // visible without the chunks it points at
+            List<Request> commands = new ArrayList<>(changed.size() + 6);
+            commands.add(Request.cmd(Command.MULTI));
+            for (int i : changed) {
                 String chunkKey = "requirements:" + id + ":chunk:" + i;
-                redisClient.hset(List.of(chunkKey, "id", id));
-                redisClient.hset(List.of(chunkKey, "chunkIndex", String.valueOf(i)));
-                redisClient.hset(List.of(chunkKey, "content", segment.text()));
-                redisClient.hset(List.of(chunkKey, "metadata", requirement.getMetadata()));
+                Request write = Request.cmd(Command.HSET).arg(chunkKey)
+                        .arg("id").arg(id)
+                        .arg("chunkIndex").arg(String.valueOf(i))
+                        .arg("content").arg(segments.get(i).text())
+                        .arg("metadata").arg(requirement.getMetadata())
+                        .arg("tenant").arg(tenant)
+                        .arg("contentHash").arg(hashes[i]);
+                if (partition.hnsw == null) {
+                    write.arg("vectorId").arg(vectorIds[i]);
+                }
+                commands.add(write);
+            }
+            if (stored != null && stored.chunkCount > segments.size()) {
+                Request delete = Request.cmd(Command.DEL);
+                for (int i = segments.size(); i < stored.chunkCount; i++) {
+                    delete.arg("requirements:" + id + ":chunk:" + i);
+                }
+                commands.add(delete);
             }
+            if (partition.index != null && !orphans.isEmpty()) {
+                commands.add(deleteVectors(partition.index, orphans));
+            }
+            commands.add(Request.cmd(Command.SADD).arg(TENANTS_KEY).arg(tenant));
 
-            // Store requirement metadata (id, total chunks, global metadata)
-            String metaKey = "requirements:" + id + ":meta";
-            redisClient.hset(List.of(metaKey, "id", id));
-            redisClient.hset(List.of(metaKey, "chunkCount", String.valueOf(chunks.size())));
-            redisClient.hset(List.of(metaKey, "metadata", requirement.getMetadata()));
+            // Store requirement metadata (id, total chunks, global metadata) plus the original,
+            // de-overlapped content so findRequirementById can read it back in one round trip
+            commands.add(Request.cmd(Command.HSET).arg(metaKey)
+                    .arg("id").arg(id)
+                    .arg("chunkCount").arg(String.valueOf(segments.size()))
+                    .arg("metadata").arg(requirement.getMetadata())
+                    .arg("tenant").arg(tenant)
+                    .arg("content").arg(requirement.getContent()));
+            commands.add(Request.cmd(Command.EXEC));
 
-            return id;
+            List<Response> replies = connection.batchAndAwait(commands);
+            watching = false;
+            if (replies.get(replies.size() - 1) == null) {
+                return false;
+            }
+            committed = true;
+            if (partition.hnsw != null) {
+                partition.hnsw.removeAll(orphans);
+            }
+            removedVectors.addAndGet(orphans.size());
+
+            requirementIdIndex.add(id);
+            lexicalRequirementIndex.put(id, tenant, requirement.getMetadata(),
+                    segments.stream().map(TextSegment::text).toList());
+            requirementCache.invalidate(id);
+            return true;
+
+        } finally {
+            if (!committed && partition != null && !added.isEmpty()) {
+                removeVectorsQuietly(partition, added);
+            }
+            release(connection, watching);
+        }
+    }
+
+    /**
+     * Deletes a requirement of the given tenant (null for the default one): its meta hash, chunk hashes and
+     * vectors, in one transaction for a RediSearch index, watched like {@link #storeRequirement}. Returns false
+     * when the tenant has no such requirement.
+     */
+    public boolean deleteRequirement(String id, String tenant) {
+        indexLock.readLock().lock();
+        ReentrantLock requirementLock = requirementLock(id);
+        requirementLock.lock();
+        try {
+            Boolean deleted;
+            for (int attempt = 1; (deleted = tryDelete(id, tenant != null ? tenant : defaultTenant)) == null;
+                 attempt++) {
+                retryWrite(id, attempt);
+            }
+            return deleted;
 
         } catch (Exception e) {
-            throw new RuntimeException("Failed to store requirement: " + e.getMessage(), e);
+            throw new RuntimeException("Failed to delete requirement: " + e.getMessage(), e);
+        } finally {
+            requirementLock.unlock();
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One attempt of {@link #deleteRequirement}; null when another node wrote the requirement after it was read.
+     */
+    private Boolean tryDelete(String id, String tenant) {
+        String metaKey = "requirements:" + id + ":meta";
+        RedisConnection connection = redis.connectAndAwait();
+        boolean watching = false;
+        try {
+            connection.sendAndAwait(Request.cmd(Command.WATCH).arg(metaKey));
+            watching = true;
+            StoredRequirement stored = readStored(id);
+            if (stored == null || !stored.tenant.equals(tenant)) {
+                return false;
+            }
+            Partition partition = partition(stored.tenant);
+            List<String> vectors = stored.vectorIds != null ? Arrays.asList(stored.vectorIds) : partition.vectorIds(id);
+            if (vectors == null) {
+                LOG.warnf("Vector index %s cannot be searched by requirement; the vectors of %s stay until "
+                        + "POST /api/requirements/reindex rebuilds it", partition.index.name(), id);
+                vectors = List.of();
+            }
+
+            List<Request> commands = new ArrayList<>(4);
+            commands.add(Request.cmd(Command.MULTI));
+            Request delete = Request.cmd(Command.DEL).arg(metaKey);
+            for (int i = 0; i < stored.chunkCount; i++) {
+                delete.arg("requirements:" + id + ":chunk:" + i);
+            }
+            commands.add(delete);
+            if (partition.index != null && !vectors.isEmpty()) {
+                commands.add(deleteVectors(partition.index, vectors));
+            }
+            commands.add(Request.cmd(Command.EXEC));
+
+            List<Response> replies = connection.batchAndAwait(commands);
+            watching = false;
+            if (replies.get(replies.size() - 1) == null) {
+                return null;
+            }
+            if (partition.hnsw != null) {
+                partition.hnsw.removeAll(vectors);
+            }
+            removedVectors.addAndGet(vectors.size());
+            LOG.infof("Deleted requirement %s with %d chunks and %d vectors", id, stored.chunkCount, vectors.size());
+
+            requirementIdIndex.remove(id);
+            lexicalRequirementIndex.remove(id);
+            requirementCache.invalidate(id);
+            return true;
+
+        } finally {
+            release(connection, watching);
+        }
+    }
+
+    private void retryWrite(String id, int attempt) {
+        if (attempt >= MAX_WRITE_ATTEMPTS) {
+            throw new IllegalStateException("Requirement " + id + " kept changing on another node; gave up after "
+                    + attempt + " attempts");
+        }
+        writeRetries.incrementAndGet();
+        LOG.debugf("Requirement %s was written by another node meanwhile, retrying", id);
+    }
+
+    /**
+     * Returns a connection to the pool with no WATCH left on it, which would abort the next transaction sent
+     * over it.
+     */
+    private static void release(RedisConnection connection, boolean watching) {
+        try {
+            if (watching) {
+                connection.sendAndAwait(Request.cmd(Command.UNWATCH));
+            }
+        } catch (Exception e) {
+            LOG.warnf("Failed to unwatch a requirement: %s", e.getMessage());
+        } finally {
+            connection.closeAndAwait();
         }
     }
 
+    /**
+     * The stored state of a requirement, read in two pipelines: its meta hash, then the hash and vector id of
+     * every chunk. Null when it is not stored.
+     */
+    private StoredRequirement readStored(String id) {
+        Response meta = redis.sendAndAwait(Request.cmd(Command.HMGET).arg("requirements:" + id + ":meta")
+                .arg("chunkCount").arg("metadata").arg("tenant"));
+        if (meta == null || meta.get(0) == null) {
+            return null;
+        }
+        int chunkCount = meta.get(0).toInteger();
+        String type = meta.get(1) == null ? null : meta.get(1).toString();
+        // Requirements stored before tenants existed belong to the default tenant
+        String tenant = meta.get(2) == null ? defaultTenant : meta.get(2).toString();
+
+        String[] hashes = new String[chunkCount];
+        String[] vectorIds = new String[chunkCount];
+        boolean complete = true;
+        if (chunkCount > 0) {
+            List<Request> reads = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                reads.add(Request.cmd(Command.HMGET).arg("requirements:" + id + ":chunk:" + i)
+                        .arg("contentHash").arg("vectorId"));
+            }
+            List<Response> chunks = redis.batchAndAwait(reads);
+            for (int i = 0; i < chunkCount; i++) {
+                Response hash = chunks.get(i).get(0);
+                Response vectorId = chunks.get(i).get(1);
+                hashes[i] = hash == null ? null : hash.toString();
+                vectorIds[i] = vectorId == null ? null : vectorId.toString();
+                complete &= vectorIds[i] != null;
+            }
+        }
+        // Chunks stored before vector ids were recorded: their vectors are looked up in the index. Node-local
+        // stores never use the recorded ids, which belong to the node that wrote them
+        return new StoredRequirement(chunkCount, type, tenant, hashes, complete && !isNodeLocal() ? vectorIds : null);
+    }
+
+    private static Filter requirementFilter(String requirementId) {
+        return object -> object instanceof Metadata metadata
+                && requirementId.equals(metadata.getString("requirementId"));
+    }
+
+    private static Request deleteVectors(RedisVectorIndex index, List<String> vectorIds) {
+        Request delete = Request.cmd(Command.DEL);
+        for (String vectorId : vectorIds) {
+            delete.arg(index.key(vectorId));
+        }
+        return delete;
+    }
+
+    private void removeVectorsQuietly(Partition partition, List<String> vectorIds) {
+        try {
+            if (partition.hnsw != null) {
+                partition.hnsw.removeAll(vectorIds);
+            } else {
+                redis.sendAndAwait(deleteVectors(partition.index, vectorIds));
+            }
+        } catch (Exception e) {
+            LOG.warnf("Failed to remove %d vectors of a failed write: %s", vectorIds.size(), e.getMessage());
+        }
+    }
+
+    private ReentrantLock requirementLock(String id) {
+        return requirementLocks[Math.floorMod(id.hashCode(), requirementLocks.length)];
+    }
+
+    /**
+     * The segment stored for chunk {@code index} of a requirement; its metadata is returned with every match,
+     * and {@code metadata} (the kind of requirement) and {@code tenant} are TAG fields searches filter on.
+     */
+    static TextSegment chunkSegment(String requirementId, int index, String text, String requirementMetadata,
+                                    String tenant) {
+        Map<String, String> metadataMap = new HashMap<>();
+        metadataMap.put("requirementId", requirementId);
+        metadataMap.put("chunkIndex", String.valueOf(index));
+        if (requirementMetadata != null) {
+            metadataMap.put("metadata", requirementMetadata);
+        }
+        metadataMap.put("tenant", tenant);
+        return TextSegment.from(text, Metadata.from(metadataMap));
+    }
+
+    /**
+     * Matryoshka truncation. nomic-embed-text v1.5 is trained so that a prefix of its vector is itself an
+     * embedding: keeping the first {@code dimension} values and re-normalizing gives a proportionally smaller
+     * and faster index for a small loss in recall. Vectors of exactly {@code dimension} pass unchanged.
+     */
+    static Embedding truncate(Embedding embedding, int dimension) {
+        float[] vector = embedding.vector();
+        if (vector.length == dimension) {
+            return embedding;
+        }
+        if (vector.length < dimension) {
+            throw new IllegalStateException("Embedding model returned " + vector.length
+                    + " dimensions, the index expects " + dimension);
+        }
+        float[] prefix = Arrays.copyOf(vector, dimension);
+        double norm = 0;
+        for (float value : prefix) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < prefix.length; i++) {
+                prefix[i] *= scale;
+            }
+        }
+        return Embedding.from(prefix);
+    }
+
+    static List<Embedding> truncateAll(List<Embedding> embeddings, int dimension) {
+        List<Embedding> truncated = new ArrayList<>(embeddings.size());
+        for (Embedding embedding : embeddings) {
+            truncated.add(truncate(embedding, dimension));
+        }
+        return truncated;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    ReadWriteLock indexLock() {
+        return indexLock;
+    }
+
+    String defaultTenant() {
+        return defaultTenant;
+    }
+
+    /**
+     * Whether vectors live in this node's own HNSW stores rather than in shared Redis, so they must be
+     * reconciled with the requirements in Redis.
+     */
+    boolean isNodeLocal() {
+        return "hnsw".equalsIgnoreCase(vectorStoreType);
+    }
+
+    /**
+     * Live vectors of the HNSW stores of the given tenants (all of them share one store unless partitioned),
+     * by vector id. The caller holds the write lock of {@link #indexLock()}.
+     */
+    Map<String, TextSegment> localSegments(Collection<String> tenants) {
+        if (partitioned) {
+            tenants.forEach(this::partition);
+        }
+        Map<String, TextSegment> live = new HashMap<>();
+        for (Partition partition : partitions.values()) {
+            live.putAll(partition.hnsw.liveSegments());
+        }
+        return live;
+    }
+
+    /**
+     * Removes the given vectors from every HNSW store and adds the chunks to the store of their tenant. The
+     * caller holds the write lock of {@link #indexLock()}.
+     */
+    void updateLocal(Collection<String> removed, List<Embedding> embeddings, List<TextSegment> segments) {
+        for (Partition partition : partitions.values()) {
+            partition.hnsw.removeAll(removed);
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            String tenant = partitioned ? segments.get(i).metadata().getString("tenant") : SHARED;
+            partition(tenant).hnsw.add(embeddings.get(i), segments.get(i));
+        }
+    }
+
+    /**
+     * Replaces the vector index with the given chunks, dropping each RediSearch index with its documents and
+     * re-creating it at the configured dimension with TAG fields. When partitioned, chunks go to the index of
+     * their tenant and a shared index left from before is dropped. Returns the new vector id of every segment.
+     * The caller holds the write lock of {@link #indexLock()}.
+     */
+    List<String> replaceIndex(List<Embedding> embeddings, List<TextSegment> segments) {
+        String[] vectorIds = new String[segments.size()];
+        Map<String, List<Integer>> byPartition = new LinkedHashMap<>();
+        Request tenants = Request.cmd(Command.SADD).arg(TENANTS_KEY);
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < segments.size(); i++) {
+            String tenant = segments.get(i).metadata().getString("tenant");
+            if (seen.add(tenant)) {
+                tenants.arg(tenant);
+            }
+            byPartition.computeIfAbsent(partitioned ? tenant : SHARED, key -> new ArrayList<>()).add(i);
+        }
+        // Registers the tenants of requirements stored before the tenant set was kept
+        if (!seen.isEmpty()) {
+            redis.sendAndAwait(tenants);
+        }
+        if (partitioned && !"hnsw".equalsIgnoreCase(vectorStoreType)) {
+            new RedisVectorIndex(redis, indexName, "embedding:").drop();
+        }
+        for (String tenant : partitions.keySet()) {
+            byPartition.putIfAbsent(tenant, List.of());
+        }
+
+        for (Map.Entry<String, List<Integer>> entry : byPartition.entrySet()) {
+            Partition partition = partition(entry.getKey());
+            if (partition.hnsw != null) {
+                partition.hnsw.removeAll();
+            } else {
+                partition.index.drop();
+                partition.index.create(dimension, redisVectorType);
+                partition.refresh(partition.index.info());
+            }
+            List<Integer> chunks = entry.getValue();
+            for (int from = 0; from < chunks.size(); from += embeddingBatchSize) {
+                List<Integer> batch = chunks.subList(from, Math.min(from + embeddingBatchSize, chunks.size()));
+                List<String> added = partition.store.addAll(batch.stream().map(embeddings::get).toList(),
+                        batch.stream().map(segments::get).toList());
+                for (int b = 0; b < batch.size(); b++) {
+                    vectorIds[batch.get(b)] = added.get(b);
+                }
+            }
+        }
+        return Arrays.asList(vectorIds);
+    }
+
+    /**
+     * Cumulative ingest counters, used to size {@code app.embedding.batch-size} for the Ollama host.
+     */
+    public Map<String, Object> getIngestStats() {
+        long chunks = ingestedChunks.get();
+        long nanos = ingestNanos.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batchSize", embeddingBatchSize);
+        stats.put("chunks", chunks);
+        stats.put("unchangedChunks", unchangedChunks.get());
+        stats.put("removedVectors", removedVectors.get());
+        stats.put("writeRetries", writeRetries.get());
+        stats.put("embedMillis", nanos / 1_000_000);
+        stats.put("chunksPerSecond", chunksPerSecond(chunks, nanos));
+        return stats;
+    }
+
+    public Map<String, Object> getVectorStoreStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", "hnsw".equalsIgnoreCase(vectorStoreType) ? "hnsw" : "redis");
+        stats.put("dimension", dimension);
+        stats.put("partitioned", partitioned);
+        stats.put("filteredSearches", filteredSearches.get());
+        stats.put("postFilteredSearches", postFilteredSearches.get());
+        Map<String, Object> byPartition = new LinkedHashMap<>();
+        for (Map.Entry<String, Partition> entry : partitions.entrySet()) {
+            byPartition.put(entry.getKey().isEmpty() ? "shared" : entry.getKey(), entry.getValue().getStats());
+        }
+        stats.put("partitions", byPartition);
+        return stats;
+    }
+
+    private static double chunksPerSecond(long chunks, long nanos) {
+        return nanos == 0 ? 0.0 : chunks * 1_000_000_000.0 / nanos;
+    }
+
     public List<EmbeddingMatch<TextSegment>> findSimilarRequirements(String text, int maxResults) {
+        return findSimilarRequirements(text, maxResults, 0.5);
+    }
+
+    public List<EmbeddingMatch<TextSegment>> findSimilarRequirements(String text, int maxResults, double minScore) {
+        return findSimilarRequirements(text, maxResults, minScore, new RequirementFilter(null, null));
+    }
+
+    /**
+     * Raw chunk matches among the chunks the filter accepts, best first; see {@link RequirementSearchService}
+     * for matches per requirement. A filter without a tenant searches the default tenant; a tenant without a
+     * partition of its own finds nothing. The filter is applied inside the KNN query where the index allows, so
+     * a selective filter still fills the page.
+     */
+    public List<EmbeddingMatch<TextSegment>> findSimilarRequirements(String text, int maxResults, double minScore,
+                                                                     RequirementFilter filter) {
         try {
-            Embedding queryEmbedding = embeddingModel.embed(text).content();
-            return embeddingStore.findRelevant(queryEmbedding, maxResults, 0.5);
+            String tenant = filter.getTenant() != null ? filter.getTenant() : defaultTenant;
+            RequirementFilter effective = new RequirementFilter(tenant, filter.getType());
+            Partition partition = searchPartition(tenant);
+            if (partition == null) {
+                return List.of();
+            }
+            if (partitioned) {
+                // Every chunk of a tenant's own index is the tenant's
+                effective = effective.withoutTenant();
+            }
+
+            Embedding queryEmbedding = truncate(embeddingCache.embed(text), dimension);
+            if (effective.isEmpty()) {
+                // The langchain4j store always sends a FLOAT32 query vector
+                if (partition.index != null && partition.vectorType != RedisVectorType.FLOAT32) {
+                    return partition.index.search(queryEmbedding.vector(), partition.vectorType, maxResults,
+                            reRankCandidates(partition, maxResults), minScore, "*");
+                }
+                return partition.store.findRelevant(queryEmbedding, maxResults, minScore);
+            }
+            filteredSearches.incrementAndGet();
+            if (partition.hnsw != null) {
+                return partition.hnsw.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(queryEmbedding)
+                        .maxResults(maxResults)
+                        .minScore(minScore)
+                        .filter(effective.toMetadataFilter(defaultTenant))
+                        .build()).matches();
+            }
+            if (partition.tagFields) {
+                return partition.index.search(queryEmbedding.vector(), partition.vectorType, maxResults,
+                        reRankCandidates(partition, maxResults), minScore, effective.toQuery());
+            }
+
+            // Index from before TAG fields: over-fetch and filter the matches
+            postFilteredSearches.incrementAndGet();
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(maxResults);
+            for (EmbeddingMatch<TextSegment> match : partition.store.findRelevant(queryEmbedding,
+                    maxResults * POST_FILTER_OVER_FETCH, minScore)) {
+                Metadata metadata = match.embedded().metadata();
+                if (effective.matches(metadata.getString("tenant"), metadata.getString("metadata"), defaultTenant)
+                        && matches.size() < maxResults) {
+                    matches.add(match);
+                }
+            }
+            return matches;
         } catch (Exception e) {
             throw new RuntimeException("Failed to find similar requirements: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * The requirement with the given id if it belongs to the given tenant (null for the default one), else null.
+     */
+    public Requirement findRequirementById(String id, String tenant) {
+        Requirement requirement = findRequirementById(id);
+        return requirement != null && requirement.getTenant().equals(tenant != null ? tenant : defaultTenant)
+                ? requirement : null;
+    }
+
     public Requirement findRequirementById(String id) {
+        Requirement cached = requirementCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = requirementCache.generation();
         try {
-            // Read meta key to get chunk count
+            // Read meta key; it carries the full content for requirements stored by this version
             String metaKey = "requirements:" + id + ":meta";
-            Response metaResp = redisClient.hgetall(metaKey);
-            Map<String, String> metaFields = toMap(metaResp);
+            Map<String, String> metaFields = toMap(redis.sendAndAwait(Request.cmd(Command.HGETALL).arg(metaKey)));
 
             if (metaFields.isEmpty()) {
                 return null; // no requirement found
             }
 
-            int chunkCount = Integer.parseInt(metaFields.getOrDefault("chunkCount", "0"));
-            String metadata = metaFields.get("metadata");
-
-            StringBuilder contentBuilder = new StringBuilder();
-
-            for (int i = 0; i < chunkCount; i++) {
-                String key = "requirements:" + id + ":chunk:" + i;
-                Response chunkResp = redisClient.hgetall(key);
-                Map<String, String> fields = toMap(chunkResp);
-
-                if (fields.isEmpty()) continue;
-
-                String chunkContent = fields.get("content");
-                if (chunkContent != null) {
-                    contentBuilder.append(chunkContent).append(" ");
-                }
+            String content = metaFields.get("content");
+            if (content == null) {
+                int chunkCount = Integer.parseInt(metaFields.getOrDefault("chunkCount", "0"));
+                content = readChunkedContent(id, chunkCount);
             }
 
             Requirement requirement = new Requirement();
             requirement.setId(id);
-            requirement.setContent(contentBuilder.toString().trim());
-            requirement.setMetadata(metadata);
+            requirement.setContent(content);
+            requirement.setMetadata(metaFields.get("metadata"));
+            // Requirements stored before tenants existed belong to the default tenant
+            requirement.setTenant(metaFields.getOrDefault("tenant", defaultTenant));
 
+            requirementCache.put(requirement, generation);
             return requirement;
 
         } catch (Exception e) {
@@ -162,50 +899,143 @@ public class EmbeddingService {
         }
     }
 
-    private String stripQuotes(String s) {
-        if (s.startsWith("\"") && s.endsWith("\"")) {
-            return s.substring(1, s.length() - 1);
+    /**
+     * Rebuilds content for requirements stored without a content field: all chunk reads go out in
+     * one pipeline and the sentence overlap between consecutive chunks is dropped.
+     */
+    private String readChunkedContent(String id, int chunkCount) {
+        if (chunkCount == 0) {
+            return "";
+        }
+
+        List<Request> reads = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            reads.add(Request.cmd(Command.HGET).arg("requirements:" + id + ":chunk:" + i).arg("content"));
         }
-        return s;
+
+        StringBuilder contentBuilder = new StringBuilder();
+        for (Response chunk : redis.batchAndAwait(reads)) {
+            if (chunk != null) {
+                appendWithoutOverlap(contentBuilder, chunk.toString());
+            }
+        }
+        return contentBuilder.toString().trim();
     }
 
-    private Map<String, String> toMap(Response response) {
-        Map<String, String> map = new HashMap<>();
+    private static void appendWithoutOverlap(StringBuilder content, String chunk) {
+        int max = Math.min(content.length(), chunk.length());
+        for (int overlap = max; overlap > 0; overlap--) {
+            if (endsWith(content, chunk, overlap)) {
+                content.append(chunk, overlap, chunk.length());
+                return;
+            }
+        }
+        if (!content.isEmpty()) {
+            content.append(' ');
+        }
+        content.append(chunk);
+    }
 
-        if (response == null) {
-            return map;
+    private static boolean endsWith(StringBuilder content, String chunk, int length) {
+        int offset = content.length() - length;
+        for (int i = 0; i < length; i++) {
+            if (content.charAt(offset + i) != chunk.charAt(i)) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        try {
-            // Iterate children if available
-            for (Response child : response) {
-                if (child.size() == 2) {
-                    // Likely a key/value pair
-                    String key = child.get(0).toString();
-                    Response valResp = child.get(1);
-
-                    // If value is a nested multi, recursively convert
-                    String value;
-                    if (valResp.size() > 0) {
-                        value = toMap(valResp).toString(); // nested map as string
-                    } else {
-                        value = valResp.toString();
-                    }
+    private static Map<String, String> toMap(Response response) {
+        if (response == null || response.size() == 0) {
+            return Map.of();
+        }
 
-                    map.put(key, value);
-                }
+        // getKeys() covers both the RESP3 map reply and the flat RESP2 field/value array
+        Map<String, String> map = new HashMap<>();
+        for (String key : response.getKeys()) {
+            map.put(key, response.get(key).toString());
+        }
+        return map;
+    }
+
+    /**
+     * A vector index with its store: an HNSW store, or a RediSearch index with the langchain4j store writing
+     * into it.
+     */
+    private static final class Partition {
+        private final EmbeddingStore<TextSegment> store;
+        private final HnswEmbeddingStore hnsw;
+        private final RedisVectorIndex index;
+        private volatile boolean tagFields;
+        private volatile int indexDimension;
+        private volatile RedisVectorType vectorType = RedisVectorType.FLOAT32;
+
+        private Partition(EmbeddingStore<TextSegment> store, HnswEmbeddingStore hnsw, RedisVectorIndex index) {
+            this.store = store;
+            this.hnsw = hnsw;
+            this.index = index;
+        }
+
+        /**
+         * Ids of the vectors of a requirement, or null when the index has no TAG field to find them by.
+         */
+        private List<String> vectorIds(String requirementId) {
+            if (hnsw != null) {
+                return hnsw.findIds(requirementFilter(requirementId));
             }
+            return tagFields ? index.ids(requirementId) : null;
+        }
 
-            // If still empty and no children, treat as single value
-            if (map.isEmpty() && response.size() == 0) {
-                map.put("value", response.toString());
+        /**
+         * Snapshots an HNSW store. A Redis store has no close(); it is opened once per partition and lives as
+         * long as the process, so its connection pool is released on exit.
+         */
+        private void close() {
+            if (hnsw != null) {
+                hnsw.close();
             }
+        }
 
-        } catch (UnsupportedOperationException e) {
-            // For single-value responses that cannot be iterated
-            map.put("value", response.toString());
+        private void refresh(String info) {
+            tagFields = RedisVectorIndex.hasTagFields(info);
+            indexDimension = RedisVectorIndex.dimension(info);
+            vectorType = RedisVectorIndex.vectorType(info);
         }
 
-        return map;
+        private Map<String, Object> getStats() {
+            if (hnsw != null) {
+                return hnsw.getStats();
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("index", index.name());
+            stats.put("indexDimension", indexDimension);
+            stats.put("vectorType", vectorType.name().toLowerCase());
+            stats.put("tagFields", tagFields);
+            stats.putAll(index.getStats(index.info()));
+            return stats;
+        }
+    }
+
+    // Half-precision Redis indexes fetch this many KNN candidates to re-rank at full precision
+    private int reRankCandidates(Partition partition, int maxResults) {
+        return partition.vectorType == RedisVectorType.FLOAT32 ? maxResults : maxResults * Math.max(1, redisReRankFactor);
+    }
+
+    private static final class StoredRequirement {
+        private final int chunkCount;
+        private final String type;
+        private final String tenant;
+        private final String[] hashes;
+        // null when a chunk was stored without one
+        private final String[] vectorIds;
+
+        private StoredRequirement(int chunkCount, String type, String tenant, String[] hashes, String[] vectorIds) {
+            this.chunkCount = chunkCount;
+            this.type = type;
+            this.tenant = tenant;
+            this.hashes = hashes;
+            this.vectorIds = vectorIds;
+        }
     }
 }
@@ -0,0 +1,104 @@
+package com.example.service;
+
+import com.example.dto.FeedbackResponse;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Combines review results produced for parts of one submission or by different models.
+ */
+final class FeedbackMerger {
+
+    // Items whose word sets overlap at least this much are treated as the same finding
+    private static final double SAME_FINDING = 0.7;
+
+    private FeedbackMerger() {
+    }
+
+    /**
+     * Merges per-unit reviews: the alignment score is averaged weighted by unit size, findings, requirement misses
+     * included, are de-duplicated and the free-text feedback is concatenated. Each unit is reviewed against the
+     * whole requirement, so the misses include what other units implement; the caller checks them against the
+     * whole submission.
+     */
+    static FeedbackResponse mergeUnits(List<FeedbackResponse> reviews, List<Integer> weights) {
+        FeedbackResponse merged = new FeedbackResponse();
+        double weightedScore = 0;
+        long totalWeight = 0;
+        for (int i = 0; i < reviews.size(); i++) {
+            FeedbackResponse review = reviews.get(i);
+            weightedScore += review.getAlignmentScore() * weights.get(i);
+            totalWeight += weights.get(i);
+            merged.setRequirementMiss(union(merged.getRequirementMiss(), review.getRequirementMiss()));
+            merged.setEdgeCases(union(merged.getEdgeCases(), review.getEdgeCases()));
+            merged.setWarnings(union(merged.getWarnings(), review.getWarnings()));
+            mergeCodeFeedback(merged, review.getCodeFeedback());
+        }
+        merged.setAlignmentScore(totalWeight == 0 ? 0 : Math.round(weightedScore / totalWeight * 10) / 10.0);
+        return merged;
+    }
+
+    static void mergeCodeFeedback(FeedbackResponse feedback, FeedbackResponse.CodeFeedback other) {
+        FeedbackResponse.CodeFeedback current = feedback.getCodeFeedback();
+        if (current == null) {
+            feedback.setCodeFeedback(other);
+        } else if (other != null) {
+            current.setQuality(joinText(current.getQuality(), other.getQuality()));
+            current.setOptimizations(union(current.getOptimizations(), other.getOptimizations()));
+            current.setStandards(joinText(current.getStandards(), other.getStandards()));
+        }
+    }
+
+    static String joinText(String first, String second) {
+        if (first == null || first.isBlank()) {
+            return second;
+        }
+        if (second == null || second.isBlank() || first.contains(second)) {
+            return first;
+        }
+        return first + "\n" + second;
+    }
+
+    /**
+     * Appends the items of {@code second} that are not near-duplicates of an item already present.
+     */
+    static List<String> union(List<String> first, List<String> second) {
+        if (first == null || second == null) {
+            return first == null && second != null ? new ArrayList<>(second) : first;
+        }
+        List<String> items = new ArrayList<>(first);
+        List<Set<String>> seen = new ArrayList<>();
+        for (String item : first) {
+            seen.add(words(item));
+        }
+        for (String item : second) {
+            Set<String> words = words(item);
+            if (seen.stream().noneMatch(existing -> similarity(existing, words) >= SAME_FINDING)) {
+                items.add(item);
+                seen.add(words);
+            }
+        }
+        return items;
+    }
+
+    private static Set<String> words(String text) {
+        Set<String> words = new HashSet<>();
+        for (String word : text.toLowerCase().split("[^a-z0-9]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static double similarity(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1;
+        }
+        long shared = a.stream().filter(b::contains).count();
+        return (double) shared / (a.size() + b.size() - shared);
+    }
+}
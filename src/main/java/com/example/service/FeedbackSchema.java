@@ -0,0 +1,118 @@
+package com.example.service;
+
+import com.example.dto.FeedbackResponse;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON schema for {@link FeedbackResponse}, derived from its Jackson bean properties so it cannot drift from the
+ * DTO, plus a validator for the small subset of JSON schema it uses (object, array, string, number).
+ */
+@ApplicationScoped
+public class FeedbackSchema {
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    private ObjectNode schema;
+    private String schemaJson;
+
+    @Inject
+    void initSchema() {
+        this.schema = schemaFor(objectMapper.constructType(FeedbackResponse.class));
+        this.schemaJson = schema.toString();
+    }
+
+    public String json() {
+        return schemaJson;
+    }
+
+    /**
+     * Returns the schema violations of the given document; empty when it is valid.
+     */
+    public List<String> validate(JsonNode document) {
+        List<String> errors = new ArrayList<>();
+        validate(document, schema, "$", errors);
+        return errors;
+    }
+
+    private ObjectNode schemaFor(JavaType type) {
+        ObjectNode node = objectMapper.createObjectNode();
+        if (type.isCollectionLikeType() || type.isArrayType()) {
+            node.put("type", "array");
+            node.set("items", schemaFor(type.getContentType()));
+        } else if (type.hasRawClass(String.class)) {
+            node.put("type", "string");
+        } else if (type.isPrimitive() || Number.class.isAssignableFrom(type.getRawClass())) {
+            node.put("type", type.hasRawClass(double.class) || type.hasRawClass(float.class)
+                    || type.hasRawClass(Double.class) || type.hasRawClass(Float.class) ? "number" : "integer");
+        } else {
+            node.put("type", "object");
+            ObjectNode properties = node.putObject("properties");
+            ArrayNode required = node.putArray("required");
+            for (BeanPropertyDefinition property : objectMapper.getSerializationConfig().introspect(type).findProperties()) {
+                properties.set(property.getName(), schemaFor(property.getPrimaryType()));
+                required.add(property.getName());
+            }
+        }
+        return node;
+    }
+
+    private static void validate(JsonNode value, JsonNode schema, String path, List<String> errors) {
+        String type = schema.path("type").asText();
+        switch (type) {
+            case "object" -> {
+                if (!value.isObject()) {
+                    errors.add(path + " must be an object");
+                    return;
+                }
+                for (JsonNode required : schema.path("required")) {
+                    JsonNode field = value.get(required.asText());
+                    if (field == null || field.isNull()) {
+                        errors.add(path + "." + required.asText() + " is missing");
+                    }
+                }
+                Iterator<Map.Entry<String, JsonNode>> properties = schema.path("properties").fields();
+                while (properties.hasNext()) {
+                    Map.Entry<String, JsonNode> property = properties.next();
+                    JsonNode field = value.get(property.getKey());
+                    if (field != null && !field.isNull()) {
+                        validate(field, property.getValue(), path + "." + property.getKey(), errors);
+                    }
+                }
+            }
+            case "array" -> {
+                if (!value.isArray()) {
+                    errors.add(path + " must be an array");
+                    return;
+                }
+                for (int i = 0; i < value.size(); i++) {
+                    validate(value.get(i), schema.path("items"), path + "[" + i + "]", errors);
+                }
+            }
+            case "string" -> {
+                if (!value.isTextual()) {
+                    errors.add(path + " must be a string");
+                }
+            }
+            case "number", "integer" -> {
+                if (!value.isNumber()) {
+                    errors.add(path + " must be a number");
+                }
+            }
+            default -> {
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit vectors as IEEE half floats in a memory-mapped file, indexed by HNSW node. It keeps the full-precision
+ * vectors for re-ranking out of the heap: pages are loaded only for the candidates being re-ranked, and the OS
+ * may evict them under pressure. Half precision changes a cosine similarity by about 1e-3, well below the
+ * error of int8 or binary codes.
+ * <p>
+ * The file is mapped in fixed segments, grown as nodes are added. It is written in place rather than as part
+ * of the atomic snapshot pair: nodes are only appended, and {@link #force()} runs before each snapshot, so the
+ * file holds at least every node of the latest snapshot. Renumbering the nodes, by a compaction or by emptying
+ * the store, replaces the whole file. Not thread-safe for writes: the caller serializes them against reads.
+ */
+final class Float16VectorFile implements AutoCloseable {
+
+    private static final long SEGMENT_BYTES = 1L << 26; // 64 MB
+
+    private final Path path;
+    private final int dimension;
+    private final int vectorBytes;
+    private final int vectorsPerSegment;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    Float16VectorFile(Path path, int dimension) throws IOException {
+        this.path = path;
+        this.dimension = dimension;
+        this.vectorBytes = dimension * Short.BYTES;
+        this.vectorsPerSegment = (int) Math.max(1, SEGMENT_BYTES / vectorBytes);
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Map what is there up front, so that reads never change the segment list
+        long segmentBytes = (long) vectorsPerSegment * vectorBytes;
+        while ((long) segments.size() * segmentBytes < channel.size()) {
+            mapSegment();
+        }
+    }
+
+    int bytesPerVector() {
+        return vectorBytes;
+    }
+
+    /**
+     * Vectors the file has room for, written or not.
+     */
+    long capacity() {
+        return (long) segments.size() * vectorsPerSegment;
+    }
+
+    long fileBytes() {
+        return capacity() * vectorBytes;
+    }
+
+    void put(int node, float[] unit) throws IOException {
+        while (segments.size() <= node / vectorsPerSegment) {
+            mapSegment();
+        }
+        MappedByteBuffer segment = segments.get(node / vectorsPerSegment);
+        int offset = (node % vectorsPerSegment) * vectorBytes;
+        for (int i = 0; i < dimension; i++) {
+            segment.putShort(offset + i * Short.BYTES, Float.floatToFloat16(unit[i]));
+        }
+    }
+
+    float[] get(int node) {
+        MappedByteBuffer segment = segments.get(node / vectorsPerSegment);
+        int offset = (node % vectorsPerSegment) * vectorBytes;
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = Float.float16ToFloat(segment.getShort(offset + i * Short.BYTES));
+        }
+        return vector;
+    }
+
+    float dot(float[] query, int node) {
+        MappedByteBuffer segment = segments.get(node / vectorsPerSegment);
+        int offset = (node % vectorsPerSegment) * vectorBytes;
+        float s0 = 0, s1 = 0;
+        int i = 0;
+        for (; i + 1 < dimension; i += 2) {
+            s0 += query[i] * Float.float16ToFloat(segment.getShort(offset + i * Short.BYTES));
+            s1 += query[i + 1] * Float.float16ToFloat(segment.getShort(offset + (i + 1) * Short.BYTES));
+        }
+        if (i < dimension) {
+            s0 += query[i] * Float.float16ToFloat(segment.getShort(offset + i * Short.BYTES));
+        }
+        return s0 + s1;
+    }
+
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        segments.clear();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+
+    // Mapping past the end of the file grows it
+    private void mapSegment() throws IOException {
+        long segmentBytes = (long) vectorsPerSegment * vectorBytes;
+        segments.add(channel.map(FileChannel.MapMode.READ_WRITE, segments.size() * segmentBytes, segmentBytes));
+    }
+}
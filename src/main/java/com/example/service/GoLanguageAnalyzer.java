@@ -0,0 +1,20 @@
+package com.example.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.Set;
+
+@ApplicationScoped
+public class GoLanguageAnalyzer extends BraceLanguageAnalyzer {
+
+    public GoLanguageAnalyzer() {
+        super(SourceLexer.GO, Set.of("if", "for", "case", "&&", "||"),
+                Set.of("if", "for", "switch", "return", "else", "func", "go", "defer", "select", "case", "range"),
+                Set.of("func"), Set.of("type"), Set.of(), false, false);
+    }
+
+    @Override
+    public Set<String> languages() {
+        return Set.of("go");
+    }
+}
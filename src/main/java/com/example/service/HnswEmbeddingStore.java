@@ -0,0 +1,840 @@
+package com.example.service;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process {@link EmbeddingStore} over an {@link HnswIndex}, selected with {@code app.vector-store.type=hnsw}
+ * so requirement search needs neither a network hop nor the RediSearch module. Scores match
+ * {@code RedisEmbeddingStore}: cosine similarity mapped to [0, 1]. Vectors are stored, and returned, normalized.
+ * <p>
+ * Removed entries are tombstoned; they still route searches but are never returned. Once tombstones make up
+ * {@code compactRatio} of the nodes, the graph is rebuilt from the live vectors. The store is snapshotted
+ * every {@code snapshotInterval} when it has changed, and on {@link #close()}. A snapshot is two files, the graph
+ * with the segments and, beside it, the vectors; on restart both are memory-mapped and copied in bulk. A snapshot
+ * that cannot be read, or no longer matches the configuration, is discarded and the store starts empty, to be
+ * refilled from Redis (see {@link VectorIndexMigration#reconcile()}).
+ * <p>
+ * With {@link VectorQuantization#INT8} or {@link VectorQuantization#BINARY} the graph holds only the compact
+ * codes, and the candidates of each search are re-ranked with half-precision vectors kept in a memory-mapped
+ * {@link Float16VectorFile} beside the snapshot. Every {@code recallProbeEvery}-th unfiltered search is repeated
+ * exhaustively at full precision in the background, so the stats report the recall actually delivered.
+ */
+public class HnswEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(HnswEmbeddingStore.class);
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 16;
+
+    private final Path snapshotPath;
+    private final Path vectorPath;
+    private final Path rerankPath;
+    private final int dimension;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final VectorQuantization quantization;
+    private final int recallProbeEvery;
+    private final double compactRatio;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // guarded by lock
+    private HnswIndex index;
+    // full-precision vectors for re-ranking quantized candidates; null without quantization
+    private Float16VectorFile rerankVectors;
+    private final List<String> ids = new ArrayList<>();
+    private final List<TextSegment> segments = new ArrayList<>();
+    private final Map<String, Integer> nodes = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    // counts writes, so a compaction can tell that one happened while it was building
+    private long modifications;
+    private volatile boolean dirty;
+    private volatile boolean snapshotDiscarded;
+
+    private final ScheduledExecutorService snapshotter;
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+    private final AtomicLong maxSearchNanos = new AtomicLong();
+    private volatile long lastSnapshotMillis;
+    private volatile long lastSnapshotBytes;
+    private final AtomicLong recallProbes = new AtomicLong();
+    private final AtomicLong recallMicros = new AtomicLong(); // sum of per-probe recall, in millionths
+    private final AtomicLong compactions = new AtomicLong();
+    private volatile long lastCompactionMillis;
+
+    private HnswEmbeddingStore(Path snapshotPath, int dimension, int m, int efConstruction, int efSearch,
+                               VectorQuantization quantization, int recallProbeEvery, double compactRatio)
+            throws IOException {
+        if (2 * m > 255) {
+            throw new IllegalArgumentException("HNSW m must be at most 127, was " + m);
+        }
+        this.snapshotPath = snapshotPath;
+        this.vectorPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".vectors");
+        this.rerankPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".rerank");
+        this.dimension = dimension;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.quantization = quantization;
+        this.recallProbeEvery = recallProbeEvery;
+        this.compactRatio = compactRatio;
+        this.rerankVectors = quantization == VectorQuantization.NONE ? null : new Float16VectorFile(rerankPath, dimension);
+        this.index = new HnswIndex(dimension, m, efConstruction, 1024, quantization);
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hnsw-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens the store, loading the snapshot at {@code snapshotPath} when there is one. A positive
+     * {@code recallProbeEvery} measures the recall of one search in that many; tombstones are compacted away
+     * once they make up {@code compactRatio} of the nodes. A snapshot that fails to load or to match the
+     * configuration is discarded, see {@link #isSnapshotDiscarded()}.
+     */
+    public static HnswEmbeddingStore open(Path snapshotPath, int dimension, int m, int efConstruction, int efSearch,
+                                          VectorQuantization quantization, int recallProbeEvery, double compactRatio,
+                                          Duration snapshotInterval) {
+        HnswEmbeddingStore store;
+        try {
+            store = new HnswEmbeddingStore(snapshotPath, dimension, m, efConstruction, efSearch, quantization,
+                    recallProbeEvery, compactRatio);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open HNSW re-rank vectors beside " + snapshotPath + ": "
+                    + e.getMessage(), e);
+        }
+        if (Files.exists(snapshotPath) && Files.exists(store.vectorPath)) {
+            long start = System.nanoTime();
+            try {
+                store.load();
+                store.verify();
+                LOG.infof("Loaded HNSW snapshot with %d vectors in %d ms", store.index.size(),
+                        (System.nanoTime() - start) / 1_000_000);
+            } catch (IOException | RuntimeException e) {
+                // The snapshot is only a cache of what Redis holds, so it is rebuilt rather than failing startup
+                LOG.warnf("Discarding HNSW snapshot %s, the store starts empty until it is refilled from Redis: %s",
+                        snapshotPath, e.getMessage() != null ? e.getMessage() : e.toString());
+                store.reset();
+                store.snapshotDiscarded = true;
+            }
+        }
+
+        long interval = snapshotInterval.toMillis();
+        store.snapshotter.scheduleWithFixedDelay(store::maintainQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        return store;
+    }
+
+    /**
+     * True when the snapshot found at startup was unreadable or built for another configuration, so the store
+     * started empty.
+     */
+    public boolean isSnapshotDiscarded() {
+        return snapshotDiscarded;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        insert(List.of(id), List.of(embedding), null);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        insert(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment segment) {
+        String id = UUID.randomUUID().toString();
+        insert(List.of(id), List.of(embedding), List.of(segment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> added = randomIds(embeddings.size());
+        insert(added, embeddings, null);
+        return added;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (embedded.size() != embeddings.size()) {
+            throw new IllegalArgumentException("Got " + embeddings.size() + " embeddings for " + embedded.size() + " segments");
+        }
+        List<String> added = randomIds(embeddings.size());
+        insert(added, embeddings, embedded);
+        return added;
+    }
+
+    @Override
+    public void remove(String id) {
+        removeAll(List.of(id));
+    }
+
+    @Override
+    public void removeAll(Collection<String> idsToRemove) {
+        lock.writeLock().lock();
+        try {
+            for (String id : idsToRemove) {
+                Integer node = nodes.remove(id);
+                if (node != null) {
+                    deleted.set(node);
+                    modifications++;
+                    dirty = true;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        lock.writeLock().lock();
+        try {
+            for (int node = 0; node < index.size(); node++) {
+                TextSegment segment = segments.get(node);
+                if (!deleted.get(node) && segment != null && filter.test(segment.metadata())) {
+                    nodes.remove(ids.get(node));
+                    deleted.set(node);
+                    modifications++;
+                    dirty = true;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the live entries whose metadata the filter accepts.
+     */
+    public List<String> findIds(Filter filter) {
+        lock.readLock().lock();
+        try {
+            List<String> found = new ArrayList<>();
+            for (int node = 0; node < index.size(); node++) {
+                TextSegment segment = segments.get(node);
+                if (!deleted.get(node) && segment != null && filter.test(segment.metadata())) {
+                    found.add(ids.get(node));
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Live entries whose metadata the filter accepts, by id.
+     */
+    public Map<String, TextSegment> findSegments(Filter filter) {
+        lock.readLock().lock();
+        try {
+            Map<String, TextSegment> found = new HashMap<>();
+            for (int node = 0; node < index.size(); node++) {
+                TextSegment segment = segments.get(node);
+                if (!deleted.get(node) && segment != null && filter.test(segment.metadata())) {
+                    found.put(ids.get(node), segment);
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Empties the store. The snapshot and re-rank files go with the vectors, so a crash before the next
+     * snapshot cannot pair an old graph with re-rank vectors overwritten by new nodes.
+     */
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            Files.deleteIfExists(snapshotPath);
+            Files.deleteIfExists(vectorPath);
+            if (rerankVectors != null) {
+                rerankVectors.close();
+                try {
+                    Files.deleteIfExists(rerankPath);
+                } finally {
+                    rerankVectors = new Float16VectorFile(rerankPath, dimension);
+                }
+            }
+            index = new HnswIndex(index.dimension(), m, efConstruction, 1024, quantization);
+            ids.clear();
+            segments.clear();
+            nodes.clear();
+            deleted.clear();
+            modifications++;
+            dirty = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to remove HNSW snapshot " + snapshotPath, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Live entries by id, for reconciling the store with the requirements in Redis.
+     */
+    public Map<String, TextSegment> liveSegments() {
+        lock.readLock().lock();
+        try {
+            Map<String, TextSegment> live = new HashMap<>(nodes.size() * 2);
+            for (Map.Entry<String, Integer> node : nodes.entrySet()) {
+                live.put(node.getKey(), segments.get(node.getValue()));
+            }
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the graph without its tombstones once they make up {@code compactRatio} of the nodes; until
+     * then they cost memory and widen searches. The new graph is built from a copy of the live vectors while
+     * searches and writes go on, and swapped in only if no write happened meanwhile; otherwise the next
+     * scheduled run tries again.
+     * @return whether the graph was rebuilt.
+     */
+    public boolean compact() throws IOException {
+        List<String> liveIds = new ArrayList<>();
+        List<TextSegment> liveSegments = new ArrayList<>();
+        List<float[]> liveVectors = new ArrayList<>();
+        long version;
+        int tombstones;
+        lock.readLock().lock();
+        try {
+            tombstones = deleted.cardinality();
+            if (tombstones == 0 || tombstones < compactRatio * index.size()) {
+                return false;
+            }
+            version = modifications;
+            for (int node = 0; node < index.size(); node++) {
+                if (!deleted.get(node)) {
+                    liveIds.add(ids.get(node));
+                    liveSegments.add(segments.get(node));
+                    liveVectors.add(rerankVectors != null ? rerankVectors.get(node) : index.vector(node));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        long start = System.nanoTime();
+        HnswIndex rebuilt = new HnswIndex(dimension, m, efConstruction, Math.max(1024, liveVectors.size()), quantization);
+        for (float[] vector : liveVectors) {
+            rebuilt.insert(vector);
+        }
+        // Node numbers change, so the re-rank vectors are rewritten beside the file in use and moved over it
+        Path rerankTmp = rerankPath.resolveSibling(rerankPath.getFileName() + ".tmp");
+        if (quantization != VectorQuantization.NONE) {
+            Files.deleteIfExists(rerankTmp);
+            try (Float16VectorFile rewritten = new Float16VectorFile(rerankTmp, dimension)) {
+                for (int node = 0; node < liveVectors.size(); node++) {
+                    rewritten.put(node, liveVectors.get(node));
+                }
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (modifications != version) {
+                Files.deleteIfExists(rerankTmp);
+                return false;
+            }
+            if (rerankVectors != null) {
+                rerankVectors.close();
+                try {
+                    Files.move(rerankTmp, rerankPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    rerankVectors = new Float16VectorFile(rerankPath, dimension);
+                }
+            }
+            index = rebuilt;
+            ids.clear();
+            ids.addAll(liveIds);
+            segments.clear();
+            segments.addAll(liveSegments);
+            nodes.clear();
+            for (int node = 0; node < liveIds.size(); node++) {
+                nodes.put(liveIds.get(node), node);
+            }
+            deleted.clear();
+            modifications++;
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactions.incrementAndGet();
+        lastCompactionMillis = (System.nanoTime() - start) / 1_000_000;
+        LOG.infof("Compacted HNSW graph %s: dropped %d tombstones, kept %d vectors, in %d ms", snapshotPath,
+                tombstones, liveIds.size(), lastCompactionMillis);
+        return true;
+    }
+
+    /**
+     * Approximate search with {@code max(efSearch, maxResults)} candidates. Tombstones and filtered-out
+     * entries do not count towards the results, so the search widens while they leave it short.
+     */
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        float[] query = unitVector(request.queryEmbedding());
+        long start = System.nanoTime();
+        List<EmbeddingMatch<TextSegment>> matches;
+        lock.readLock().lock();
+        try {
+            checkDimension(query.length);
+            int maxResults = request.maxResults();
+            int ef = Math.max(efSearch, maxResults);
+            while (true) {
+                matches = new ArrayList<>(maxResults);
+                boolean skipped = collect(rerank(query, index.search(query, ef)), request, matches);
+                if (matches.size() >= maxResults || !skipped || ef >= index.size()) {
+                    break;
+                }
+                ef = Math.min(ef * 4, index.size());
+            }
+        } finally {
+            lock.readLock().unlock();
+            long elapsed = System.nanoTime() - start;
+            searchNanos.addAndGet(elapsed);
+            maxSearchNanos.accumulateAndGet(elapsed, Math::max);
+        }
+
+        long count = searches.incrementAndGet();
+        if (recallProbeEvery > 0 && count % recallProbeEvery == 0 && request.filter() == null) {
+            List<EmbeddingMatch<TextSegment>> returned = matches;
+            try {
+                snapshotter.execute(() -> probeRecall(query, request, returned));
+            } catch (RejectedExecutionException e) {
+                // closing
+            }
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /**
+     * Writes a snapshot if anything changed since the last one. Searches continue meanwhile; writes wait.
+     */
+    public void snapshot() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        long start = System.nanoTime();
+        Files.createDirectories(snapshotPath.toAbsolutePath().getParent());
+        Path graphTmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        Path vectorTmp = vectorPath.resolveSibling(vectorPath.getFileName() + ".tmp");
+        long snapshotId = System.nanoTime() ^ UUID.randomUUID().getMostSignificantBits();
+
+        lock.readLock().lock();
+        try (DataOutputStream graph = open(graphTmp); DataOutputStream vectors = open(vectorTmp)) {
+            dirty = false;
+            if (rerankVectors != null) {
+                rerankVectors.force();
+            }
+            writeHeader(graph, snapshotId);
+            index.writeGraph(graph);
+            for (int node = 0; node < index.size(); node++) {
+                writeNode(graph, node);
+            }
+            writeHeader(vectors, snapshotId);
+            index.writeVectors(vectors);
+        } catch (IOException | RuntimeException e) {
+            dirty = true;
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // The snapshot id ties the pair together if a crash separates the two moves
+        Files.move(vectorTmp, vectorPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(graphTmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastSnapshotBytes = Files.size(snapshotPath) + Files.size(vectorPath);
+        lastSnapshotMillis = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    @Override
+    public void close() {
+        snapshotter.shutdownNow();
+        try {
+            // A compaction in progress is not interruptible; let it finish before the final snapshot
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshotQuietly();
+        if (rerankVectors != null) {
+            try {
+                rerankVectors.close();
+            } catch (IOException e) {
+                LOG.error("Failed to close HNSW re-rank vectors " + rerankVectors + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("vectors", index.size());
+            stats.put("deleted", deleted.cardinality());
+            stats.put("compactRatio", compactRatio);
+            stats.put("dimension", index.dimension());
+            stats.put("levels", index.maxLevel() + 1);
+            stats.put("quantization", quantization.name().toLowerCase());
+            // Heap held by the searched vectors, and the off-heap re-rank copy
+            stats.put("bytesPerVector", index.bytesPerVector());
+            stats.put("heapVectorBytes", (long) index.size() * index.bytesPerVector());
+            stats.put("rerankBytesPerVector", rerankVectors == null ? 0 : rerankVectors.bytesPerVector());
+            stats.put("rerankFileBytes", rerankVectors == null ? 0 : rerankVectors.fileBytes());
+        } finally {
+            lock.readLock().unlock();
+        }
+        long count = searches.get();
+        long probes = recallProbes.get();
+        stats.put("m", m);
+        stats.put("efSearch", efSearch);
+        stats.put("searches", count);
+        stats.put("avgSearchMicros", count == 0 ? 0 : searchNanos.get() / count / 1_000);
+        stats.put("maxSearchMicros", maxSearchNanos.get() / 1_000);
+        stats.put("recallProbes", probes);
+        stats.put("avgRecall", probes == 0 ? null : recallMicros.get() / 1e6 / probes);
+        stats.put("lastSnapshotMillis", lastSnapshotMillis);
+        stats.put("lastSnapshotBytes", lastSnapshotBytes);
+        stats.put("compactions", compactions.get());
+        stats.put("lastCompactionMillis", lastCompactionMillis);
+        stats.put("snapshotDiscarded", snapshotDiscarded);
+        return stats;
+    }
+
+    // caller holds the read lock; returns whether any candidate was skipped as deleted or filtered out
+    private boolean collect(HnswIndex.Ranked candidates, EmbeddingSearchRequest request,
+                            List<EmbeddingMatch<TextSegment>> matches) {
+        Filter filter = request.filter();
+        boolean skipped = false;
+        for (int i = 0; i < candidates.nodes.length && matches.size() < request.maxResults(); i++) {
+            double score = RelevanceScore.fromCosineSimilarity(candidates.scores[i]);
+            if (score < request.minScore()) {
+                return false;
+            }
+            int node = candidates.nodes[i];
+            TextSegment segment = segments.get(node);
+            if (deleted.get(node) || filter != null && (segment == null || !filter.test(segment.metadata()))) {
+                skipped = true;
+                continue;
+            }
+            float[] vector = rerankVectors != null ? rerankVectors.get(node) : index.vector(node);
+            matches.add(new EmbeddingMatch<>(score, ids.get(node), Embedding.from(vector), segment));
+        }
+        return skipped;
+    }
+
+    // caller holds the read lock; re-scores quantized candidates at full precision
+    private HnswIndex.Ranked rerank(float[] query, HnswIndex.Ranked candidates) {
+        if (rerankVectors == null) {
+            return candidates;
+        }
+        HnswIndex.Heap reranked = new HnswIndex.Heap(candidates.nodes.length);
+        for (int node : candidates.nodes) {
+            reranked.push(node, rerankVectors.dot(query, node));
+        }
+        return reranked.drain();
+    }
+
+    /**
+     * Compares the ids a search returned with an exhaustive full-precision search for the same request, and
+     * adds the fraction found to the recall average.
+     */
+    private void probeRecall(float[] query, EmbeddingSearchRequest request, List<EmbeddingMatch<TextSegment>> returned) {
+        Set<String> expected = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            HnswIndex.Heap best = new HnswIndex.Heap(request.maxResults() + 1);
+            for (int node = 0; node < index.size(); node++) {
+                if (!deleted.get(node)) {
+                    float score = rerankVectors != null ? rerankVectors.dot(query, node) : index.similarity(query, node);
+                    best.pushBounded(node, score, request.maxResults());
+                }
+            }
+            HnswIndex.Ranked exact = best.drain();
+            for (int i = 0; i < exact.nodes.length; i++) {
+                if (RelevanceScore.fromCosineSimilarity(exact.scores[i]) >= request.minScore()) {
+                    expected.add(ids.get(exact.nodes[i]));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (expected.isEmpty()) {
+            return;
+        }
+        int found = 0;
+        for (EmbeddingMatch<TextSegment> match : returned) {
+            if (expected.contains(match.embeddingId())) {
+                found++;
+            }
+        }
+        recallProbes.incrementAndGet();
+        recallMicros.addAndGet(found * 1_000_000L / expected.size());
+    }
+
+    private void insert(List<String> newIds, List<Embedding> embeddings, List<TextSegment> embedded) {
+        // Normalize outside the lock, so the inner product in the index is the cosine similarity
+        List<float[]> vectors = new ArrayList<>(embeddings.size());
+        for (Embedding embedding : embeddings) {
+            vectors.add(unitVector(embedding));
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < vectors.size(); i++) {
+                checkDimension(vectors.get(i).length);
+                Integer replaced = nodes.get(newIds.get(i));
+                if (replaced != null) {
+                    deleted.set(replaced);
+                }
+                int node = index.insert(vectors.get(i));
+                if (rerankVectors != null) {
+                    rerankVectors.put(node, vectors.get(i));
+                }
+                ids.add(newIds.get(i));
+                segments.add(embedded == null ? null : embedded.get(i));
+                nodes.put(newIds.get(i), node);
+            }
+            modifications++;
+            dirty = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write HNSW re-rank vectors " + rerankVectors, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkDimension(int dimension) {
+        if (dimension != index.dimension()) {
+            throw new IllegalArgumentException("Expected a vector of dimension " + index.dimension() + ", got " + dimension);
+        }
+    }
+
+    private void load() throws IOException {
+        try (FileChannel graphFile = FileChannel.open(snapshotPath, StandardOpenOption.READ);
+             FileChannel vectorFile = FileChannel.open(vectorPath, StandardOpenOption.READ)) {
+            ByteBuffer graph = graphFile.map(FileChannel.MapMode.READ_ONLY, 0, graphFile.size());
+            long snapshotId = readHeader(graph);
+            ByteBuffer vectorHeader = vectorFile.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (readHeader(vectorHeader) != snapshotId) {
+                throw new IOException("graph and vector files belong to different snapshots");
+            }
+
+            index = HnswIndex.read(graph, vectorFile, HEADER_BYTES);
+            for (int node = 0; node < index.size(); node++) {
+                readNode(graph, node);
+            }
+            if (graph.hasRemaining()) {
+                throw new IOException("graph holds " + graph.remaining() + " bytes past its " + index.size() + " nodes");
+            }
+        }
+    }
+
+    /**
+     * Checks a loaded snapshot against the configuration and the re-rank vectors beside it.
+     */
+    private void verify() {
+        if (index.dimension() != dimension) {
+            throw new IllegalStateException("snapshot has dimension " + index.dimension()
+                    + ", configured dimension is " + dimension);
+        }
+        if (index.quantization() != quantization) {
+            throw new IllegalStateException("snapshot is quantized as " + index.quantization()
+                    + ", configured quantization is " + quantization);
+        }
+        if (rerankVectors == null) {
+            return;
+        }
+        if (rerankVectors.capacity() < index.size()) {
+            throw new IllegalStateException("re-rank vectors " + rerankVectors + " hold fewer than the "
+                    + index.size() + " vectors of the snapshot");
+        }
+        // A crash between a compaction and the next snapshot leaves the re-rank file renumbered ahead of the
+        // graph; the quantized and re-rank vectors of a sample of nodes then point in unrelated directions
+        int step = Math.max(1, index.size() / 16);
+        for (int node = 0; node < index.size(); node += step) {
+            if (!deleted.get(node) && cosine(index.vector(node), rerankVectors.get(node)) < 0.5) {
+                throw new IllegalStateException("re-rank vectors " + rerankVectors + " do not match node " + node
+                        + " of the snapshot");
+            }
+        }
+    }
+
+    // caller owns the store exclusively, as open() does
+    private void reset() {
+        index = new HnswIndex(dimension, m, efConstruction, 1024, quantization);
+        ids.clear();
+        segments.clear();
+        nodes.clear();
+        deleted.clear();
+        dirty = true;
+    }
+
+    private void writeNode(DataOutputStream out, int node) throws IOException {
+        out.writeBoolean(deleted.get(node));
+        writeString(out, ids.get(node));
+        TextSegment segment = segments.get(node);
+        out.writeBoolean(segment != null);
+        if (segment != null) {
+            writeString(out, segment.text());
+            Map<String, Object> metadata = segment.metadata().toMap();
+            out.writeInt(metadata.size());
+            for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, String.valueOf(entry.getValue()));
+            }
+        }
+    }
+
+    private void readNode(ByteBuffer in, int node) {
+        if (in.get() != 0) {
+            deleted.set(node);
+        }
+        String id = readString(in);
+        TextSegment segment = null;
+        if (in.get() != 0) {
+            String text = readString(in);
+            int entries = in.getInt();
+            Map<String, String> metadata = new HashMap<>(entries * 2);
+            for (int i = 0; i < entries; i++) {
+                metadata.put(readString(in), readString(in));
+            }
+            segment = TextSegment.from(text, Metadata.from(metadata));
+        }
+        ids.add(id);
+        segments.add(segment);
+        if (!deleted.get(node)) {
+            nodes.put(id, node);
+        }
+    }
+
+    // the scheduled job: compact first, so the snapshot written right after holds the compacted graph
+    private void maintainQuietly() {
+        try {
+            compact();
+        } catch (Exception e) {
+            LOG.error("Failed to compact HNSW graph " + snapshotPath + ": " + e.getMessage(), e);
+        }
+        snapshotQuietly();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            LOG.error("Failed to write HNSW snapshot " + snapshotPath + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static DataOutputStream open(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+    }
+
+    private static void writeHeader(DataOutputStream out, long snapshotId) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(snapshotId);
+    }
+
+    private static long readHeader(ByteBuffer in) throws IOException {
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new IOException("not an HNSW snapshot of version " + VERSION);
+        }
+        return in.getLong();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / Math.sqrt(normA * normB);
+    }
+
+    private static float[] unitVector(Embedding embedding) {
+        float[] vector = embedding.vector().clone();
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private static List<String> randomIds(int count) {
+        List<String> generated = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            generated.add(UUID.randomUUID().toString());
+        }
+        return generated;
+    }
+}
@@ -0,0 +1,468 @@
+package com.example.service;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hierarchical navigable small world graph (Malkov and Yashunin) over unit vectors, scored by inner product,
+ * i.e. cosine similarity. Vectors live in primitive arrays, full or quantized (see {@link QuantizedVectors}),
+ * and nodes are dense ints, so a search touches no boxed values. Not thread-safe for inserts: the caller
+ * serializes them against searches, which may run concurrently with each other.
+ */
+final class HnswIndex {
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final ConcurrentLinkedQueue<Visited> visitedPool = new ConcurrentLinkedQueue<>();
+
+    private final QuantizedVectors vectors;
+    // links[node][level] = {count, neighbour...}
+    private int[][][] links;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswIndex(int dimension, int m, int efConstruction, int initialCapacity, VectorQuantization quantization) {
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.vectors = QuantizedVectors.create(quantization, dimension, Math.max(1, initialCapacity));
+        this.links = new int[Math.max(1, initialCapacity)][][];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int maxLevel() {
+        return maxLevel;
+    }
+
+    VectorQuantization quantization() {
+        return vectors.quantization();
+    }
+
+    int bytesPerVector() {
+        return vectors.bytesPerVector();
+    }
+
+    /**
+     * Copy of the stored, normalized vector of a node; approximate when quantized.
+     */
+    float[] vector(int node) {
+        return vectors.decode(node);
+    }
+
+    /**
+     * Inserts a unit vector and returns its node.
+     */
+    int insert(float[] vector) {
+        int node = size;
+        ensureCapacity(node + 1);
+        vectors.set(node, vector);
+        Object query = vectors.encodeQuery(vector);
+
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxLinks(l) + 1];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int nearest = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            nearest = greedyClosest(query, nearest, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            Ranked candidates = searchLayer(query, nearest, efConstruction, l).drain();
+            int[] selected = selectNeighbours(candidates.nodes, candidates.scores, maxLinks(l));
+            int[] own = links[node][l];
+            own[0] = selected.length;
+            System.arraycopy(selected, 0, own, 1, selected.length);
+            for (int neighbour : selected) {
+                connect(neighbour, node, l);
+            }
+            nearest = candidates.nodes[0];
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * Returns up to {@code ef} approximate nearest nodes to the unit vector, best first.
+     */
+    Ranked search(float[] query, int ef) {
+        if (entryPoint < 0) {
+            return new Heap(0).drain();
+        }
+        Object encoded = vectors.encodeQuery(query);
+        int nearest = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            nearest = greedyClosest(encoded, nearest, l);
+        }
+        return searchLayer(encoded, nearest, ef, 0).drain();
+    }
+
+    /**
+     * Exhaustive search over the stored vectors, the reference for measuring graph recall.
+     */
+    Ranked exactSearch(float[] query, int k) {
+        Object encoded = vectors.encodeQuery(query);
+        Heap best = new Heap(k + 1);
+        for (int node = 0; node < size; node++) {
+            best.pushBounded(node, vectors.similarity(encoded, node), k);
+        }
+        return best.drain();
+    }
+
+    float similarity(float[] query, int node) {
+        return vectors.similarity(vectors.encodeQuery(query), node);
+    }
+
+    /**
+     * Writes the graph; the vectors go to {@link #writeVectors}, so that the graph stays small enough to map
+     * in one buffer.
+     */
+    void writeGraph(DataOutputStream out) throws IOException {
+        out.writeByte(vectors.quantization().ordinal());
+        out.writeInt(dimension);
+        out.writeInt(m);
+        out.writeInt(efConstruction);
+        out.writeInt(size);
+        out.writeInt(entryPoint);
+        out.writeInt(maxLevel);
+        for (int node = 0; node < size; node++) {
+            out.writeByte(links[node].length);
+            for (int[] level : links[node]) {
+                out.writeByte(level[0]);
+                for (int i = 1; i <= level[0]; i++) {
+                    out.writeInt(level[i]);
+                }
+            }
+        }
+    }
+
+    void writeVectors(DataOutputStream out) throws IOException {
+        vectors.write(out, size);
+    }
+
+    /**
+     * Reads an index written by {@link #writeGraph} and {@link #writeVectors}. The vector file is mapped a
+     * window at a time and copied in bulk.
+     */
+    static HnswIndex read(ByteBuffer graph, FileChannel vectorFile, long vectorOffset) throws IOException {
+        VectorQuantization quantization = VectorQuantization.values()[graph.get()];
+        int dimension = graph.getInt();
+        int m = graph.getInt();
+        int efConstruction = graph.getInt();
+        int size = graph.getInt();
+        HnswIndex index = new HnswIndex(dimension, m, efConstruction, size, quantization);
+        index.entryPoint = graph.getInt();
+        index.maxLevel = graph.getInt();
+        for (int node = 0; node < size; node++) {
+            int levels = graph.get() & 0xFF;
+            index.links[node] = new int[levels][];
+            for (int l = 0; l < levels; l++) {
+                int[] level = new int[index.maxLinks(l) + 1];
+                level[0] = graph.get() & 0xFF;
+                for (int i = 1; i <= level[0]; i++) {
+                    level[i] = graph.getInt();
+                }
+                index.links[node][l] = level;
+            }
+        }
+
+        index.vectors.read(vectorFile, vectorOffset, size);
+        index.size = size;
+        return index;
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int nodes) {
+        if (nodes > links.length) {
+            int capacity = Math.max(nodes, links.length + (links.length >> 1));
+            vectors.ensureCapacity(capacity);
+            links = Arrays.copyOf(links, capacity);
+        }
+    }
+
+    private int greedyClosest(Object query, int start, int level) {
+        int current = start;
+        float best = vectors.similarity(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links[current][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                float score = vectors.similarity(query, neighbours[i]);
+                if (score > best) {
+                    best = score;
+                    current = neighbours[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Heap searchLayer(Object query, int start, int ef, int level) {
+        Visited visited = borrowVisited();
+        try {
+            Heap candidates = new Heap(ef + 1);   // best on top
+            Heap results = new Heap(ef + 1);      // worst on top
+            float score = vectors.similarity(query, start);
+            visited.mark(start);
+            candidates.push(start, -score);
+            results.push(start, score);
+
+            while (candidates.size() > 0) {
+                float candidateScore = -candidates.topScore();
+                int candidate = candidates.pop();
+                if (results.size() >= ef && candidateScore < results.topScore()) {
+                    break;
+                }
+                int[] neighbours = links[candidate][level];
+                for (int i = 1; i <= neighbours[0]; i++) {
+                    int neighbour = neighbours[i];
+                    if (visited.mark(neighbour)) {
+                        float neighbourScore = vectors.similarity(query, neighbour);
+                        if (results.size() < ef || neighbourScore > results.topScore()) {
+                            candidates.push(neighbour, -neighbourScore);
+                            results.pushBounded(neighbour, neighbourScore, ef);
+                        }
+                    }
+                }
+            }
+            return results;
+        } finally {
+            visitedPool.offer(visited);
+        }
+    }
+
+    /**
+     * The pruning heuristic of the HNSW paper: a candidate is kept only if it is closer to the base than to
+     * every neighbour already kept, which preserves links towards other clusters. Remaining slots are filled
+     * with the closest pruned candidates.
+     */
+    private int[] selectNeighbours(int[] candidates, float[] scores, int max) {
+        if (candidates.length <= max) {
+            return candidates;
+        }
+        int[] selected = new int[max];
+        int count = 0;
+        boolean[] taken = new boolean[candidates.length];
+        for (int c = 0; c < candidates.length && count < max; c++) {
+            boolean diverse = true;
+            for (int s = 0; s < count && diverse; s++) {
+                diverse = vectors.similarity(candidates[c], selected[s]) < scores[c];
+            }
+            if (diverse) {
+                selected[count++] = candidates[c];
+                taken[c] = true;
+            }
+        }
+        for (int c = 0; c < candidates.length && count < max; c++) {
+            if (!taken[c]) {
+                selected[count++] = candidates[c];
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Adds the reverse link. A full list drops its weakest link for a stronger newcomer: the pruning heuristic
+     * would cost a quadratic number of inner products per link, and it already shaped the forward links.
+     */
+    private void connect(int node, int neighbour, int level) {
+        int[] own = links[node][level];
+        int max = own.length - 1;
+        if (own[0] < max) {
+            own[++own[0]] = neighbour;
+            return;
+        }
+
+        int weakest = 0;
+        float weakestScore = Float.MAX_VALUE;
+        for (int i = 1; i <= own[0]; i++) {
+            float score = vectors.similarity(node, own[i]);
+            if (score < weakestScore) {
+                weakestScore = score;
+                weakest = i;
+            }
+        }
+        if (vectors.similarity(node, neighbour) > weakestScore) {
+            own[weakest] = neighbour;
+        }
+    }
+
+    private Visited borrowVisited() {
+        Visited visited = visitedPool.poll();
+        if (visited == null) {
+            visited = new Visited();
+        }
+        visited.reset(size);
+        return visited;
+    }
+
+    /**
+     * Visited set reused across searches: a node is visited when its mark equals the current generation.
+     */
+    private static final class Visited {
+        private int[] marks = new int[0];
+        private int generation;
+
+        private void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        // true when the node had not been visited yet
+        private boolean mark(int node) {
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+
+    /**
+     * Binary min-heap of (score, node); push negated scores for a max-heap.
+     */
+    static final class Heap {
+        private int[] nodes;
+        private float[] scores;
+        private int size;
+
+        Heap(int capacity) {
+            nodes = new int[Math.max(capacity, 2)];
+            scores = new float[Math.max(capacity, 2)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] <= score) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        /**
+         * Keeps the {@code bound} highest scores.
+         */
+        void pushBounded(int node, float score, int bound) {
+            if (size < bound) {
+                push(node, score);
+            } else if (score > scores[0]) {
+                pop();
+                push(node, score);
+            }
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            int node = nodes[size];
+            float score = scores[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && scores[child + 1] < scores[child]) {
+                    child++;
+                }
+                if (scores[child] >= score) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+            return top;
+        }
+
+        /**
+         * Empties the heap into arrays ordered by descending score.
+         */
+        Ranked drain() {
+            int[] ranked = new int[size];
+            float[] rankedScores = new float[size];
+            for (int i = size - 1; i >= 0; i--) {
+                rankedScores[i] = scores[0];
+                ranked[i] = pop();
+            }
+            return new Ranked(ranked, rankedScores);
+        }
+    }
+
+    static final class Ranked {
+        final int[] nodes;
+        final float[] scores;
+
+        private Ranked(int[] nodes, float[] scores) {
+            this.nodes = nodes;
+            this.scores = scores;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Lower-cased terms for lexical matching of code against requirement text. Identifiers are kept whole and, when
+ * splitting is on, also broken into their camelCase and snake_case parts, so {@code placeOrder} and
+ * {@code place_order} in code both match "place order" in a requirement.
+ */
+final class IdentifierTokenizer {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it", "of", "on", "or",
+            "the", "to", "with");
+
+    private final boolean splitIdentifiers;
+
+    IdentifierTokenizer(boolean splitIdentifiers) {
+        this.splitIdentifiers = splitIdentifiers;
+    }
+
+    List<String> tokenize(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isWordChar(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && isWordChar(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                addWord(text, start, i, terms);
+            }
+        }
+        return terms;
+    }
+
+    private void addWord(CharSequence text, int start, int end, List<String> terms) {
+        add(text.subSequence(start, end).toString(), terms);
+        if (!splitIdentifiers) {
+            return;
+        }
+
+        List<String> parts = new ArrayList<>(4);
+        int partStart = start;
+        for (int i = start + 1; i <= end; i++) {
+            if (i == end || isBoundary(text, i, end)) {
+                if (text.charAt(partStart) != '_') {
+                    parts.add(text.subSequence(partStart, i).toString());
+                }
+                partStart = i;
+            }
+        }
+        // A word with a single part is already in as the whole word
+        if (parts.size() > 1) {
+            for (String part : parts) {
+                add(part, terms);
+            }
+        }
+    }
+
+    /**
+     * Part boundaries: around underscores, lower or digit to upper ({@code placeOrder}), and the last capital
+     * of an acronym before a lower-case letter ({@code HTTPServer}).
+     */
+    private static boolean isBoundary(CharSequence text, int i, int end) {
+        char previous = text.charAt(i - 1);
+        char current = text.charAt(i);
+        if (current == '_' || previous == '_') {
+            return current != previous;
+        }
+        if (Character.isUpperCase(current)) {
+            return Character.isLowerCase(previous) || Character.isDigit(previous)
+                    || Character.isUpperCase(previous) && i + 1 < end && Character.isLowerCase(text.charAt(i + 1));
+        }
+        return false;
+    }
+
+    private static void add(String word, List<String> terms) {
+        String term = stripUnderscores(word).toLowerCase(Locale.ROOT);
+        if (term.length() > 1 && !STOP_WORDS.contains(term) && !isNumber(term)) {
+            terms.add(term);
+        }
+    }
+
+    private static String stripUnderscores(String word) {
+        int start = 0;
+        int end = word.length();
+        while (start < end && word.charAt(start) == '_') {
+            start++;
+        }
+        while (end > start && word.charAt(end - 1) == '_') {
+            end--;
+        }
+        return word.substring(start, end);
+    }
+
+    private static boolean isNumber(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            if (!Character.isDigit(term.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.service;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Push parser that reports each top-level field of a JSON object as soon as its value is complete in a token
+ * stream. Values are not validated; they are handed over as raw JSON text for the caller to forward or bind.
+ * <p>
+ * In JSON mode the stream is the object itself. Otherwise text before the object (prose, markdown fences) is
+ * skipped: braces inside inline code spans are ignored, and a brace only opens the object when a quoted key
+ * and a colon, or the closing brace, follow it.
+ */
+final class IncrementalJsonParser {
+
+    private enum State {
+        SEEK_OBJECT, OPENED, SEEK_KEY, KEY, SEEK_COLON, VALUE, DONE
+    }
+
+    private final boolean jsonMode;
+    private final BiConsumer<String, String> onField;
+    private final StringBuilder key = new StringBuilder();
+    private final StringBuilder value = new StringBuilder();
+
+    private State state = State.SEEK_OBJECT;
+    private int nesting;
+    private boolean inString;
+    private boolean escaped;
+    // prose only, until the object has been recognized
+    private boolean firstKey;
+    private boolean inInlineCode;
+    private int backticks;
+
+    IncrementalJsonParser(boolean jsonMode, BiConsumer<String, String> onField) {
+        this.jsonMode = jsonMode;
+        this.onField = onField;
+    }
+
+    void feed(CharSequence chunk) {
+        for (int i = 0; i < chunk.length() && state != State.DONE; i++) {
+            accept(chunk.charAt(i));
+        }
+    }
+
+    boolean isComplete() {
+        return state == State.DONE;
+    }
+
+    private void accept(char c) {
+        switch (state) {
+            case SEEK_OBJECT -> seekObject(c);
+            case OPENED -> {
+                // Prose such as "{@code x}" or "{ n }": not the object, look further
+                if (c == '"') {
+                    key.setLength(0);
+                    state = State.KEY;
+                } else if (c == '}') {
+                    state = State.DONE;
+                } else if (!Character.isWhitespace(c)) {
+                    state = State.SEEK_OBJECT;
+                    seekObject(c);
+                }
+            }
+            case SEEK_KEY -> {
+                if (c == '"') {
+                    key.setLength(0);
+                    state = State.KEY;
+                } else if (c == '}') {
+                    state = State.DONE;
+                }
+            }
+            case KEY -> {
+                if (escaped) {
+                    key.append(c);
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    state = State.SEEK_COLON;
+                } else {
+                    key.append(c);
+                }
+            }
+            case SEEK_COLON -> {
+                if (c == ':') {
+                    value.setLength(0);
+                    nesting = 0;
+                    firstKey = false;
+                    state = State.VALUE;
+                } else if (firstKey && !Character.isWhitespace(c)) {
+                    state = State.SEEK_OBJECT;
+                    seekObject(c);
+                }
+            }
+            case VALUE -> acceptValue(c);
+            case DONE -> {
+            }
+        }
+    }
+
+    private void seekObject(char c) {
+        if (c == '`') {
+            backticks++;
+            return;
+        }
+        // A single backtick opens or closes an inline code span; a run of three is a fence around the JSON
+        if (backticks == 1) {
+            inInlineCode = !inInlineCode;
+        }
+        backticks = 0;
+        if (c == '\n') {
+            inInlineCode = false;
+        }
+        if (c == '{' && !inInlineCode) {
+            if (jsonMode) {
+                state = State.SEEK_KEY;
+            } else {
+                firstKey = true;
+                state = State.OPENED;
+            }
+        }
+    }
+
+    private void acceptValue(char c) {
+        if (inString) {
+            value.append(c);
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+            }
+            return;
+        }
+
+        if (nesting == 0 && (c == ',' || c == '}')) {
+            onField.accept(key.toString(), value.toString().strip());
+            state = c == ',' ? State.SEEK_KEY : State.DONE;
+            return;
+        }
+
+        if (c == '"') {
+            inString = true;
+        } else if (c == '{' || c == '[') {
+            nesting++;
+        } else if (c == '}' || c == ']') {
+            nesting--;
+        }
+        if (!value.isEmpty() || !Character.isWhitespace(c)) {
+            value.append(c);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.service;
+
+import com.example.dto.StructuralSummary;
+import com.example.dto.StructuralSummary.MethodSummary;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.jdt.core.dom.*;
+import org.jboss.logging.Logger;
+
+import java.util.*;
+
+/**
+ * Java analyzer on the JDT AST: one traversal collects types, signatures, complexity and call edges.
+ */
+@ApplicationScoped
+public class JavaLanguageAnalyzer implements LanguageAnalyzer {
+
+    private static final Logger LOG = Logger.getLogger(JavaLanguageAnalyzer.class);
+
+    @Override
+    public Set<String> languages() {
+        return Set.of("java");
+    }
+
+    @Override
+    public StructuralSummary analyze(String language, String code) {
+        JavaStructureVisitor visitor = new JavaStructureVisitor();
+        JavaSource.Outline outline = null;
+        try {
+            CompilationUnit unit = JavaSource.parse(code);
+            unit.accept(visitor);
+            outline = JavaSource.outline(unit);
+        } catch (Exception e) {
+            LOG.error("Java AST analysis failed: " + e.getMessage());
+        }
+        Set<String> tags = new LinkedHashSet<>();
+        RequirementTags.collect(code, 0, code.length(), tags);
+        StructuralSummary summary = new StructuralSummary(language, (int) code.lines().count(), visitor.complexity,
+                visitor.types, visitor.methods, new ArrayList<>(tags));
+        return outline != null ? new JavaStructuralSummary(summary, outline) : summary;
+    }
+
+    /**
+     * Collects types, method signatures, per-method complexity and call edges in one traversal.
+     */
+    private static final class JavaStructureVisitor extends ASTVisitor {
+        private final List<String> types = new ArrayList<>();
+        private final List<MethodSummary> methods = new ArrayList<>();
+        private final Deque<String> typeNames = new ArrayDeque<>();
+        private final Deque<MethodSummary> methodStack = new ArrayDeque<>();
+        private final Deque<Set<String>> callStack = new ArrayDeque<>();
+        private int complexity = 1;
+
+        @Override
+        public boolean visit(TypeDeclaration node) {
+            return enterType(node.isInterface() ? "interface" : "class", node);
+        }
+
+        @Override
+        public void endVisit(TypeDeclaration node) {
+            typeNames.pop();
+        }
+
+        @Override
+        public boolean visit(EnumDeclaration node) {
+            return enterType("enum", node);
+        }
+
+        @Override
+        public void endVisit(EnumDeclaration node) {
+            typeNames.pop();
+        }
+
+        @Override
+        public boolean visit(RecordDeclaration node) {
+            return enterType("record", node);
+        }
+
+        @Override
+        public void endVisit(RecordDeclaration node) {
+            typeNames.pop();
+        }
+
+        @Override
+        public boolean visit(AnnotationTypeDeclaration node) {
+            return enterType("@interface", node);
+        }
+
+        @Override
+        public void endVisit(AnnotationTypeDeclaration node) {
+            typeNames.pop();
+        }
+
+        @Override
+        public boolean visit(MethodDeclaration node) {
+            StringBuilder signature = new StringBuilder();
+            if (!node.isConstructor() && node.getReturnType2() != null) {
+                signature.append(node.getReturnType2()).append(' ');
+            }
+            if (!typeNames.isEmpty()) {
+                signature.append(typeNames.peek()).append('.');
+            }
+            signature.append(node.getName().getIdentifier()).append('(');
+            List<?> parameters = node.parameters();
+            for (int i = 0; i < parameters.size(); i++) {
+                SingleVariableDeclaration parameter = (SingleVariableDeclaration) parameters.get(i);
+                signature.append(i > 0 ? ", " : "").append(parameter.getType()).append(parameter.isVarargs() ? "..." : "")
+                        .append(' ').append(parameter.getName().getIdentifier());
+            }
+            signature.append(')');
+
+            MethodSummary method = new MethodSummary(signature.toString(), 1, null);
+            methods.add(method);
+            methodStack.push(method);
+            callStack.push(new LinkedHashSet<>());
+            return true;
+        }
+
+        @Override
+        public void endVisit(MethodDeclaration node) {
+            methodStack.pop().setCalls(new ArrayList<>(callStack.pop()));
+        }
+
+        @Override
+        public boolean visit(MethodInvocation node) {
+            call(node.getName().getIdentifier());
+            return true;
+        }
+
+        @Override
+        public boolean visit(SuperMethodInvocation node) {
+            call("super." + node.getName().getIdentifier());
+            return true;
+        }
+
+        @Override
+        public boolean visit(ClassInstanceCreation node) {
+            call("new " + node.getType());
+            return true;
+        }
+
+        @Override
+        public boolean visit(IfStatement node) {
+            decision(1);
+            return true;
+        }
+
+        @Override
+        public boolean visit(ForStatement node) {
+            decision(1);
+            return true;
+        }
+
+        @Override
+        public boolean visit(EnhancedForStatement node) {
+            decision(1);
+            return true;
+        }
+
+        @Override
+        public boolean visit(WhileStatement node) {
+            decision(1);
+            return true;
+        }
+
+        @Override
+        public boolean visit(DoStatement node) {
+            decision(1);
+            return true;
+        }
+
+        @Override
+        public boolean visit(SwitchCase node) {
+            if (!node.isDefault()) {
+                decision(Math.max(1, node.expressions().size()));
+            }
+            return true;
+        }
+
+        @Override
+        public boolean visit(CatchClause node) {
+            decision(1);
+            return true;
+        }
+
+        @Override
+        public boolean visit(ConditionalExpression node) {
+            decision(1);
+            return true;
+        }
+
+        @Override
+        public boolean visit(InfixExpression node) {
+            InfixExpression.Operator operator = node.getOperator();
+            if (operator == InfixExpression.Operator.CONDITIONAL_AND || operator == InfixExpression.Operator.CONDITIONAL_OR) {
+                decision(1 + node.extendedOperands().size());
+            }
+            return true;
+        }
+
+        private boolean enterType(String kind, AbstractTypeDeclaration node) {
+            String name = typeNames.isEmpty() ? node.getName().getIdentifier()
+                    : typeNames.peek() + "." + node.getName().getIdentifier();
+            types.add(kind + " " + name);
+            typeNames.push(name);
+            return true;
+        }
+
+        private void call(String name) {
+            if (!callStack.isEmpty()) {
+                callStack.peek().add(name);
+            }
+        }
+
+        private void decision(int points) {
+            complexity += points;
+            if (!methodStack.isEmpty()) {
+                MethodSummary method = methodStack.peek();
+                method.setComplexity(method.getComplexity() + points);
+            }
+        }
+    }
+}
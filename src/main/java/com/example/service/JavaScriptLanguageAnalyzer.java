@@ -0,0 +1,24 @@
+package com.example.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.Set;
+
+/**
+ * JavaScript and TypeScript: function declarations, class methods and arrow functions with a body.
+ */
+@ApplicationScoped
+public class JavaScriptLanguageAnalyzer extends BraceLanguageAnalyzer {
+
+    public JavaScriptLanguageAnalyzer() {
+        super(SourceLexer.JAVASCRIPT, Set.of("if", "for", "while", "case", "catch", "&&", "||", "?", "??"),
+                Set.of("if", "for", "while", "switch", "catch", "return", "else", "do", "new", "typeof", "delete",
+                        "void", "await", "function", "yield", "throw", "case", "in", "of", "instanceof"),
+                Set.of("function"), Set.of("class", "interface", "enum"), Set.of(), true, true);
+    }
+
+    @Override
+    public Set<String> languages() {
+        return Set.of("javascript", "typescript");
+    }
+}
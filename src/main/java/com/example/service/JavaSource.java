@@ -0,0 +1,167 @@
+package com.example.service;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDT parsing of submitted Java code, and splitting of a compilation unit into reviewable units at type and
+ * member boundaries.
+ */
+final class JavaSource {
+
+    private static final Map<String, String> COMPILER_OPTIONS = JavaCore.getOptions();
+    private static final int MAX_OUTLINE_CHARS = 2_000;
+
+    static {
+        JavaCore.setComplianceOptions(JavaCore.VERSION_21, COMPILER_OPTIONS);
+    }
+
+    private JavaSource() {
+    }
+
+    static CompilationUnit parse(String code) {
+        ASTParser parser = ASTParser.newParser(AST.JLS21);
+        parser.setSource(code.toCharArray());
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        parser.setCompilerOptions(COMPILER_OPTIONS);
+        return (CompilationUnit) parser.createAST(null);
+    }
+
+    /**
+     * The type and member boundaries of a parsed compilation unit, all {@link #splitUnits} needs. It is kept with
+     * the structural summary, so splitting a submission does not parse it again.
+     */
+    static Outline outline(CompilationUnit unit) {
+        List<?> declarations = unit.types();
+        List<TypeOutline> types = new ArrayList<>(declarations.size());
+        for (Object type : declarations) {
+            AbstractTypeDeclaration declaration = (AbstractTypeDeclaration) type;
+            List<?> bodyDeclarations = declaration.bodyDeclarations();
+            List<Member> members = new ArrayList<>(bodyDeclarations.size());
+            for (Object member : bodyDeclarations) {
+                BodyDeclaration body = (BodyDeclaration) member;
+                int start = unit.getExtendedStartPosition(body);
+                members.add(new Member(start, start + unit.getExtendedLength(body), memberName(body)));
+            }
+            int start = unit.getExtendedStartPosition(declaration);
+            types.add(new TypeOutline(start, start + unit.getExtendedLength(declaration), members));
+        }
+        return new Outline(types);
+    }
+
+    /**
+     * Splits the code into units of at most {@code maxChars} characters (a single larger member becomes a unit on
+     * its own). Each unit is compilable-looking Java: the package and imports, a comment naming the members
+     * reviewed in other units, the enclosing type's declaration and a run of consecutive members.
+     * @return one unit per group; a single unit holding the whole code when it cannot be split.
+     */
+    static List<String> splitUnits(String code, Outline outline, int maxChars) {
+        if (outline.types.isEmpty()) {
+            return List.of(code);
+        }
+
+        String header = code.substring(0, outline.types.get(0).start);
+        List<Group> groups = new ArrayList<>();
+        for (TypeOutline type : outline.types) {
+            if (type.members.isEmpty()) {
+                groups.add(new Group("", code.substring(type.start, type.end), ""));
+                continue;
+            }
+
+            String opening = code.substring(type.start, type.members.get(0).start);
+            Group group = null;
+            for (Member member : type.members) {
+                String text = code.substring(member.start, member.end);
+                if (group == null || group.body.length() + text.length() > maxChars) {
+                    group = new Group(opening, "", "\n}\n");
+                    groups.add(group);
+                }
+                group.body.append(text).append("\n\n");
+                group.members.add(member.name);
+            }
+        }
+
+        if (groups.size() < 2) {
+            return List.of(code);
+        }
+
+        List<String> units = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            StringBuilder others = new StringBuilder();
+            for (int j = 0; j < groups.size() && others.length() < MAX_OUTLINE_CHARS; j++) {
+                if (j != i) {
+                    for (String name : groups.get(j).members) {
+                        others.append(others.isEmpty() ? "" : ", ").append(name);
+                    }
+                }
+            }
+            units.add(header + "// Part " + (i + 1) + " of " + groups.size()
+                    + (others.isEmpty() ? "" : "; reviewed separately: " + others) + "\n"
+                    + groups.get(i).opening + groups.get(i).body + groups.get(i).closing);
+        }
+        return units;
+    }
+
+    private static String memberName(BodyDeclaration member) {
+        if (member instanceof MethodDeclaration method) {
+            return method.getName().getIdentifier() + "()";
+        } else if (member instanceof AbstractTypeDeclaration type) {
+            return type.getName().getIdentifier();
+        } else if (member instanceof FieldDeclaration field && !field.fragments().isEmpty()) {
+            return ((VariableDeclarationFragment) field.fragments().get(0)).getName().getIdentifier();
+        }
+        return "initializer";
+    }
+
+    /**
+     * Offsets of the top-level types of a compilation unit and of their members; immutable.
+     */
+    static final class Outline {
+        private final List<TypeOutline> types;
+
+        private Outline(List<TypeOutline> types) {
+            this.types = List.copyOf(types);
+        }
+    }
+
+    private static final class TypeOutline {
+        private final int start;
+        private final int end;
+        private final List<Member> members;
+
+        private TypeOutline(int start, int end, List<Member> members) {
+            this.start = start;
+            this.end = end;
+            this.members = List.copyOf(members);
+        }
+    }
+
+    private static final class Member {
+        private final int start;
+        private final int end;
+        private final String name;
+
+        private Member(int start, int end, String name) {
+            this.start = start;
+            this.end = end;
+            this.name = name;
+        }
+    }
+
+    private static final class Group {
+        private final String opening;
+        private final StringBuilder body;
+        private final String closing;
+        private final List<String> members = new ArrayList<>();
+
+        private Group(String opening, String body, String closing) {
+            this.opening = opening;
+            this.body = new StringBuilder(body);
+            this.closing = closing;
+        }
+    }
+}
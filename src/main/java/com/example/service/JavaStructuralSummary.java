@@ -0,0 +1,27 @@
+package com.example.service;
+
+import com.example.dto.StructuralSummary;
+
+/**
+ * Structural summary of Java code that also carries its {@link JavaSource.Outline}, so a map-reduce review can
+ * split the code without parsing it again. The outline is immutable and shared between copies.
+ */
+final class JavaStructuralSummary extends StructuralSummary {
+
+    private final JavaSource.Outline outline;
+
+    JavaStructuralSummary(StructuralSummary summary, JavaSource.Outline outline) {
+        super(summary.getLanguage(), summary.getLineCount(), summary.getComplexity(), summary.getTypes(),
+                summary.getMethods(), summary.getRequirementTags());
+        this.outline = outline;
+    }
+
+    @Override
+    public StructuralSummary copy() {
+        return new JavaStructuralSummary(super.copy(), outline);
+    }
+
+    JavaSource.Outline outline() {
+        return outline;
+    }
+}
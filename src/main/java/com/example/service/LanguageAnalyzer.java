@@ -0,0 +1,19 @@
+package com.example.service;
+
+import com.example.dto.StructuralSummary;
+
+import java.util.Set;
+
+/**
+ * Produces the {@link StructuralSummary} for source code in one or more languages. Implementations are CDI beans,
+ * discovered once at startup by {@link StructuralAnalysisService}, and must be thread-safe.
+ */
+public interface LanguageAnalyzer {
+
+    /**
+     * Lower-case language names, as submitted in {@code CodeImplementation.language}, handled by this analyzer.
+     */
+    Set<String> languages();
+
+    StructuralSummary analyze(String language, String code);
+}
@@ -0,0 +1,125 @@
+package com.example.service;
+
+import com.example.dto.StructuralSummary;
+import com.example.dto.StructuralSummary.MethodSummary;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Base for analyzers built on {@link SourceLexer}: each analysis is one lexing pass feeding a per-call
+ * {@link Collector}, which the subclass extends with its declaration rules.
+ */
+abstract class LexerLanguageAnalyzer implements LanguageAnalyzer {
+
+    private final SourceLexer.Syntax syntax;
+    private final Set<String> branchTokens;
+    private final int longestBranchToken;
+    // Keywords of the language that can precede "(" without being a call
+    final Set<String> notCalls;
+
+    LexerLanguageAnalyzer(SourceLexer.Syntax syntax, Set<String> branchTokens, Set<String> notCalls) {
+        this.syntax = syntax;
+        this.branchTokens = branchTokens;
+        this.notCalls = notCalls;
+        this.longestBranchToken = branchTokens.stream().mapToInt(String::length).max().orElse(0);
+    }
+
+    @Override
+    public StructuralSummary analyze(String language, String code) {
+        Collector collector = newCollector(code);
+        int lines = SourceLexer.lex(code, syntax, collector);
+        collector.finish();
+        return new StructuralSummary(language, lines, collector.complexity, collector.types, collector.methods,
+                new ArrayList<>(collector.tags));
+    }
+
+    abstract Collector newCollector(String code);
+
+    /**
+     * Per-analysis state: the summary being built plus the token-level bookkeeping shared by all languages,
+     * i.e. branch counting, call edges and requirement tags.
+     */
+    abstract class Collector implements SourceLexer.Listener {
+        final String code;
+        final List<String> types = new ArrayList<>();
+        final List<MethodSummary> methods = new ArrayList<>();
+        final Set<String> tags = new LinkedHashSet<>();
+        int complexity = 1;
+
+        MethodSummary function;
+        Set<String> calls;
+        SourceLexer.Kind previousKind;
+        int previousStart;
+        int previousEnd;
+
+        Collector(String code) {
+            this.code = code;
+        }
+
+        @Override
+        public final void onToken(SourceLexer.Kind kind, int start, int end, int line, int indent) {
+            if (kind == SourceLexer.Kind.STRING) {
+                RequirementTags.collect(code, start, end, tags);
+            } else if (kind != SourceLexer.Kind.NUMBER && end - start <= longestBranchToken
+                    && branchTokens.contains(code.substring(start, end))) {
+                complexity++;
+                if (function != null) {
+                    function.setComplexity(function.getComplexity() + 1);
+                }
+            }
+
+            token(kind, start, end, indent);
+
+            previousKind = kind;
+            previousStart = start;
+            previousEnd = end;
+        }
+
+        @Override
+        public final void onComment(int start, int end) {
+            RequirementTags.collect(code, start, end, tags);
+        }
+
+        abstract void token(SourceLexer.Kind kind, int start, int end, int indent);
+
+        /**
+         * Called at the end of the code, to close whatever is still open.
+         */
+        abstract void finish();
+
+        boolean is(SourceLexer.Kind kind, int start, int end, String text) {
+            return kind != SourceLexer.Kind.STRING && end - start == text.length() && code.startsWith(text, start);
+        }
+
+        /**
+         * Records a call edge when "(" follows an identifier that names a function.
+         */
+        void maybeCall() {
+            if (calls != null && previousKind == SourceLexer.Kind.IDENTIFIER) {
+                String name = code.substring(previousStart, previousEnd);
+                if (!notCalls.contains(name)) {
+                    calls.add(name);
+                }
+            }
+        }
+
+        MethodSummary openFunction(String signature) {
+            MethodSummary method = new MethodSummary(signature, 1, null);
+            methods.add(method);
+            function = method;
+            calls = new LinkedHashSet<>();
+            return method;
+        }
+
+        void closeFunction(MethodSummary method, Set<String> methodCalls) {
+            method.setCalls(new ArrayList<>(methodCalls));
+        }
+
+        String signature(int start, int end) {
+            return code.substring(start, end).replaceAll("\\s+", " ").trim();
+        }
+    }
+}
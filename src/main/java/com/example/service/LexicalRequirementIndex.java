@@ -0,0 +1,204 @@
+package com.example.service;
+
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.keys.KeyScanArgs;
+import io.quarkus.redis.datasource.keys.KeyScanCursor;
+import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process BM25 index over the requirement chunks {@link EmbeddingService#storeRequirement} writes to Redis.
+ * Loaded from the chunk hashes at startup and kept current from the requirement invalidation channel, like the
+ * {@link RequirementIdIndex}.
+ */
+@ApplicationScoped
+public class LexicalRequirementIndex {
+
+    private static final Logger LOG = Logger.getLogger(LexicalRequirementIndex.class);
+    private static final String KEY_PREFIX = "requirements:";
+    private static final String META_SUFFIX = ":meta";
+
+    @Inject
+    Redis redis;
+
+    @Inject
+    RedisDataSource redisDataSource;
+
+    @ConfigProperty(name = "app.requirement-cache.channel", defaultValue = "requirements:invalidations")
+    String channel;
+
+    @ConfigProperty(name = "app.search.lexical.split-identifiers", defaultValue = "true")
+    boolean splitIdentifiers;
+
+    @ConfigProperty(name = "app.search.lexical.k1", defaultValue = "1.2")
+    double k1;
+
+    @ConfigProperty(name = "app.search.lexical.b", defaultValue = "0.75")
+    double b;
+
+    @ConfigProperty(name = "app.tenancy.default-tenant", defaultValue = "default")
+    String defaultTenant;
+
+    private Bm25Index index;
+    private volatile boolean loaded;
+    private PubSubCommands.RedisSubscriber subscriber;
+    // Reloads read Redis with the blocking datasource, which the event loop delivering messages must not do;
+    // a single thread applies them in the order they were announced.
+    private final ExecutorService reloader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lexical-index-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+
+    @Inject
+    void initIndex() {
+        this.index = new Bm25Index(new IdentifierTokenizer(splitIdentifiers), k1, b);
+    }
+
+    void onStart(@Observes StartupEvent ev) {
+        try {
+            // Subscribe before loading, so requirements written during the load are not missed
+            subscriber = redisDataSource.pubsub(String.class).subscribe(channel, id -> reloader.execute(() -> reload(id)));
+            long start = System.nanoTime();
+            List<String> ids = new ArrayList<>();
+            KeyScanCursor<String> cursor = redisDataSource.key()
+                    .scan(new KeyScanArgs().match(KEY_PREFIX + "*" + META_SUFFIX).count(1000));
+            while (cursor.hasNext()) {
+                for (String key : cursor.next()) {
+                    ids.add(key.substring(KEY_PREFIX.length(), key.length() - META_SUFFIX.length()));
+                }
+            }
+            load(ids);
+            loaded = true;
+            LOG.infof("Lexical requirement index loaded %d requirements in %d ms", ids.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            LOG.error("Lexical requirement index could not be loaded, search is vector-only: " + e.getMessage());
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent ev) {
+        if (subscriber != null) {
+            subscriber.unsubscribe();
+        }
+        reloader.shutdownNow();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Indexes a requirement written by this node, ahead of its invalidation message coming back.
+     */
+    public void put(String requirementId, String tenant, String type, List<String> chunkTexts) {
+        index.put(requirementId, tenant, type, chunkTexts);
+    }
+
+    /**
+     * Drops a requirement deleted by this node, ahead of its invalidation message coming back.
+     */
+    public void remove(String requirementId) {
+        index.remove(requirementId);
+    }
+
+    /**
+     * Best BM25 chunk matches for the text among the chunks the filter accepts, best first.
+     */
+    List<Bm25Index.Hit> search(String text, int limit, RequirementFilter filter) {
+        long start = System.nanoTime();
+        try {
+            if (filter.isEmpty()) {
+                return index.search(text, limit);
+            }
+            return index.search(text, limit, chunk -> filter.matches(chunk.tenant, chunk.type, defaultTenant));
+        } finally {
+            searches.incrementAndGet();
+            searchNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long count = searches.get();
+        Map<String, Object> stats = new LinkedHashMap<>(index.getStats());
+        stats.put("loaded", loaded);
+        stats.put("splitIdentifiers", splitIdentifiers);
+        stats.put("searches", count);
+        stats.put("avgSearchMicros", count == 0 ? 0 : searchNanos.get() / count / 1_000);
+        return stats;
+    }
+
+    private void reload(String id) {
+        try {
+            load(List.of(id));
+        } catch (Exception e) {
+            LOG.warn("Failed to reload requirement " + id + " into the lexical index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the chunks of the given requirements in two pipelines: chunk count, kind and tenant from their meta
+     * hashes, then every chunk. A missing meta key means the requirement is gone.
+     */
+    private void load(List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        List<Request> counts = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            counts.add(Request.cmd(Command.HMGET).arg(KEY_PREFIX + id + META_SUFFIX)
+                    .arg("chunkCount").arg("metadata").arg("tenant"));
+        }
+        List<Response> countReplies = redis.batchAndAwait(counts);
+
+        List<Request> reads = new ArrayList<>();
+        int[] chunkCounts = new int[ids.size()];
+        for (int r = 0; r < ids.size(); r++) {
+            Response count = countReplies.get(r).get(0);
+            chunkCounts[r] = count == null ? -1 : count.toInteger();
+            for (int i = 0; i < chunkCounts[r]; i++) {
+                reads.add(Request.cmd(Command.HGET).arg(KEY_PREFIX + ids.get(r) + ":chunk:" + i).arg("content"));
+            }
+        }
+        List<Response> chunks = reads.isEmpty() ? List.of() : redis.batchAndAwait(reads);
+
+        int next = 0;
+        for (int r = 0; r < ids.size(); r++) {
+            if (chunkCounts[r] < 0) {
+                index.remove(ids.get(r));
+                continue;
+            }
+            List<String> chunkTexts = new ArrayList<>(chunkCounts[r]);
+            for (int i = 0; i < chunkCounts[r]; i++) {
+                Response chunk = chunks.get(next++);
+                chunkTexts.add(chunk == null ? "" : chunk.toString());
+            }
+            Response type = countReplies.get(r).get(1);
+            Response tenant = countReplies.get(r).get(2);
+            index.put(ids.get(r), tenant == null ? null : tenant.toString(), type == null ? null : type.toString(),
+                    chunkTexts);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Admission control in front of the {@code @CodingModel} and {@code @ReviewModel} chat models. Ollama serializes
+ * requests internally, so unbounded concurrency only makes every request time out together; instead each model
+ * gets its own permits and bounded priority queue, and excess load is shed early.
+ */
+@ApplicationScoped
+public class ModelAdmissionService {
+
+    enum Model {
+        CODING, REVIEW
+    }
+
+    @ConfigProperty(name = "app.admission.coding.max-concurrent", defaultValue = "2")
+    int codingMaxConcurrent;
+
+    @ConfigProperty(name = "app.admission.coding.max-queued", defaultValue = "16")
+    int codingMaxQueued;
+
+    @ConfigProperty(name = "app.admission.coding.max-wait", defaultValue = "2m")
+    Duration codingMaxWait;
+
+    @ConfigProperty(name = "app.admission.review.max-concurrent", defaultValue = "1")
+    int reviewMaxConcurrent;
+
+    @ConfigProperty(name = "app.admission.review.max-queued", defaultValue = "16")
+    int reviewMaxQueued;
+
+    @ConfigProperty(name = "app.admission.review.max-wait", defaultValue = "5m")
+    Duration reviewMaxWait;
+
+    @ConfigProperty(name = "app.admission.streams.max-concurrent", defaultValue = "8")
+    int streamsMaxConcurrent;
+
+    @ConfigProperty(name = "app.admission.streams.max-queued", defaultValue = "32")
+    int streamsMaxQueued;
+
+    @ConfigProperty(name = "app.admission.streams.max-wait", defaultValue = "30s")
+    Duration streamsMaxWait;
+
+    private ModelLimiter codingLimiter;
+    private ModelLimiter reviewLimiter;
+    // Streams run on their own threads rather than request threads, so they are bounded separately
+    private ModelLimiter streamLimiter;
+
+    @Inject
+    void initLimiters() {
+        this.codingLimiter = new ModelLimiter("coding", codingMaxConcurrent, codingMaxQueued, codingMaxWait);
+        this.reviewLimiter = new ModelLimiter("review", reviewMaxConcurrent, reviewMaxQueued, reviewMaxWait);
+        this.streamLimiter = new ModelLimiter("streams", streamsMaxConcurrent, streamsMaxQueued, streamsMaxWait);
+    }
+
+    /**
+     * Waits for a permit on the given model; close the permit once the model call has finished.
+     * @throws AdmissionRejectedException when the model's queue is full or the wait times out.
+     */
+    ModelLimiter.Permit acquire(Model model, RequestPriority priority) {
+        return (model == Model.CODING ? codingLimiter : reviewLimiter).acquire(priority);
+    }
+
+    /**
+     * Waits for a permit to run one streaming review; close it once the stream has completed.
+     * @throws AdmissionRejectedException when the stream queue is full or the wait times out.
+     */
+    ModelLimiter.Permit acquireStream(RequestPriority priority) {
+        return streamLimiter.acquire(priority);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("coding", codingLimiter.getStats());
+        stats.put("review", reviewLimiter.getStats());
+        stats.put("streams", streamLimiter.getStats());
+        return stats;
+    }
+}
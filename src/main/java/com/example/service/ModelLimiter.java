@@ -0,0 +1,191 @@
+package com.example.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limiter for one model: a fixed number of permits, a bounded wait queue served strictly by
+ * {@link RequestPriority} and FIFO within a priority, and a maximum queue wait.
+ */
+final class ModelLimiter {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final EnumMap<RequestPriority, ArrayDeque<Waiter>> queues = new EnumMap<>(RequestPriority.class);
+    private int available;
+    private int queued;
+
+    // guarded by lock
+    private final EnumMap<RequestPriority, Long> admitted = new EnumMap<>(RequestPriority.class);
+    private long rejectedQueueFull;
+    private long rejectedTimeout;
+    private long waitNanos;
+    private long maxObservedWaitNanos;
+    private long holdNanos;
+    private long released;
+
+    ModelLimiter(String name, int maxConcurrent, int maxQueued, Duration maxWait) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.available = maxConcurrent;
+        for (RequestPriority priority : RequestPriority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+            admitted.put(priority, 0L);
+        }
+    }
+
+    /**
+     * Blocks until a permit is available.
+     * @throws AdmissionRejectedException when the queue is full or the wait exceeds the maximum.
+     */
+    Permit acquire(RequestPriority priority) {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (available > 0 && queued == 0) {
+                available--;
+                return admit(priority, start);
+            }
+
+            if (queued >= maxQueued) {
+                rejectedQueueFull++;
+                throw new AdmissionRejectedException(429,
+                        "Model " + name + " is at capacity (" + queued + " requests queued)", retryAfterSeconds());
+            }
+
+            Waiter waiter = new Waiter(lock.newCondition());
+            queues.get(priority).addLast(waiter);
+            queued++;
+
+            long remaining = maxWaitNanos;
+            try {
+                while (!waiter.granted) {
+                    if (remaining <= 0) {
+                        queues.get(priority).remove(waiter);
+                        queued--;
+                        rejectedTimeout++;
+                        throw new AdmissionRejectedException(503,
+                                "Timed out waiting for model " + name, retryAfterSeconds());
+                    }
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    handOver();
+                } else {
+                    queues.get(priority).remove(waiter);
+                    queued--;
+                }
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for model " + name, e);
+            }
+            return admit(priority, start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Map<String, Object> getStats() {
+        lock.lock();
+        try {
+            long admittedTotal = admitted.values().stream().mapToLong(Long::longValue).sum();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("maxConcurrent", maxConcurrent);
+            stats.put("inUse", maxConcurrent - available);
+            stats.put("queued", queued);
+            stats.put("maxQueued", maxQueued);
+            for (RequestPriority priority : RequestPriority.values()) {
+                stats.put("admitted." + priority.name().toLowerCase(), admitted.get(priority));
+            }
+            stats.put("rejectedQueueFull", rejectedQueueFull);
+            stats.put("rejectedTimeout", rejectedTimeout);
+            stats.put("avgWaitMillis", admittedTotal == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos / admittedTotal));
+            stats.put("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxObservedWaitNanos));
+            stats.put("avgHoldMillis", released == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(holdNanos / released));
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Permit admit(RequestPriority priority, long start) {
+        long waited = System.nanoTime() - start;
+        admitted.merge(priority, 1L, Long::sum);
+        waitNanos += waited;
+        maxObservedWaitNanos = Math.max(maxObservedWaitNanos, waited);
+        return new Permit(this);
+    }
+
+    private void release(long heldNanos) {
+        lock.lock();
+        try {
+            holdNanos += heldNanos;
+            released++;
+            handOver();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // caller holds the lock and gives up one permit
+    private void handOver() {
+        for (RequestPriority priority : RequestPriority.values()) {
+            Waiter next = queues.get(priority).pollFirst();
+            if (next != null) {
+                queued--;
+                next.granted = true;
+                next.condition.signal();
+                return;
+            }
+        }
+        available++;
+    }
+
+    /**
+     * Estimates how long a rejected caller should back off: the queue ahead of it, drained at the observed
+     * average hold time per permit.
+     */
+    private long retryAfterSeconds() {
+        long avgHoldNanos = released == 0 ? TimeUnit.SECONDS.toNanos(30) : holdNanos / released;
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(avgHoldNanos * (queued + 1) / maxConcurrent));
+    }
+
+    private static final class Waiter {
+        private final Condition condition;
+        private boolean granted;
+
+        private Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+
+    static final class Permit implements AutoCloseable {
+        private final ModelLimiter limiter;
+        private final long acquiredAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(ModelLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(System.nanoTime() - acquiredAt);
+            }
+        }
+    }
+}
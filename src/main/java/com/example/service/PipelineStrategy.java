@@ -0,0 +1,15 @@
+package com.example.service;
+
+/**
+ * How the two-model review pipeline runs, configured with {@code app.pipeline.strategy}.
+ */
+public enum PipelineStrategy {
+    /** The coding model's analysis first, then the review model with that analysis in its prompt. */
+    SEQUENTIAL,
+    /** Both models at once; the coding model's code feedback is merged into the review afterwards. */
+    PARALLEL,
+    /** The review model alone. */
+    REVIEW_ONLY,
+    /** Sequential for large or branchy code, review-only for everything else. */
+    ON_DEMAND
+}
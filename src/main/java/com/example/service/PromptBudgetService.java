@@ -0,0 +1,252 @@
+package com.example.service;
+
+import dev.langchain4j.data.segment.TextSegment;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Fits the review prompt into the review model's context window. The code and the prompt template are kept as
+ * they are; when the requirement and the initial analysis do not fit in what is left, the initial analysis is
+ * trimmed first and then the requirement is reduced to the chunks that share the most terms with the code.
+ */
+@ApplicationScoped
+public class PromptBudgetService {
+
+    private static final Logger LOG = Logger.getLogger(PromptBudgetService.class);
+    private static final Pattern WORD_SPLIT = Pattern.compile("[^A-Za-z0-9]+|(?<=[a-z0-9])(?=[A-Z])");
+    private static final String OMITTED = "\n[...]\n";
+
+    @Inject
+    TextChunkingService textChunkingService;
+
+    @ConfigProperty(name = "app.prompt-budget.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "ollama.review.context-tokens", defaultValue = "8192")
+    int contextTokens;
+
+    @ConfigProperty(name = "app.prompt-budget.response-tokens", defaultValue = "1024")
+    int responseTokens;
+
+    @ConfigProperty(name = "app.prompt-budget.min-analysis-tokens", defaultValue = "256")
+    int minAnalysisTokens;
+
+    private final AtomicLong prompts = new AtomicLong();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong tokensSaved = new AtomicLong();
+    private final AtomicLong requirementsCompacted = new AtomicLong();
+    private final AtomicLong analysesTrimmed = new AtomicLong();
+    private final AtomicLong overBudget = new AtomicLong();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Distinguishes cached reviews produced under a different budget, since the budget can change the prompt.
+     */
+    public String keySuffix() {
+        return enabled ? "-ctx" + contextTokens : "";
+    }
+
+    /**
+     * Tokens available to the whole review prompt once the response is reserved.
+     */
+    public int budget() {
+        return contextTokens - responseTokens;
+    }
+
+    /**
+     * Counts the part of the prompt that compaction cannot shrink, so callers can decide on it before compacting.
+     */
+    public int countTokens(String fixedPrompt) {
+        return textChunkingService.countTokens(fixedPrompt);
+    }
+
+    /**
+     * Compacts the requirement and initial analysis so that, together with the rest of the prompt, they fit the
+     * budget.
+     * @param fixedPrompt the prompt with the requirement and initial analysis left out.
+     * @param initialAnalysis may be null when the pipeline skipped it.
+     */
+    public ReviewContext compactReview(String fixedPrompt, String code, String requirement, String initialAnalysis) {
+        return compactReview(countTokens(fixedPrompt), code, requirement, initialAnalysis);
+    }
+
+    /**
+     * As {@link #compactReview(String, String, String, String)}, for a fixed prompt the caller has already counted.
+     */
+    public ReviewContext compactReview(int fixedTokens, String code, String requirement, String initialAnalysis) {
+        int budget = budget();
+        int requirementTokens = textChunkingService.countTokens(requirement);
+        int analysisTokens = initialAnalysis == null ? 0 : textChunkingService.countTokens(initialAnalysis);
+        int available = budget - fixedTokens;
+
+        ReviewContext context = new ReviewContext(requirement, initialAnalysis, budget);
+        if (requirementTokens + analysisTokens > available) {
+            // The requirement is what the code is scored against, so the analysis gives way first
+            int analysisBudget = initialAnalysis == null ? 0
+                    : Math.max(Math.min(analysisTokens, minAnalysisTokens), available - requirementTokens);
+            int requirementBudget = available - analysisBudget;
+
+            if (analysisBudget < analysisTokens) {
+                context.initialAnalysis = analysisBudget <= 0 ? null : trim(initialAnalysis, analysisBudget);
+                analysesTrimmed.incrementAndGet();
+            }
+            if (requirementBudget < requirementTokens) {
+                context.requirement = mostRelevant(requirement, code, requirementBudget);
+                requirementsCompacted.incrementAndGet();
+            }
+        }
+
+        int before = fixedTokens + requirementTokens + analysisTokens;
+        context.tokens = fixedTokens + textChunkingService.countTokens(context.requirement)
+                + (context.initialAnalysis == null ? 0 : textChunkingService.countTokens(context.initialAnalysis));
+        context.tokensSaved = before - context.tokens;
+
+        prompts.incrementAndGet();
+        promptTokens.addAndGet(context.tokens);
+        tokensSaved.addAndGet(context.tokensSaved);
+        if (context.tokens > budget) {
+            overBudget.incrementAndGet();
+            LOG.warn("Review prompt is " + context.tokens + " tokens, over the budget of " + budget
+                    + "; the code alone takes " + fixedTokens);
+        } else {
+            LOG.info("Review prompt: " + context.tokens + " of " + budget + " tokens, " + context.tokensSaved + " saved");
+        }
+        return context;
+    }
+
+    public Map<String, Object> getStats() {
+        long count = prompts.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("budgetTokens", budget());
+        stats.put("prompts", count);
+        stats.put("avgPromptTokens", count == 0 ? 0 : promptTokens.get() / count);
+        stats.put("tokensSaved", tokensSaved.get());
+        stats.put("requirementsCompacted", requirementsCompacted.get());
+        stats.put("analysesTrimmed", analysesTrimmed.get());
+        stats.put("overBudget", overBudget.get());
+        return stats;
+    }
+
+    /**
+     * Keeps the requirement chunks sharing the most terms with the code, in their original order. The most
+     * relevant chunk is always kept, even when it alone exceeds the budget.
+     */
+    private String mostRelevant(String requirement, String code, int budget) {
+        List<TextSegment> chunks = textChunkingService.chunkTextForPrompt(requirement);
+        if (chunks.isEmpty()) {
+            return requirement;
+        }
+        Set<String> codeTerms = terms(code);
+
+        List<Integer> ranked = new ArrayList<>();
+        double[] scores = new double[chunks.size()];
+        for (int i = 0; i < chunks.size(); i++) {
+            Set<String> chunkTerms = terms(chunks.get(i).text());
+            long shared = chunkTerms.stream().filter(codeTerms::contains).count();
+            scores[i] = chunkTerms.isEmpty() ? 0 : shared / Math.sqrt(chunkTerms.size());
+            ranked.add(i);
+        }
+        ranked.sort(Comparator.comparingDouble((Integer i) -> -scores[i]).thenComparingInt(i -> i));
+
+        boolean[] kept = new boolean[chunks.size()];
+        int used = 0;
+        for (int i : ranked) {
+            int tokens = textChunkingService.countTokens(chunks.get(i).text());
+            if (used == 0 || used + tokens <= budget) {
+                kept[i] = true;
+                used += tokens;
+            }
+        }
+
+        StringBuilder compacted = new StringBuilder();
+        for (int i = 0; i < chunks.size(); i++) {
+            if (kept[i]) {
+                if (i > 0 && !kept[i - 1]) {
+                    compacted.append(OMITTED);
+                } else if (!compacted.isEmpty()) {
+                    compacted.append(' ');
+                }
+                compacted.append(chunks.get(i).text());
+            }
+        }
+        if (!kept[chunks.size() - 1]) {
+            compacted.append(OMITTED);
+        }
+        return compacted.toString();
+    }
+
+    /**
+     * Cuts the text to the budget, backing off to the last paragraph or sentence end when that loses little.
+     */
+    private String trim(String text, int budget) {
+        String prefix = textChunkingService.truncateToTokens(text, budget);
+        int cut = Math.max(prefix.lastIndexOf("\n"), prefix.lastIndexOf(". ") + 1);
+        if (cut > prefix.length() / 2) {
+            prefix = prefix.substring(0, cut);
+        }
+        return prefix.stripTrailing() + OMITTED;
+    }
+
+    private static Set<String> terms(String text) {
+        Set<String> terms = new HashSet<>();
+        for (String word : WORD_SPLIT.split(text)) {
+            if (word.length() >= 3) {
+                terms.add(word.toLowerCase());
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * The requirement and initial analysis to put in the review prompt, with the resulting prompt size.
+     */
+    public static final class ReviewContext {
+        private String requirement;
+        private String initialAnalysis;
+        private final int budget;
+        private int tokens;
+        private int tokensSaved;
+
+        private ReviewContext(String requirement, String initialAnalysis, int budget) {
+            this.requirement = requirement;
+            this.initialAnalysis = initialAnalysis;
+            this.budget = budget;
+        }
+
+        public String getRequirement() {
+            return requirement;
+        }
+
+        public String getInitialAnalysis() {
+            return initialAnalysis;
+        }
+
+        public int getBudget() {
+            return budget;
+        }
+
+        public int getTokens() {
+            return tokens;
+        }
+
+        public int getTokensSaved() {
+            return tokensSaved;
+        }
+    }
+}
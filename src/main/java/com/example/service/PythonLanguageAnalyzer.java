@@ -0,0 +1,134 @@
+package com.example.service;
+
+import com.example.dto.StructuralSummary.MethodSummary;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+
+/**
+ * Python analyzer: blocks are delimited by indentation, so a def or class ends at the first logical line that is
+ * indented no deeper than its own header.
+ */
+@ApplicationScoped
+public class PythonLanguageAnalyzer extends LexerLanguageAnalyzer {
+
+    public PythonLanguageAnalyzer() {
+        super(SourceLexer.PYTHON, Set.of("if", "elif", "for", "while", "except", "and", "or", "case"),
+                Set.of("if", "elif", "for", "while", "return", "else", "not", "and", "or", "in", "is", "lambda",
+                        "with", "assert", "yield", "except", "def", "class", "await", "del", "match", "case"));
+    }
+
+    @Override
+    public Set<String> languages() {
+        return Set.of("python");
+    }
+
+    @Override
+    Collector newCollector(String code) {
+        return new PythonCollector(code);
+    }
+
+    private static final class Block {
+        private final int indent;
+        private final String className;
+        private final MethodSummary method;
+        private final Set<String> calls;
+
+        private Block(int indent, String className, MethodSummary method, Set<String> calls) {
+            this.indent = indent;
+            this.className = className;
+            this.method = method;
+            this.calls = calls;
+        }
+    }
+
+    private final class PythonCollector extends Collector {
+        private final Deque<Block> blocks = new ArrayDeque<>();
+        private int bracketDepth;
+        private int lineIndent;
+        private int defStart = -1;
+        private boolean classPending;
+        private String className;
+
+        private PythonCollector(String code) {
+            super(code);
+        }
+
+        @Override
+        void token(SourceLexer.Kind kind, int start, int end, int indent) {
+            if (indent >= 0 && bracketDepth == 0) {
+                lineIndent = indent;
+                while (!blocks.isEmpty() && blocks.peek().indent >= indent) {
+                    close(blocks.pop());
+                }
+            }
+
+            if (kind == SourceLexer.Kind.IDENTIFIER) {
+                if (is(kind, start, end, "def") && bracketDepth == 0) {
+                    defStart = start;
+                } else if (is(kind, start, end, "class") && bracketDepth == 0) {
+                    classPending = true;
+                } else if (classPending && className == null) {
+                    className = code.substring(start, end);
+                }
+            } else if (kind == SourceLexer.Kind.PUNCTUATION) {
+                punctuation(start, end);
+            }
+        }
+
+        private void punctuation(int start, int end) {
+            char c = code.charAt(start);
+            if (end - start == 1 && (c == '(' || c == '[' || c == '{')) {
+                if (c == '(' && !classPending && !(defStart >= 0 && bracketDepth == 0)) {
+                    maybeCall();
+                }
+                bracketDepth++;
+            } else if (end - start == 1 && (c == ')' || c == ']' || c == '}')) {
+                bracketDepth = Math.max(0, bracketDepth - 1);
+            } else if (end - start == 1 && c == ':' && bracketDepth == 0) {
+                Block enclosing = blocks.peek();
+                String outer = enclosing != null ? enclosing.className : null;
+                if (defStart >= 0) {
+                    String signature = signature(defStart, start);
+                    if (outer != null) {
+                        signature = "def " + outer + "." + signature.substring("def ".length());
+                    }
+                    MethodSummary method = openFunction(signature);
+                    blocks.push(new Block(lineIndent, null, method, calls));
+                } else if (className != null) {
+                    String name = outer != null ? outer + "." + className : className;
+                    types.add("class " + name);
+                    blocks.push(new Block(lineIndent, name, null, null));
+                }
+                defStart = -1;
+                classPending = false;
+                className = null;
+            }
+        }
+
+        @Override
+        void finish() {
+            while (!blocks.isEmpty()) {
+                close(blocks.pop());
+            }
+        }
+
+        private void close(Block block) {
+            if (block.method == null) {
+                return;
+            }
+            closeFunction(block.method, block.calls);
+            function = null;
+            calls = null;
+            for (Block outer : blocks) {
+                if (outer.method != null) {
+                    function = outer.method;
+                    calls = outer.calls;
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.service;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Vector storage of an {@link HnswIndex}: full float32, int8 scalar-quantized or binary (one sign bit per
+ * dimension). Similarities approximate the inner product of the unit vectors; a query is encoded once per
+ * search with {@link #encodeQuery}.
+ */
+abstract class QuantizedVectors {
+
+    final int dimension;
+
+    QuantizedVectors(int dimension) {
+        this.dimension = dimension;
+    }
+
+    static QuantizedVectors create(VectorQuantization quantization, int dimension, int capacity) {
+        return switch (quantization) {
+            case NONE -> new Float32(dimension, capacity);
+            case INT8 -> new Int8(dimension, capacity);
+            case BINARY -> new Binary(dimension, capacity);
+        };
+    }
+
+    abstract VectorQuantization quantization();
+
+    abstract void ensureCapacity(int nodes);
+
+    abstract void set(int node, float[] unit);
+
+    /**
+     * The stored vector, as well as the encoding allows.
+     */
+    abstract float[] decode(int node);
+
+    abstract Object encodeQuery(float[] unit);
+
+    abstract float similarity(Object query, int node);
+
+    abstract float similarity(int a, int b);
+
+    abstract int bytesPerVector();
+
+    abstract void write(DataOutputStream out, int size) throws IOException;
+
+    abstract void read(FileChannel file, long offset, int size) throws IOException;
+
+    /**
+     * Bulk-copies {@code count} values starting at {@code position}, mapping at most 1 GB at a time.
+     */
+    static long readFloats(FileChannel file, long position, float[] target, int count) throws IOException {
+        int perWindow = (1 << 30) / Float.BYTES;
+        for (int first = 0; first < count; first += perWindow) {
+            int n = Math.min(perWindow, count - first);
+            file.map(FileChannel.MapMode.READ_ONLY, position + (long) first * Float.BYTES, (long) n * Float.BYTES)
+                    .asFloatBuffer().get(target, first, n);
+        }
+        return position + (long) count * Float.BYTES;
+    }
+
+    static long readBytes(FileChannel file, long position, byte[] target, int count) throws IOException {
+        int perWindow = 1 << 30;
+        for (int first = 0; first < count; first += perWindow) {
+            int n = Math.min(perWindow, count - first);
+            file.map(FileChannel.MapMode.READ_ONLY, position + first, n).get(target, first, n);
+        }
+        return position + count;
+    }
+
+    static long readLongs(FileChannel file, long position, long[] target, int count) throws IOException {
+        int perWindow = (1 << 30) / Long.BYTES;
+        for (int first = 0; first < count; first += perWindow) {
+            int n = Math.min(perWindow, count - first);
+            file.map(FileChannel.MapMode.READ_ONLY, position + (long) first * Long.BYTES, (long) n * Long.BYTES)
+                    .asLongBuffer().get(target, first, n);
+        }
+        return position + (long) count * Long.BYTES;
+    }
+
+    static final class Float32 extends QuantizedVectors {
+        private float[] values;
+
+        Float32(int dimension, int capacity) {
+            super(dimension);
+            values = new float[capacity * dimension];
+        }
+
+        @Override
+        VectorQuantization quantization() {
+            return VectorQuantization.NONE;
+        }
+
+        @Override
+        void ensureCapacity(int nodes) {
+            values = Arrays.copyOf(values, nodes * dimension);
+        }
+
+        @Override
+        void set(int node, float[] unit) {
+            System.arraycopy(unit, 0, values, node * dimension, dimension);
+        }
+
+        @Override
+        float[] decode(int node) {
+            return Arrays.copyOfRange(values, node * dimension, (node + 1) * dimension);
+        }
+
+        @Override
+        Object encodeQuery(float[] unit) {
+            return unit;
+        }
+
+        @Override
+        float similarity(Object query, int node) {
+            float[] q = (float[]) query;
+            float[] v = values;
+            int offset = node * dimension;
+            float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            int i = 0;
+            for (; i + 3 < dimension; i += 4) {
+                s0 += q[i] * v[offset + i];
+                s1 += q[i + 1] * v[offset + i + 1];
+                s2 += q[i + 2] * v[offset + i + 2];
+                s3 += q[i + 3] * v[offset + i + 3];
+            }
+            for (; i < dimension; i++) {
+                s0 += q[i] * v[offset + i];
+            }
+            return s0 + s1 + s2 + s3;
+        }
+
+        @Override
+        float similarity(int a, int b) {
+            float[] v = values;
+            int offsetA = a * dimension;
+            int offsetB = b * dimension;
+            float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            int i = 0;
+            for (; i + 3 < dimension; i += 4) {
+                s0 += v[offsetA + i] * v[offsetB + i];
+                s1 += v[offsetA + i + 1] * v[offsetB + i + 1];
+                s2 += v[offsetA + i + 2] * v[offsetB + i + 2];
+                s3 += v[offsetA + i + 3] * v[offsetB + i + 3];
+            }
+            for (; i < dimension; i++) {
+                s0 += v[offsetA + i] * v[offsetB + i];
+            }
+            return s0 + s1 + s2 + s3;
+        }
+
+        @Override
+        int bytesPerVector() {
+            return dimension * Float.BYTES;
+        }
+
+        @Override
+        void write(DataOutputStream out, int size) throws IOException {
+            for (int i = 0; i < size * dimension; i++) {
+                out.writeFloat(values[i]);
+            }
+        }
+
+        @Override
+        void read(FileChannel file, long offset, int size) throws IOException {
+            ensureCapacity(size);
+            readFloats(file, offset, values, size * dimension);
+        }
+    }
+
+    /**
+     * Symmetric int8 codes with one scale per vector: {@code v[i] ~ scale * code[i]}. Queries stay float, so
+     * only the stored side is approximated.
+     */
+    static final class Int8 extends QuantizedVectors {
+        private byte[] codes;
+        private float[] scales;
+
+        Int8(int dimension, int capacity) {
+            super(dimension);
+            codes = new byte[capacity * dimension];
+            scales = new float[capacity];
+        }
+
+        @Override
+        VectorQuantization quantization() {
+            return VectorQuantization.INT8;
+        }
+
+        @Override
+        void ensureCapacity(int nodes) {
+            codes = Arrays.copyOf(codes, nodes * dimension);
+            scales = Arrays.copyOf(scales, nodes);
+        }
+
+        @Override
+        void set(int node, float[] unit) {
+            float max = 0;
+            for (float value : unit) {
+                max = Math.max(max, Math.abs(value));
+            }
+            float scale = max == 0 ? 1 : max / 127f;
+            int offset = node * dimension;
+            for (int i = 0; i < dimension; i++) {
+                codes[offset + i] = (byte) Math.round(unit[i] / scale);
+            }
+            scales[node] = scale;
+        }
+
+        @Override
+        float[] decode(int node) {
+            float[] vector = new float[dimension];
+            int offset = node * dimension;
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = codes[offset + i] * scales[node];
+            }
+            return vector;
+        }
+
+        @Override
+        Object encodeQuery(float[] unit) {
+            return unit;
+        }
+
+        @Override
+        float similarity(Object query, int node) {
+            float[] q = (float[]) query;
+            byte[] c = codes;
+            int offset = node * dimension;
+            float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            int i = 0;
+            for (; i + 3 < dimension; i += 4) {
+                s0 += q[i] * c[offset + i];
+                s1 += q[i + 1] * c[offset + i + 1];
+                s2 += q[i + 2] * c[offset + i + 2];
+                s3 += q[i + 3] * c[offset + i + 3];
+            }
+            for (; i < dimension; i++) {
+                s0 += q[i] * c[offset + i];
+            }
+            return (s0 + s1 + s2 + s3) * scales[node];
+        }
+
+        @Override
+        float similarity(int a, int b) {
+            byte[] c = codes;
+            int offsetA = a * dimension;
+            int offsetB = b * dimension;
+            int sum = 0;
+            for (int i = 0; i < dimension; i++) {
+                sum += c[offsetA + i] * c[offsetB + i];
+            }
+            return sum * scales[a] * scales[b];
+        }
+
+        @Override
+        int bytesPerVector() {
+            return dimension + Float.BYTES;
+        }
+
+        @Override
+        void write(DataOutputStream out, int size) throws IOException {
+            for (int node = 0; node < size; node++) {
+                out.writeFloat(scales[node]);
+            }
+            out.write(codes, 0, size * dimension);
+        }
+
+        @Override
+        void read(FileChannel file, long offset, int size) throws IOException {
+            ensureCapacity(size);
+            long position = readFloats(file, offset, scales, size);
+            readBytes(file, position, codes, size * dimension);
+        }
+    }
+
+    /**
+     * One sign bit per dimension. Two unit vectors whose signs differ in h of d dimensions are about
+     * {@code pi * h / d} apart (random hyperplane hashing), so similarity is {@code cos(pi * h / d)}.
+     */
+    static final class Binary extends QuantizedVectors {
+        private final int words;
+        private final float[] cosineOfHamming;
+        private long[] bits;
+
+        Binary(int dimension, int capacity) {
+            super(dimension);
+            words = (dimension + 63) / 64;
+            bits = new long[capacity * words];
+            cosineOfHamming = new float[dimension + 1];
+            for (int h = 0; h <= dimension; h++) {
+                cosineOfHamming[h] = (float) Math.cos(Math.PI * h / dimension);
+            }
+        }
+
+        @Override
+        VectorQuantization quantization() {
+            return VectorQuantization.BINARY;
+        }
+
+        @Override
+        void ensureCapacity(int nodes) {
+            bits = Arrays.copyOf(bits, nodes * words);
+        }
+
+        @Override
+        void set(int node, float[] unit) {
+            System.arraycopy(encode(unit), 0, bits, node * words, words);
+        }
+
+        @Override
+        float[] decode(int node) {
+            float[] vector = new float[dimension];
+            float magnitude = (float) (1.0 / Math.sqrt(dimension));
+            for (int i = 0; i < dimension; i++) {
+                boolean set = (bits[node * words + (i >>> 6)] & (1L << (i & 63))) != 0;
+                vector[i] = set ? magnitude : -magnitude;
+            }
+            return vector;
+        }
+
+        @Override
+        Object encodeQuery(float[] unit) {
+            return encode(unit);
+        }
+
+        @Override
+        float similarity(Object query, int node) {
+            long[] q = (long[]) query;
+            int offset = node * words;
+            int hamming = 0;
+            for (int w = 0; w < words; w++) {
+                hamming += Long.bitCount(q[w] ^ bits[offset + w]);
+            }
+            return cosineOfHamming[hamming];
+        }
+
+        @Override
+        float similarity(int a, int b) {
+            int offsetA = a * words;
+            int offsetB = b * words;
+            int hamming = 0;
+            for (int w = 0; w < words; w++) {
+                hamming += Long.bitCount(bits[offsetA + w] ^ bits[offsetB + w]);
+            }
+            return cosineOfHamming[hamming];
+        }
+
+        @Override
+        int bytesPerVector() {
+            return words * Long.BYTES;
+        }
+
+        @Override
+        void write(DataOutputStream out, int size) throws IOException {
+            for (int i = 0; i < size * words; i++) {
+                out.writeLong(bits[i]);
+            }
+        }
+
+        @Override
+        void read(FileChannel file, long offset, int size) throws IOException {
+            ensureCapacity(size);
+            readLongs(file, offset, bits, size * words);
+        }
+
+        private long[] encode(float[] unit) {
+            long[] encoded = new long[words];
+            for (int i = 0; i < dimension; i++) {
+                if (unit[i] > 0) {
+                    encoded[i >>> 6] |= 1L << (i & 63);
+                }
+            }
+            return encoded;
+        }
+    }
+}
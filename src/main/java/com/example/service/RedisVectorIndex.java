@@ -0,0 +1,325 @@
+package com.example.service;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One RediSearch vector index over the JSON documents {@code RedisEmbeddingStore} writes under a key prefix.
+ * The store creates a missing index with TEXT metadata fields, which cannot be pre-filtered exactly, so this
+ * class creates it first with TAG fields for the requirement, its kind and its tenant, and runs filtered KNN
+ * queries the store has no API for. Half-precision indexes can re-rank their KNN candidates against the float32
+ * vectors the JSON documents keep, which costs no index memory.
+ */
+final class RedisVectorIndex {
+
+    private static final Logger LOG = Logger.getLogger(RedisVectorIndex.class);
+    // FT.INFO nests the attribute list differently across RediSearch versions and RESP2/3, but its text form
+    // always has the vector field's "dim" followed by its value
+    private static final Pattern DIMENSION = Pattern.compile("\\bdim\\W+(\\d+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DATA_TYPE = Pattern.compile("\\bdata_type\\W+(B?FLOAT\\d+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TENANT_TAG = Pattern.compile("\\btenant\\W+(?:\\w+\\W+){0,3}?TAG\\b");
+    private static final Pattern NUM_DOCS = Pattern.compile("\\bnum_docs\\W+(\\d+)");
+    private static final Pattern VECTOR_INDEX_MB = Pattern.compile("\\bvector_index_sz_mb\\W+([0-9.eE+-]+)");
+    // Returned by the re-ranking query: the document's full-precision vector, as JSON
+    private static final String FULL_VECTOR = "$.vector";
+    static final List<String> METADATA_KEYS = List.of("requirementId", "chunkIndex", "metadata", "tenant");
+
+    private final Redis redis;
+    private final String name;
+    private final String prefix;
+
+    private final AtomicLong reRankedSearches = new AtomicLong();
+    // Of the matches re-ranked searches returned, those the index's own ranking had in its top maxResults
+    private final AtomicLong reRankReturned = new AtomicLong();
+    private final AtomicLong reRankKept = new AtomicLong();
+
+    RedisVectorIndex(Redis redis, String name, String prefix) {
+        this.redis = redis;
+        this.name = name;
+        this.prefix = prefix;
+    }
+
+    String name() {
+        return name;
+    }
+
+    String prefix() {
+        return prefix;
+    }
+
+    /**
+     * The text of FT.INFO, or null when the index does not exist.
+     */
+    String info() {
+        try {
+            return String.valueOf(redis.sendAndAwait(Request.cmd(Command.FT_INFO).arg(name)));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // 0 when the index does not exist
+    static int dimension(String info) {
+        Matcher matcher = DIMENSION.matcher(info == null ? "" : info);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    // FLOAT32, which older RediSearch versions do not report, unless FT.INFO names another type
+    static RedisVectorType vectorType(String info) {
+        Matcher matcher = DATA_TYPE.matcher(info == null ? "" : info);
+        if (matcher.find()) {
+            try {
+                return RedisVectorType.valueOf(matcher.group(1).toUpperCase());
+            } catch (IllegalArgumentException e) {
+                // FLOAT64 and other types this service never creates
+            }
+        }
+        return RedisVectorType.FLOAT32;
+    }
+
+    /**
+     * Whether the index was created by {@link #create}; older indexes have TEXT metadata fields and no tenant.
+     */
+    static boolean hasTagFields(String info) {
+        return info != null && TENANT_TAG.matcher(info).find();
+    }
+
+    /**
+     * Creates the index with the schema of {@code RedisEmbeddingStore} (HNSW, cosine), but with TAG metadata
+     * fields and the given vector type. A no-op when it exists.
+     */
+    void create(int dimension, RedisVectorType type) {
+        if (info() != null) {
+            return;
+        }
+        Request create = Request.cmd(Command.FT_CREATE).arg(name).arg("ON").arg("JSON").arg("PREFIX").arg(1).arg(prefix)
+                .arg("SCHEMA")
+                .arg("$.text").arg("AS").arg("text").arg("TEXT").arg("WEIGHT").arg("1.0")
+                .arg("$.vector").arg("AS").arg("vector").arg("VECTOR").arg("HNSW").arg(6)
+                .arg("TYPE").arg(type.name()).arg("DIM").arg(dimension).arg("DISTANCE_METRIC").arg("COSINE");
+        for (String key : METADATA_KEYS) {
+            create.arg("$." + key).arg("AS").arg(key).arg("TAG");
+        }
+        redis.sendAndAwait(create);
+        LOG.infof("Created vector index %s over %s* at dimension %d with %s vectors", name, prefix, dimension, type);
+    }
+
+    /**
+     * Drops the index together with its documents.
+     */
+    void drop() {
+        try {
+            redis.sendAndAwait(Request.cmd(Command.FT_DROPINDEX).arg(name).arg("DD"));
+        } catch (Exception e) {
+            LOG.infof("Vector index %s was not dropped: %s", name, e.getMessage());
+        }
+    }
+
+    /**
+     * Ids of the vectors stored for a requirement, as the store returns them, without the key prefix.
+     */
+    List<String> ids(String requirementId) {
+        Response reply = redis.sendAndAwait(Request.cmd(Command.FT_SEARCH).arg(name)
+                .arg("@requirementId:{" + RequirementFilter.escapeTag(requirementId) + "}")
+                .arg("NOCONTENT").arg("LIMIT").arg(0).arg(10_000).arg("DIALECT").arg(2));
+
+        List<String> ids = new ArrayList<>();
+        if (reply.isMap()) {
+            for (Response result : reply.get("results")) {
+                ids.add(stripPrefix(result.get("id").toString()));
+            }
+        } else {
+            // RESP2 with NOCONTENT: [total, id, id, ...]
+            for (int i = 1; i < reply.size(); i++) {
+                ids.add(stripPrefix(reply.get(i).toString()));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * The key of the JSON document holding a vector.
+     */
+    String key(String id) {
+        return prefix + id;
+    }
+
+    /**
+     * KNN query with the filter applied before the nearest neighbours are chosen, so a selective filter still
+     * yields {@code maxResults} matches. The query vector is encoded as the index's vector type; {@code *}
+     * matches everything. Scores are mapped to [0, 1] like {@code RedisEmbeddingStore} does.
+     * <p>
+     * With {@code candidates} above {@code maxResults}, that many neighbours are fetched with their documents'
+     * float32 vectors and re-scored exactly before the best {@code maxResults} are kept, which recovers the
+     * ranking a half-precision index loses.
+     */
+    List<EmbeddingMatch<TextSegment>> search(float[] vector, RedisVectorType type, int maxResults, int candidates,
+                                             double minScore, String filterQuery) {
+        boolean reRank = candidates > maxResults;
+        int limit = reRank ? candidates : maxResults;
+        Request search = Request.cmd(Command.FT_SEARCH).arg(name)
+                .arg(filterQuery + "=>[KNN $K @vector $BLOB AS vector_score]")
+                .arg("PARAMS").arg(4).arg("K").arg(limit).arg("BLOB").arg(type.encode(vector))
+                .arg("RETURN").arg(METADATA_KEYS.size() + (reRank ? 3 : 2)).arg("text").arg("vector_score");
+        for (String key : METADATA_KEYS) {
+            search.arg(key);
+        }
+        if (reRank) {
+            search.arg(FULL_VECTOR);
+        }
+        search.arg("SORTBY").arg("vector_score").arg("ASC")
+                .arg("LIMIT").arg(0).arg(limit)
+                .arg("DIALECT").arg(2);
+        Response reply = redis.sendAndAwait(search);
+
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(limit);
+        List<float[]> vectors = reRank ? new ArrayList<>(limit) : null;
+        if (reply.isMap()) {
+            // RESP3: {total_results, results: [{id, extra_attributes: {...}}]}
+            for (Response result : reply.get("results")) {
+                addMatch(matches, vectors, result.get("id").toString(), fields(result.get("extra_attributes")));
+            }
+        } else {
+            // RESP2: [total, id, [field, value, ...], id, [...], ...]
+            for (int i = 1; i + 1 < reply.size(); i += 2) {
+                addMatch(matches, vectors, reply.get(i).toString(), fields(reply.get(i + 1)));
+            }
+        }
+        if (reRank) {
+            matches = reRank(vector, matches, vectors, maxResults);
+        }
+        matches.removeIf(match -> match.score() < minScore);
+        return matches;
+    }
+
+    /**
+     * Index size from FT.INFO, and how far re-ranking moved the index's own top matches; the kept fraction is
+     * the recall of the half-precision ranking against full precision among the fetched candidates.
+     */
+    Map<String, Object> getStats(String info) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Matcher docs = NUM_DOCS.matcher(info == null ? "" : info);
+        Matcher megabytes = VECTOR_INDEX_MB.matcher(info == null ? "" : info);
+        if (docs.find() && megabytes.find()) {
+            long count = Long.parseLong(docs.group(1));
+            long bytes = (long) (Double.parseDouble(megabytes.group(1)) * 1024 * 1024);
+            stats.put("chunks", count);
+            stats.put("vectorIndexBytes", bytes);
+            stats.put("vectorIndexBytesPerChunk", count == 0 ? 0 : bytes / count);
+        }
+        long returned = reRankReturned.get();
+        stats.put("reRankedSearches", reRankedSearches.get());
+        stats.put("reRankRecall", returned == 0 ? null : Math.round(reRankKept.get() * 1000.0 / returned) / 1000.0);
+        return stats;
+    }
+
+    private List<EmbeddingMatch<TextSegment>> reRank(float[] query, List<EmbeddingMatch<TextSegment>> matches,
+                                                     List<float[]> vectors, int maxResults) {
+        Set<String> indexTop = new HashSet<>();
+        for (int i = 0; i < Math.min(maxResults, matches.size()); i++) {
+            indexTop.add(matches.get(i).embeddingId());
+        }
+        List<EmbeddingMatch<TextSegment>> rescored = new ArrayList<>(matches.size());
+        for (int i = 0; i < matches.size(); i++) {
+            EmbeddingMatch<TextSegment> match = matches.get(i);
+            float[] full = vectors.get(i);
+            // A document without a readable vector keeps its index score
+            double score = full == null || full.length != query.length
+                    ? match.score()
+                    : (1.0 + cosine(query, full)) / 2.0;
+            rescored.add(new EmbeddingMatch<>(score, match.embeddingId(), null, match.embedded()));
+        }
+        rescored.sort(Comparator.comparingDouble((EmbeddingMatch<TextSegment> match) -> match.score()).reversed());
+        List<EmbeddingMatch<TextSegment>> top = new ArrayList<>(rescored.subList(0, Math.min(maxResults, rescored.size())));
+
+        reRankedSearches.incrementAndGet();
+        reRankReturned.addAndGet(top.size());
+        reRankKept.addAndGet(top.stream().filter(match -> indexTop.contains(match.embeddingId())).count());
+        return top;
+    }
+
+    private void addMatch(List<EmbeddingMatch<TextSegment>> matches, List<float[]> vectors, String key,
+                          Map<String, String> fields) {
+        String distance = fields.remove("vector_score");
+        String full = fields.remove(FULL_VECTOR);
+        if (distance == null) {
+            return;
+        }
+        double score = (2.0 - Double.parseDouble(distance)) / 2.0;
+        String text = fields.remove("text");
+        matches.add(new EmbeddingMatch<>(score, stripPrefix(key), null, TextSegment.from(text == null ? "" : text, Metadata.from(fields))));
+        if (vectors != null) {
+            vectors.add(parseVector(full));
+        }
+    }
+
+    // The JSON float array of a document, possibly wrapped in the array of JSONPath results; null if unreadable
+    static float[] parseVector(String json) {
+        if (json == null) {
+            return null;
+        }
+        int start = json.lastIndexOf('[') + 1;
+        int end = json.indexOf(']', start);
+        if (start == 0 || end < 0) {
+            return null;
+        }
+        String[] values = json.substring(start, end).split(",");
+        float[] vector = new float[values.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                vector[i] = Float.parseFloat(values[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return vector;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / Math.sqrt(normA * normB);
+    }
+
+    private String stripPrefix(String key) {
+        return key.startsWith(prefix) ? key.substring(prefix.length()) : key;
+    }
+
+    private static Map<String, String> fields(Response response) {
+        Map<String, String> fields = new HashMap<>();
+        if (response == null) {
+            return fields;
+        }
+        for (String key : response.getKeys()) {
+            Response value = response.get(key);
+            if (value != null) {
+                fields.put(key, value.toString());
+            }
+        }
+        return fields;
+    }
+}
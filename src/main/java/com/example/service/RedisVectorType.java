@@ -0,0 +1,36 @@
+package com.example.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Element type of the vector field of a RediSearch index. {@code FLOAT16} and {@code BFLOAT16} halve the index
+ * memory for a cosine error of about 1e-3 and 1e-2; they need RediSearch 2.10 or later. The documents keep
+ * their JSON float arrays whatever the type, so only the index and the query vector change.
+ */
+public enum RedisVectorType {
+    FLOAT32, FLOAT16, BFLOAT16;
+
+    /**
+     * The query vector as the little-endian blob a KNN query against this type expects.
+     */
+    byte[] encode(float[] vector) {
+        if (this == FLOAT32) {
+            return EmbeddingCache.encode(vector);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (float value : vector) {
+            buffer.putShort(this == FLOAT16 ? Float.floatToFloat16(value) : toBfloat16(value));
+        }
+        return buffer.array();
+    }
+
+    // The upper half of the float32 bits, rounded to nearest even
+    private static short toBfloat16(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        if (Float.isNaN(value)) {
+            return (short) ((bits >>> 16) | 0x40);
+        }
+        return (short) ((bits + 0x7FFF + ((bits >>> 16) & 1)) >>> 16);
+    }
+}
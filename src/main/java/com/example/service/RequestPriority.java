@@ -0,0 +1,23 @@
+package com.example.service;
+
+/**
+ * Priority class of an analysis request when competing for model capacity. Interactive requests are admitted
+ * ahead of CI batch requests.
+ */
+public enum RequestPriority {
+    INTERACTIVE, BATCH;
+
+    /**
+     * Parses the {@code X-Priority} header value, falling back to the given default when absent or unknown.
+     */
+    public static RequestPriority from(String value, RequestPriority defaultPriority) {
+        if (value == null || value.isBlank()) {
+            return defaultPriority;
+        }
+        return switch (value.trim().toLowerCase()) {
+            case "interactive" -> INTERACTIVE;
+            case "batch", "ci" -> BATCH;
+            default -> defaultPriority;
+        };
+    }
+}
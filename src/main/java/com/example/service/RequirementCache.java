@@ -0,0 +1,191 @@
+package com.example.service;
+
+import com.example.dto.Requirement;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, TTL-based cache of requirements in front of {@link EmbeddingService#findRequirementById(String)}.
+ * Entries are weighed by content length; invalidations are broadcast over Redis pub/sub so every node drops
+ * its stale copy when a requirement is rewritten.
+ */
+@ApplicationScoped
+public class RequirementCache {
+
+    private static final Logger LOG = Logger.getLogger(RequirementCache.class);
+
+    @Inject
+    RedisDataSource redisDataSource;
+
+    @ConfigProperty(name = "app.requirement-cache.max-weight", defaultValue = "16000000")
+    long maxWeight;
+
+    @ConfigProperty(name = "app.requirement-cache.ttl", defaultValue = "10m")
+    Duration ttl;
+
+    @ConfigProperty(name = "app.requirement-cache.channel", defaultValue = "requirements:invalidations")
+    String channel;
+
+    // access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long weight;
+    // bumped by every invalidation, so a read that raced one is not cached
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private PubSubCommands<String> pubSub;
+    private PubSubCommands.RedisSubscriber subscriber;
+
+    void onStart(@Observes StartupEvent ev) {
+        try {
+            pubSub = redisDataSource.pubsub(String.class);
+            subscriber = pubSub.subscribe(channel, this::evict);
+            LOG.info("Requirement cache listening for invalidations on " + channel);
+        } catch (Exception e) {
+            LOG.error("Requirement cache could not subscribe to " + channel + ": " + e.getMessage());
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent ev) {
+        if (subscriber != null) {
+            subscriber.unsubscribe();
+        }
+    }
+
+    public Requirement get(String id) {
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                hits.incrementAndGet();
+                return entry.copy();
+            }
+            if (entry != null) {
+                remove(id);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stamp to take before reading a requirement from Redis and to pass to {@link #put}.
+     */
+    public long generation() {
+        synchronized (entries) {
+            return generation;
+        }
+    }
+
+    /**
+     * Caches a requirement read after {@code readGeneration} was taken; skipped if an invalidation arrived since,
+     * as the read may predate the write it announced.
+     */
+    public void put(Requirement requirement, long readGeneration) {
+        Entry entry = new Entry(requirement, System.nanoTime() + ttl.toNanos());
+        if (entry.weight > maxWeight) {
+            return;
+        }
+
+        synchronized (entries) {
+            if (generation != readGeneration) {
+                return;
+            }
+            Entry previous = entries.put(requirement.getId(), entry);
+            weight += entry.weight - (previous != null ? previous.weight : 0);
+
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (weight > maxWeight && eldest.hasNext()) {
+                weight -= eldest.next().getValue().weight;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drops the requirement locally and tells every other node to do the same.
+     */
+    public void invalidate(String id) {
+        evict(id);
+        try {
+            if (pubSub != null) {
+                pubSub.publish(channel, id);
+            }
+        } catch (Exception e) {
+            LOG.warn("Failed to publish invalidation for requirement " + id + ": " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("entries", entries.size());
+            stats.put("weight", weight);
+        }
+        stats.put("maxWeight", maxWeight);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private void evict(String id) {
+        synchronized (entries) {
+            generation++;
+            if (remove(id)) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean remove(String id) {
+        Entry removed = entries.remove(id);
+        if (removed != null) {
+            weight -= removed.weight;
+        }
+        return removed != null;
+    }
+
+    private static final class Entry {
+        private final String id;
+        private final String content;
+        private final String metadata;
+        private final String tenant;
+        private final long weight;
+        private final long expiresAt;
+
+        private Entry(Requirement requirement, long expiresAt) {
+            this.id = requirement.getId();
+            this.content = requirement.getContent();
+            this.metadata = requirement.getMetadata();
+            this.tenant = requirement.getTenant();
+            this.weight = content != null ? content.length() : 0;
+            this.expiresAt = expiresAt;
+        }
+
+        private Requirement copy() {
+            Requirement requirement = new Requirement(id, content, metadata);
+            requirement.setTenant(tenant);
+            return requirement;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.service;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.util.regex.Pattern;
+
+/**
+ * Restricts a requirement search to one tenant and, optionally, to one kind of requirement: {@code Req} or
+ * {@code Def}. The same filter is pushed down into the RediSearch KNN query as TAG clauses, evaluated by the
+ * in-process HNSW store, and applied to BM25 hits, so every ranking sees the same candidates.
+ */
+public final class RequirementFilter {
+
+    private static final Pattern TENANT = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final String tenant;
+    private final String type;
+
+    public RequirementFilter(String tenant, String type) {
+        this.tenant = tenant;
+        this.type = type;
+    }
+
+    /**
+     * Tenant names become part of index names and key prefixes, so they are limited to a safe alphabet.
+     */
+    public static boolean isValidTenant(String tenant) {
+        return tenant != null && TENANT.matcher(tenant).matches();
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * True when a chunk with the given tags passes; chunks stored before tenants existed carry none, and belong
+     * to {@code defaultTenant}.
+     */
+    boolean matches(String chunkTenant, String chunkType, String defaultTenant) {
+        String effectiveTenant = chunkTenant != null ? chunkTenant : defaultTenant;
+        return (tenant == null || tenant.equals(effectiveTenant)) && (type == null || type.equals(chunkType));
+    }
+
+    /**
+     * The filter as a langchain4j metadata filter, for stores that evaluate it in process such as the
+     * {@link HnswEmbeddingStore}.
+     */
+    Filter toMetadataFilter(String defaultTenant) {
+        return object -> object instanceof Metadata metadata
+                && matches(metadata.getString("tenant"), metadata.getString("metadata"), defaultTenant);
+    }
+
+    RequirementFilter withoutTenant() {
+        return new RequirementFilter(null, type);
+    }
+
+    boolean isEmpty() {
+        return tenant == null && type == null;
+    }
+
+    /**
+     * RediSearch pre-filter for a KNN query over an index with TAG fields {@code tenant} and {@code metadata};
+     * {@code *} when the filter passes everything.
+     */
+    String toQuery() {
+        StringBuilder query = new StringBuilder();
+        if (tenant != null) {
+            query.append("@tenant:{").append(escapeTag(tenant)).append('}');
+        }
+        if (type != null) {
+            if (!query.isEmpty()) {
+                query.append(' ');
+            }
+            query.append("@metadata:{").append(escapeTag(type)).append('}');
+        }
+        return query.isEmpty() ? "*" : "(" + query + ")";
+    }
+
+    // Punctuation and spaces separate tags unless escaped
+    static String escapeTag(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 4);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "tenant=" + tenant + ", type=" + type;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.service;
+
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.keys.KeyScanArgs;
+import io.quarkus.redis.datasource.keys.KeyScanCursor;
+import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory set of the requirement IDs stored in Redis, so requirement references can be checked without a
+ * round trip. Loaded with a SCAN of the meta keys at startup and kept current from the requirement invalidation
+ * channel, on which every write is announced. Pub/sub delivery is at most once, so an ID missing locally is
+ * checked with one EXISTS before it is reported unknown; a write whose message was lost is picked up that way.
+ */
+@ApplicationScoped
+public class RequirementIdIndex {
+
+    private static final Logger LOG = Logger.getLogger(RequirementIdIndex.class);
+    private static final String KEY_PREFIX = "requirements:";
+    private static final String META_SUFFIX = ":meta";
+    private static final String TAG_PREFIX = "UC-";
+
+    @Inject
+    RedisDataSource redisDataSource;
+
+    @ConfigProperty(name = "app.requirement-cache.channel", defaultValue = "requirements:invalidations")
+    String channel;
+
+    private final Set<String> ids = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong unknown = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    private PubSubCommands.RedisSubscriber subscriber;
+    // Subscriber callbacks run on the event loop, where the blocking datasource may not be used. One thread
+    // keeps the invalidations of an ID in order, so an older one cannot undo a newer one.
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "requirement-id-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    void onStart(@Observes StartupEvent ev) {
+        try {
+            // Subscribe before scanning, so writes made during the scan are not missed
+            subscriber = redisDataSource.pubsub(String.class).subscribe(channel, id -> refresher.execute(() -> refresh(id)));
+            long start = System.nanoTime();
+            KeyScanCursor<String> cursor = redisDataSource.key()
+                    .scan(new KeyScanArgs().match(KEY_PREFIX + "*" + META_SUFFIX).count(1000));
+            while (cursor.hasNext()) {
+                for (String key : cursor.next()) {
+                    ids.add(key.substring(KEY_PREFIX.length(), key.length() - META_SUFFIX.length()));
+                }
+            }
+            loaded = true;
+            LOG.infof("Requirement ID index loaded %d IDs in %d ms", ids.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            LOG.error("Requirement ID index could not be loaded, IDs will be checked in Redis: " + e.getMessage());
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent ev) {
+        if (subscriber != null) {
+            subscriber.unsubscribe();
+        }
+        refresher.shutdownNow();
+    }
+
+    /**
+     * False until the startup scan has completed; until then, {@link #resolve} cannot rule an ID out.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Returns the stored ID a reference names, or null if no such requirement exists. The reference may carry
+     * the UC- tag prefix or not, whichever way the requirement was stored. Blocks on Redis when the ID is not
+     * known locally.
+     */
+    public String resolve(String reference) {
+        lookups.incrementAndGet();
+        String bare = reference.startsWith(TAG_PREFIX) ? reference.substring(TAG_PREFIX.length()) : reference;
+        String[] candidates = reference.equals(bare)
+                ? new String[]{reference, TAG_PREFIX + bare}
+                : new String[]{reference, bare};
+        for (String candidate : candidates) {
+            if (ids.contains(candidate)) {
+                return candidate;
+            }
+        }
+        String stored = resolveInRedis(candidates);
+        if (stored == null) {
+            unknown.incrementAndGet();
+        }
+        return stored;
+    }
+
+    /**
+     * Records a requirement written by this node, ahead of its invalidation message coming back.
+     */
+    public void add(String id) {
+        ids.add(id);
+    }
+
+    /**
+     * Forgets a requirement deleted by this node, ahead of its invalidation message coming back.
+     */
+    public void remove(String id) {
+        ids.remove(id);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loaded", loaded);
+        stats.put("ids", ids.size());
+        stats.put("lookups", lookups.get());
+        stats.put("unknown", unknown.get());
+        stats.put("recovered", recovered.get());
+        stats.put("refreshes", refreshes.get());
+        return stats;
+    }
+
+    /**
+     * Checks all candidates in one EXISTS, which is the only round trip for a reference that really is unknown;
+     * a hit means an invalidation was lost, and the ID is added back once the matching candidate is found.
+     */
+    private String resolveInRedis(String[] candidates) {
+        try {
+            String[] keys = new String[candidates.length];
+            for (int i = 0; i < candidates.length; i++) {
+                keys[i] = KEY_PREFIX + candidates[i] + META_SUFFIX;
+            }
+            if (redisDataSource.key().exists(keys) == 0) {
+                return null;
+            }
+            for (int i = 0; i < candidates.length; i++) {
+                if (redisDataSource.key().exists(keys[i])) {
+                    ids.add(candidates[i]);
+                    recovered.incrementAndGet();
+                    LOG.debugf("Requirement %s was missing from the ID index, its invalidation was lost", candidates[i]);
+                    return candidates[i];
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("Failed to check requirement " + candidates[0] + " in Redis: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * An invalidation means the requirement was written or removed; its meta key says which.
+     */
+    private void refresh(String id) {
+        refreshes.incrementAndGet();
+        try {
+            if (redisDataSource.key().exists(KEY_PREFIX + id + META_SUFFIX)) {
+                ids.add(id);
+            } else {
+                ids.remove(id);
+            }
+        } catch (Exception e) {
+            LOG.warn("Failed to refresh requirement " + id + " in the ID index: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.service;
+
+import com.example.dto.RequirementMatch;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Requirement-level semantic search. Overlapping chunks make the top chunk matches mostly near-duplicates of
+ * one requirement, so matches are grouped by their {@code requirementId} and each requirement is scored from
+ * all of its chunks. The KNN query over-fetches by the number of matching chunks per requirement seen on
+ * recent queries, so one query normally yields the requested number of distinct requirements.
+ * <p>
+ * With {@code app.search.lexical.enabled}, the vector ranking is fused with a BM25 ranking from the
+ * {@link LexicalRequirementIndex} by reciprocal rank, so identifiers and domain terms shared by code and
+ * requirement count even where the embeddings blur them.
+ */
+@ApplicationScoped
+public class RequirementSearchService {
+
+    // Weight of the most recent query in the chunks-per-requirement average
+    private static final double DENSITY_SMOOTHING = 0.2;
+
+    @Inject
+    EmbeddingService embeddingService;
+
+    @Inject
+    LexicalRequirementIndex lexicalRequirementIndex;
+
+    @ConfigProperty(name = "app.search.min-score", defaultValue = "0.5")
+    double minScore;
+
+    @ConfigProperty(name = "app.search.coverage-bonus", defaultValue = "0.5")
+    double coverageBonus;
+
+    @ConfigProperty(name = "app.search.initial-over-fetch", defaultValue = "4")
+    double initialOverFetch;
+
+    @ConfigProperty(name = "app.search.max-fetch", defaultValue = "200")
+    int maxFetch;
+
+    @ConfigProperty(name = "app.search.lexical.enabled", defaultValue = "true")
+    boolean lexicalEnabled;
+
+    @ConfigProperty(name = "app.search.rrf-k", defaultValue = "60")
+    int rrfK;
+
+    @ConfigProperty(name = "app.search.lexical.min-score", defaultValue = "5.0")
+    double lexicalMinScore;
+
+    private volatile double chunksPerRequirement;
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong fetchedChunks = new AtomicLong();
+    private final AtomicLong shortfalls = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+    private final AtomicLong vectorNanos = new AtomicLong();
+    private final AtomicLong hybridSearches = new AtomicLong();
+    private final AtomicLong lexicalNanos = new AtomicLong();
+    private final AtomicLong topChanged = new AtomicLong();
+    private final AtomicLong lexicalOnlyTop = new AtomicLong();
+
+    @Inject
+    void initOverFetch() {
+        this.chunksPerRequirement = initialOverFetch;
+    }
+
+    /**
+     * Returns up to {@code limit} distinct requirements matching the text, best first.
+     */
+    public List<RequirementMatch> search(String text, int limit) {
+        return search(text, limit, new RequirementFilter(null, null));
+    }
+
+    /**
+     * Returns up to {@code limit} distinct requirements matching the text among those the filter accepts, best
+     * first. Both the vector and the BM25 ranking apply the filter before ranking.
+     */
+    public List<RequirementMatch> search(String text, int limit, RequirementFilter filter) {
+        long start = System.nanoTime();
+        int fetch = fetchSize(limit);
+        List<EmbeddingMatch<TextSegment>> matches = embeddingService.findSimilarRequirements(text, fetch, minScore,
+                filter);
+        List<RequirementMatch> requirements = group(matches, coverageBonus);
+        vectorNanos.addAndGet(System.nanoTime() - start);
+
+        searches.incrementAndGet();
+        fetchedChunks.addAndGet(matches.size());
+        if (!requirements.isEmpty()) {
+            chunksPerRequirement += DENSITY_SMOOTHING * ((double) matches.size() / requirements.size() - chunksPerRequirement);
+        }
+        // A full page with too few requirements means the store had more to give
+        if (matches.size() == fetch && requirements.size() < limit) {
+            shortfalls.incrementAndGet();
+        }
+
+        if (lexicalEnabled && lexicalRequirementIndex.isLoaded()) {
+            long lexicalStart = System.nanoTime();
+            List<RequirementMatch> fused = fuse(requirements, lexicalRequirementIndex.search(text, fetch, filter), rrfK,
+                    lexicalMinScore);
+            lexicalNanos.addAndGet(System.nanoTime() - lexicalStart);
+            hybridSearches.incrementAndGet();
+            compareTop(requirements, fused);
+            requirements = fused;
+        }
+
+        searchNanos.addAndGet(System.nanoTime() - start);
+        return requirements.size() > limit ? requirements.subList(0, limit) : requirements;
+    }
+
+    public Map<String, Object> getStats() {
+        long count = searches.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("searches", count);
+        stats.put("chunksPerRequirement", chunksPerRequirement);
+        stats.put("avgFetchedChunks", count == 0 ? 0.0 : (double) fetchedChunks.get() / count);
+        stats.put("shortfalls", shortfalls.get());
+        stats.put("avgSearchMillis", count == 0 ? 0 : searchNanos.get() / count / 1_000_000);
+        stats.put("avgVectorMillis", count == 0 ? 0 : vectorNanos.get() / count / 1_000_000);
+
+        // How the fused ranking compares with vector search alone on the same queries
+        long hybrid = hybridSearches.get();
+        Map<String, Object> lexical = new LinkedHashMap<>();
+        lexical.put("enabled", lexicalEnabled);
+        lexical.put("hybridSearches", hybrid);
+        lexical.put("avgLexicalMicros", hybrid == 0 ? 0 : lexicalNanos.get() / hybrid / 1_000);
+        lexical.put("topChanged", topChanged.get());
+        lexical.put("lexicalOnlyTop", lexicalOnlyTop.get());
+        stats.put("hybrid", lexical);
+        return stats;
+    }
+
+    /**
+     * Chunks to request for {@code limit} requirements, with 50% headroom over the observed density.
+     */
+    int fetchSize(int limit) {
+        int fetch = (int) Math.ceil(limit * chunksPerRequirement * 1.5);
+        return Math.max(limit, Math.min(fetch, maxFetch));
+    }
+
+    /**
+     * Groups chunk matches by requirement. A requirement scores its best chunk, raised towards 1 by
+     * {@code coverageBonus} times the chance that at least one of its other chunks is relevant:
+     * {@code best + (1 - best) * bonus * (1 - prod(1 - other))}. The result stays in [0, 1], and a requirement
+     * matched by many chunks ranks above one matched by a single chunk of the same score.
+     */
+    static List<RequirementMatch> group(List<EmbeddingMatch<TextSegment>> matches, double coverageBonus) {
+        Map<String, Group> groups = new LinkedHashMap<>();
+        for (EmbeddingMatch<TextSegment> match : matches) {
+            String id = match.embedded().metadata().getString("requirementId");
+            if (id != null) {
+                groups.computeIfAbsent(id, key -> new Group()).add(match);
+            }
+        }
+
+        List<RequirementMatch> requirements = new ArrayList<>(groups.size());
+        for (Map.Entry<String, Group> entry : groups.entrySet()) {
+            Group group = entry.getValue();
+            double coverage = 1.0 - group.othersMissing;
+            double score = group.best + (1.0 - group.best) * coverageBonus * coverage;
+            requirements.add(new RequirementMatch(entry.getKey(), score, group.best, group.chunks, group.bestChunk));
+        }
+        requirements.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+        return requirements;
+    }
+
+    /**
+     * Reciprocal-rank fusion of the vector ranking with the requirements of the BM25 chunk hits, each ranked
+     * by its best chunk: {@code sum 1 / (k + rank)}, scaled so that first in both rankings scores 1. A
+     * requirement the vector search did not find only enters on a BM25 score of at least {@code minLexicalScore},
+     * since reciprocal rank alone would let the best of a few shared common words through.
+     */
+    static List<RequirementMatch> fuse(List<RequirementMatch> vector, List<Bm25Index.Hit> lexicalHits, int k,
+                                       double minLexicalScore) {
+        Map<String, RequirementMatch> byId = new LinkedHashMap<>();
+        Map<String, Double> fused = new LinkedHashMap<>();
+        for (int rank = 1; rank <= vector.size(); rank++) {
+            RequirementMatch match = vector.get(rank - 1);
+            byId.put(match.getRequirementId(), match);
+            fused.put(match.getRequirementId(), 1.0 / (k + rank));
+        }
+
+        int rank = 0;
+        for (Bm25Index.Hit hit : lexicalHits) {
+            String id = hit.chunk.requirementId;
+            RequirementMatch match = byId.get(id);
+            if (match == null) {
+                if (hit.score < minLexicalScore) {
+                    continue;
+                }
+                match = new RequirementMatch(id, 0, 0, 0, hit.chunk.text);
+                byId.put(id, match);
+            }
+            if (match.getLexicalScore() == null) {
+                match.setLexicalScore(hit.score);
+                fused.merge(id, 1.0 / (k + ++rank), Double::sum);
+            }
+        }
+
+        double best = 2.0 / (k + 1);
+        List<RequirementMatch> requirements = new ArrayList<>(byId.values());
+        for (RequirementMatch match : requirements) {
+            match.setScore(fused.get(match.getRequirementId()) / best);
+        }
+        requirements.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+        return requirements;
+    }
+
+    private void compareTop(List<RequirementMatch> vector, List<RequirementMatch> fused) {
+        if (fused.isEmpty()) {
+            return;
+        }
+        RequirementMatch top = fused.get(0);
+        if (vector.isEmpty() || !vector.get(0).getRequirementId().equals(top.getRequirementId())) {
+            topChanged.incrementAndGet();
+        }
+        if (top.getMatchedChunks() == 0) {
+            lexicalOnlyTop.incrementAndGet();
+        }
+    }
+
+    private static final class Group {
+        private double best = -1;
+        private String bestChunk;
+        private int chunks;
+        // product of (1 - score) over every chunk except the best
+        private double othersMissing = 1.0;
+
+        private void add(EmbeddingMatch<TextSegment> match) {
+            double score = match.score();
+            chunks++;
+            if (score > best) {
+                if (best >= 0) {
+                    othersMissing *= 1.0 - best;
+                }
+                best = score;
+                bestChunk = match.embedded().text();
+            } else {
+                othersMissing *= 1.0 - score;
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.service;
+
+import java.util.Collection;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Scanning for requirement tags: UC- tags such as {@code // UC-42: place order} and javadoc-style
+ * {@code @requirement UC-42} references, both in one pass.
+ */
+final class RequirementTags {
+
+    static final Pattern TAG_PATTERN =
+            Pattern.compile("@requirement\\s+(?:UC-)?([A-Za-z0-9_-]+)|UC-([A-Za-z0-9_-]+):?");
+
+    private RequirementTags() {
+    }
+
+    /**
+     * Adds the id of every tag in {@code text[start, end)} to {@code tags}, without the UC- prefix.
+     */
+    static void collect(CharSequence text, int start, int end, Collection<String> tags) {
+        Matcher matcher = TAG_PATTERN.matcher(text).region(start, end);
+        while (matcher.find()) {
+            tags.add(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.service;
+
+import com.example.dto.CodeImplementation;
+import com.example.dto.FeedbackResponse;
+import com.example.dto.Requirement;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.value.ValueCommands;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent cache of {@link FeedbackResponse} results in Redis, so re-running CI on unchanged code does not
+ * pay for two LLM generations again.
+ */
+@ApplicationScoped
+public class ReviewCache {
+
+    private static final Logger LOG = Logger.getLogger(ReviewCache.class);
+    private static final String KEY_PREFIX = "reviews:";
+
+    @Inject
+    RedisDataSource redisDataSource;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @ConfigProperty(name = "app.review-cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "app.review-cache.ttl", defaultValue = "7d")
+    Duration ttl;
+
+    private ValueCommands<String, String> values;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypasses = new AtomicLong();
+    private final AtomicLong millisSaved = new AtomicLong();
+
+    @Inject
+    void initValues() {
+        this.values = redisDataSource.value(String.class);
+    }
+
+    /**
+     * Builds the cache key from everything that influences the review: the normalized code, the language,
+     * the requirement content, the prompt template version and both model names.
+     */
+    public String key(CodeImplementation implementation, Requirement requirement, String promptVersion,
+                      String codingModelName, String reviewModelName) {
+        return ContentHash.sha256(
+                normalize(implementation.getCode()),
+                implementation.getLanguage().toLowerCase(),
+                ContentHash.sha256(requirement.getContent()),
+                promptVersion,
+                codingModelName,
+                reviewModelName);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public FeedbackResponse get(String key) {
+        CachedReview cached = find(key);
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        millisSaved.addAndGet(cached.generationMillis);
+        return cached.feedback;
+    }
+
+    /**
+     * Looks up a result without touching the hit/miss counters, for callers polling on another node's work.
+     */
+    public FeedbackResponse peek(String key) {
+        CachedReview cached = find(key);
+        return cached != null ? cached.feedback : null;
+    }
+
+    public void put(String key, FeedbackResponse feedback, long generationMillis) {
+        try {
+            CachedReview cached = new CachedReview();
+            cached.feedback = feedback;
+            cached.generationMillis = generationMillis;
+            values.psetex(KEY_PREFIX + key, ttl.toMillis(), objectMapper.writeValueAsString(cached));
+        } catch (Exception e) {
+            LOG.warn("Review cache write failed: " + e.getMessage());
+        }
+    }
+
+    public void recordBypass() {
+        bypasses.incrementAndGet();
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long lookups = hitCount + misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("bypasses", bypasses.get());
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) hitCount / lookups);
+        stats.put("millisSaved", millisSaved.get());
+        return stats;
+    }
+
+    private CachedReview find(String key) {
+        try {
+            String json = values.get(KEY_PREFIX + key);
+            return json != null ? objectMapper.readValue(json, CachedReview.class) : null;
+        } catch (Exception e) {
+            LOG.warn("Review cache read failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Normalizes line endings and trailing whitespace, which CI checkouts change without changing the code.
+     */
+    private static String normalize(String code) {
+        StringBuilder normalized = new StringBuilder(code.length());
+        code.lines().forEach(line -> normalized.append(line.stripTrailing()).append('\n'));
+        return normalized.toString().strip();
+    }
+
+    public static class CachedReview {
+        public FeedbackResponse feedback;
+        public long generationMillis;
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.service;
+
+import com.example.dto.FeedbackResponse;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tolerant parser for review model output. It locates the outermost balanced JSON object in one scan, closes
+ * it if the generation was cut off, and binds it with a lenient reader that accepts the usual LLM defects
+ * (trailing commas, unquoted keys, single quotes, comments). Braces in prose before the object, such as
+ * {@code if (x) { y(); }} or <code>{&#64;code run}</code>, are skipped: a brace only starts the object when a key
+ * and a colon follow it, and the object must carry a review field. Only when no such object binds does it fall
+ * back to a single-pass scan of the prose section headers.
+ */
+@ApplicationScoped
+public class ReviewResponseParser {
+
+    private static final Logger LOG = Logger.getLogger(ReviewResponseParser.class);
+    private static final Set<String> FIELDS = Set.of("alignmentScore", "requirementMiss", "edgeCases",
+            "codeFeedback", "warnings");
+    // Objects tried before falling back to the section scan; prose rarely holds more than a few brace pairs
+    private static final int MAX_CANDIDATES = 8;
+
+    private enum Section {
+        NONE, SCORE, MISSES, EDGE_CASES, CODE_FEEDBACK, QUALITY, OPTIMIZATIONS, STANDARDS, WARNINGS
+    }
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    FeedbackSchema feedbackSchema;
+
+    private ObjectReader reader;
+
+    private final AtomicLong parsed = new AtomicLong();
+    private final AtomicLong repaired = new AtomicLong();
+    private final AtomicLong sectionFallbacks = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private final AtomicLong parsedChars = new AtomicLong();
+
+    @Inject
+    void initReader() {
+        this.reader = objectMapper.readerFor(FeedbackResponse.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .with(JsonReadFeature.ALLOW_TRAILING_COMMA)
+                .with(JsonReadFeature.ALLOW_UNQUOTED_FIELD_NAMES)
+                .with(JsonReadFeature.ALLOW_SINGLE_QUOTES)
+                .with(JsonReadFeature.ALLOW_JAVA_COMMENTS)
+                .with(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS);
+    }
+
+    public FeedbackResponse parse(String reviewText) {
+        long start = System.nanoTime();
+        try {
+            int from = objectStart(reviewText, 0);
+            for (int candidate = 0; from >= 0 && candidate < MAX_CANDIDATES; candidate++) {
+                String json = extractObject(reviewText, from);
+                FeedbackResponse response = bind(json);
+                if (response != null) {
+                    // Only a truncated object comes back longer than the text it was taken from
+                    if (json.length() > reviewText.length() - from) {
+                        repaired.incrementAndGet();
+                    }
+                    return response;
+                }
+                from = objectStart(reviewText, from + 1);
+            }
+            sectionFallbacks.incrementAndGet();
+            return scanSections(reviewText);
+        } finally {
+            parsed.incrementAndGet();
+            parsedChars.addAndGet(reviewText.length());
+            parseNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Strict parse for structured-output mode: the text must be a JSON document that validates against the
+     * {@link FeedbackSchema}. Returns null and fills {@code errors} otherwise.
+     */
+    public FeedbackResponse parseStructured(String text, List<String> errors) {
+        try {
+            JsonNode document = objectMapper.readTree(text.strip());
+            errors.addAll(feedbackSchema.validate(document));
+            return errors.isEmpty() ? reader.readValue(document) : null;
+        } catch (Exception e) {
+            errors.add("not a JSON document: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long count = parsed.get();
+        long nanos = parseNanos.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("parsed", count);
+        stats.put("repaired", repaired.get());
+        stats.put("sectionFallbacks", sectionFallbacks.get());
+        stats.put("avgParseMicros", count == 0 ? 0 : nanos / count / 1_000);
+        stats.put("charsPerSecond", nanos == 0 ? 0 : parsedChars.get() * 1_000_000_000L / nanos);
+        return stats;
+    }
+
+    /**
+     * Binds a candidate object, or returns null when it is not JSON or has none of the review fields.
+     */
+    private FeedbackResponse bind(String json) {
+        try {
+            JsonNode node = reader.readTree(json);
+            if (node != null && node.isObject()) {
+                for (Iterator<String> names = node.fieldNames(); names.hasNext(); ) {
+                    if (FIELDS.contains(names.next())) {
+                        return reader.readValue(node);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOG.debug("Review JSON candidate could not be bound: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Index of the first brace at or after {@code from} that can open a JSON object: one followed by a quoted
+     * or bare key and a colon, a comment, or the closing brace. -1 when there is none.
+     */
+    static int objectStart(String text, int from) {
+        for (int start = text.indexOf('{', from); start >= 0; start = text.indexOf('{', start + 1)) {
+            int i = skipWhitespace(text, start + 1);
+            if (i == text.length()) {
+                // Cut off right after the brace
+                return start;
+            }
+            char c = text.charAt(i);
+            if (c == '"' || c == '\'' || c == '}' || text.startsWith("//", i) || text.startsWith("/*", i)) {
+                return start;
+            }
+            int keyEnd = i;
+            while (keyEnd < text.length() && (Character.isJavaIdentifierPart(text.charAt(keyEnd)))) {
+                keyEnd++;
+            }
+            int colon = skipWhitespace(text, keyEnd);
+            if (keyEnd > i && colon < text.length() && text.charAt(colon) == ':') {
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the balanced JSON object starting at {@code start}. Braces inside strings are ignored; if the text
+     * ends mid-object, the open string and brackets are closed so the prefix can still be bound.
+     */
+    String extractObject(String text, int start) {
+        ArrayDeque<Character> closers = new ArrayDeque<>();
+        char quote = 0;
+        boolean escaped = false;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '"', '\'' -> quote = c;
+                case '{' -> closers.push('}');
+                case '[' -> closers.push(']');
+                case '}', ']' -> {
+                    if (!closers.isEmpty() && closers.peek() == c) {
+                        closers.pop();
+                    }
+                    if (closers.isEmpty()) {
+                        return text.substring(start, i + 1);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        // Truncated generation: close whatever is still open
+        StringBuilder json = new StringBuilder(text.length() - start + closers.size() + 1).append(text, start, text.length());
+        if (quote != 0) {
+            json.append(quote);
+        }
+        while (!closers.isEmpty()) {
+            json.append(closers.pop());
+        }
+        return json.toString();
+    }
+
+    /**
+     * Single pass over the lines of a prose review, assigning content to the section whose header came last.
+     */
+    FeedbackResponse scanSections(String reviewText) {
+        FeedbackResponse response = new FeedbackResponse();
+        FeedbackResponse.CodeFeedback codeFeedback = new FeedbackResponse.CodeFeedback();
+        List<String> misses = new ArrayList<>();
+        List<String> edgeCases = new ArrayList<>();
+        List<String> optimizations = new ArrayList<>();
+        List<String> warnings = new ArrayList<>();
+        StringBuilder quality = new StringBuilder();
+        StringBuilder standards = new StringBuilder();
+
+        Section section = Section.NONE;
+        int lineStart = 0;
+        int length = reviewText.length();
+        while (lineStart <= length) {
+            int lineEnd = reviewText.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = length;
+            }
+            String line = stripDecoration(reviewText.substring(lineStart, lineEnd));
+            lineStart = lineEnd + 1;
+
+            Section header = headerOf(line);
+            String rest = line;
+            if (header != null) {
+                section = header;
+                int colon = line.indexOf(':');
+                rest = colon >= 0 ? line.substring(colon + 1).trim() : "";
+                if (header == Section.SCORE) {
+                    // Prefer the value after the colon, so "Alignment Score (0-10): 8" does not read the range
+                    String digits = firstNumber(colon >= 0 ? rest : line.substring("alignment score".length()));
+                    try {
+                        response.setAlignmentScore(Double.parseDouble(digits));
+                    } catch (NumberFormatException e) {
+                        response.setAlignmentScore(5.0); // Default score
+                    }
+                    continue;
+                }
+            }
+            if (rest.isEmpty()) {
+                continue;
+            }
+
+            switch (section) {
+                case MISSES -> addListItem(misses, rest, header != null);
+                case EDGE_CASES -> addListItem(edgeCases, rest, header != null);
+                case OPTIMIZATIONS -> addListItem(optimizations, rest, header != null);
+                case WARNINGS -> addListItem(warnings, rest, header != null);
+                case QUALITY -> appendText(quality, rest);
+                case STANDARDS -> appendText(standards, rest);
+                default -> {
+                }
+            }
+        }
+
+        response.setRequirementMiss(misses.isEmpty() ? null : misses);
+        response.setEdgeCases(edgeCases.isEmpty() ? null : edgeCases);
+        response.setWarnings(warnings.isEmpty() ? null : warnings);
+        codeFeedback.setQuality(quality.isEmpty() ? null : quality.toString());
+        codeFeedback.setOptimizations(optimizations.isEmpty() ? null : optimizations);
+        codeFeedback.setStandards(standards.isEmpty() ? null : standards.toString());
+        response.setCodeFeedback(codeFeedback);
+        return response;
+    }
+
+    private static Section headerOf(String line) {
+        if (startsWithIgnoreCase(line, "alignment score")) {
+            return Section.SCORE;
+        } else if (startsWithIgnoreCase(line, "requirement miss")) {
+            return Section.MISSES;
+        } else if (startsWithIgnoreCase(line, "edge case")) {
+            return Section.EDGE_CASES;
+        } else if (startsWithIgnoreCase(line, "code feedback")) {
+            return Section.CODE_FEEDBACK;
+        } else if (startsWithIgnoreCase(line, "quality:")) {
+            return Section.QUALITY;
+        } else if (startsWithIgnoreCase(line, "optimizations:")) {
+            return Section.OPTIMIZATIONS;
+        } else if (startsWithIgnoreCase(line, "standards:")) {
+            return Section.STANDARDS;
+        } else if (startsWithIgnoreCase(line, "warnings")) {
+            return Section.WARNINGS;
+        }
+        return null;
+    }
+
+    /**
+     * Drops leading list markers, markdown emphasis and heading characters, and numbering like "2.".
+     */
+    private static String stripDecoration(String line) {
+        int i = 0;
+        int end = line.length();
+        while (i < end) {
+            char c = line.charAt(i);
+            if (Character.isWhitespace(c) || c == '#' || c == '*' || c == '-' || c == '>') {
+                i++;
+            } else if (Character.isDigit(c)) {
+                int j = i;
+                while (j < end && Character.isDigit(line.charAt(j))) {
+                    j++;
+                }
+                if (j < end && (line.charAt(j) == '.' || line.charAt(j) == ')')
+                        && (j + 1 == end || Character.isWhitespace(line.charAt(j + 1)))) {
+                    i = j + 1;
+                } else {
+                    break;
+                }
+            } else {
+                break;
+            }
+        }
+        while (end > i && (Character.isWhitespace(line.charAt(end - 1)) || line.charAt(end - 1) == '*')) {
+            end--;
+        }
+        return line.substring(i, end).replace("**", "");
+    }
+
+    private static void addListItem(List<String> items, String text, boolean onHeaderLine) {
+        // Prose directly after a header such as "Requirement Misses: none" is kept, like a list item
+        if (onHeaderLine || !text.endsWith(":")) {
+            items.add(text);
+        }
+    }
+
+    private static void appendText(StringBuilder text, String line) {
+        if (!text.isEmpty()) {
+            text.append('\n');
+        }
+        text.append(line);
+    }
+
+    private static String firstNumber(String text) {
+        int i = 0;
+        while (i < text.length() && !Character.isDigit(text.charAt(i))) {
+            i++;
+        }
+        int start = i;
+        while (i < text.length() && (Character.isDigit(text.charAt(i)) || text.charAt(i) == '.')) {
+            i++;
+        }
+        String number = text.substring(start, i);
+        return number.endsWith(".") ? number.substring(0, number.length() - 1) : number;
+    }
+
+    private static boolean startsWithIgnoreCase(String line, String prefix) {
+        return line.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.service;
+
+import com.example.dto.FeedbackResponse;
+
+/**
+ * Receives the progress of a streamed implementation review.
+ */
+public interface ReviewStreamListener {
+
+    /**
+     * A pipeline stage finished, {@code elapsedMillis} after the request started.
+     */
+    void onStage(String stage, long elapsedMillis);
+
+    /**
+     * A top-level field of the review JSON is complete; {@code json} is its raw JSON value.
+     */
+    void onField(String name, String json);
+
+    void onComplete(FeedbackResponse feedback);
+
+    void onError(Throwable error);
+}
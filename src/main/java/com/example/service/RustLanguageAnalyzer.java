@@ -0,0 +1,24 @@
+package com.example.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.Set;
+
+/**
+ * Rust: each match arm counts as a decision, and methods in an impl block are qualified with the implementing type.
+ */
+@ApplicationScoped
+public class RustLanguageAnalyzer extends BraceLanguageAnalyzer {
+
+    public RustLanguageAnalyzer() {
+        // new is an ordinary associated function in Rust: Type::new(..) is a call
+        super(SourceLexer.RUST, Set.of("if", "for", "while", "=>", "&&", "||"),
+                Set.of("if", "for", "while", "return", "else", "fn", "match", "loop", "in", "move", "as"),
+                Set.of("fn"), Set.of("struct", "enum", "trait", "union"), Set.of("impl"), false, false);
+    }
+
+    @Override
+    public Set<String> languages() {
+        return Set.of("rust");
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.service;
+
+/**
+ * Single-pass lexer shared by the non-Java {@link LanguageAnalyzer}s. It skips whitespace and reports identifiers,
+ * numbers, string literals and punctuation to a listener, with comments reported separately, so analyzers never
+ * mistake text inside strings or comments for code.
+ */
+final class SourceLexer {
+
+    enum Kind {
+        IDENTIFIER, NUMBER, STRING, PUNCTUATION
+    }
+
+    interface Listener {
+        /**
+         * @param indent column of the token when it is the first on its line, otherwise -1.
+         */
+        void onToken(Kind kind, int start, int end, int line, int indent);
+
+        void onComment(int start, int end);
+    }
+
+    /**
+     * Lexical conventions of one language.
+     */
+    static final class Syntax {
+        private final String lineComment;
+        private final boolean blockComments;
+        private final boolean tripleQuotes;
+        private final boolean backtickStrings;
+        private final boolean charLiterals;
+        private final boolean preprocessor;
+        private final boolean rawBackticks;
+        private final boolean rustStrings;
+
+        /**
+         * @param rawBackticks backtick strings take no escapes, as in Go.
+         * @param rustStrings {@code "} strings may span lines and raw strings such as {@code r#"..."#} exist.
+         */
+        Syntax(String lineComment, boolean blockComments, boolean tripleQuotes, boolean backtickStrings,
+               boolean charLiterals, boolean preprocessor, boolean rawBackticks, boolean rustStrings) {
+            this.lineComment = lineComment;
+            this.blockComments = blockComments;
+            this.tripleQuotes = tripleQuotes;
+            this.backtickStrings = backtickStrings;
+            this.charLiterals = charLiterals;
+            this.preprocessor = preprocessor;
+            this.rawBackticks = rawBackticks;
+            this.rustStrings = rustStrings;
+        }
+    }
+
+    static final Syntax C_FAMILY = new Syntax("//", true, false, false, true, true, false, false);
+    static final Syntax JAVASCRIPT = new Syntax("//", true, false, true, false, false, false, false);
+    static final Syntax GO = new Syntax("//", true, false, true, true, false, true, false);
+    static final Syntax RUST = new Syntax("//", true, false, false, true, false, false, true);
+    static final Syntax PYTHON = new Syntax("#", false, true, false, false, false, false, false);
+
+    private static final String[] TWO_CHAR_PUNCTUATION = {"&&", "||", "=>", "->", "::", "?.", "??", "==", "!=", "<=", ">="};
+
+    private SourceLexer() {
+    }
+
+    /**
+     * Lexes the whole code in one pass.
+     * @return the number of lines.
+     */
+    static int lex(String code, Syntax syntax, Listener listener) {
+        int length = code.length();
+        int line = 1;
+        int lineStart = 0;
+        boolean lineHasToken = false;
+        int i = 0;
+        while (i < length) {
+            char c = code.charAt(i);
+            if (c == '\n') {
+                line++;
+                lineStart = ++i;
+                lineHasToken = false;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            int start = i;
+            int startLine = line;
+            int indent = lineHasToken ? -1 : start - lineStart;
+
+            if (code.startsWith(syntax.lineComment, i) || (syntax.preprocessor && c == '#' && !lineHasToken)) {
+                boolean directive = c == '#' && syntax.preprocessor;
+                while (i < length && code.charAt(i) != '\n') {
+                    // Preprocessor directives continue over escaped line ends
+                    if (directive && code.charAt(i) == '\\' && i + 1 < length && code.charAt(i + 1) == '\n') {
+                        i++;
+                        line++;
+                        lineStart = i + 1;
+                    }
+                    i++;
+                }
+                listener.onComment(start, i);
+                continue;
+            }
+            if (syntax.blockComments && code.startsWith("/*", i)) {
+                int end = code.indexOf("*/", i + 2);
+                end = end < 0 ? length : end + 2;
+                line += count(code, '\n', i, end);
+                int lastNewline = code.lastIndexOf('\n', end - 1);
+                if (lastNewline >= i) {
+                    lineStart = lastNewline + 1;
+                    lineHasToken = false;
+                }
+                i = end;
+                listener.onComment(start, end);
+                continue;
+            }
+
+            lineHasToken = true;
+            int rawQuote = syntax.rustStrings ? rawStringQuote(code, i) : -1;
+            if (rawQuote >= 0) {
+                // r"..", r#".."# and their b/c prefixed forms: no escapes, closed by the quote and as many #s
+                String closing = "\"" + "#".repeat(rawQuote - i - (code.charAt(i) == 'r' ? 1 : 2));
+                i = endOfString(code, rawQuote + 1, closing, true, false);
+                line += count(code, '\n', start, i);
+                lineStart = line == startLine ? lineStart : code.lastIndexOf('\n', i - 1) + 1;
+                listener.onToken(Kind.STRING, start, i, startLine, indent);
+            } else if (Character.isJavaIdentifierStart(c)) {
+                while (i < length && Character.isJavaIdentifierPart(code.charAt(i))) {
+                    i++;
+                }
+                listener.onToken(Kind.IDENTIFIER, start, i, startLine, indent);
+            } else if (Character.isDigit(c)) {
+                while (i < length && (Character.isLetterOrDigit(code.charAt(i)) || code.charAt(i) == '.' || code.charAt(i) == '_')) {
+                    i++;
+                }
+                listener.onToken(Kind.NUMBER, start, i, startLine, indent);
+            } else if (c == '"' || (c == '\'' && !syntax.charLiterals) || (c == '`' && syntax.backtickStrings)) {
+                String quote = syntax.tripleQuotes && code.startsWith(String.valueOf(c).repeat(3), i)
+                        ? String.valueOf(c).repeat(3) : String.valueOf(c);
+                boolean backtick = c == '`';
+                i = endOfString(code, i + quote.length(), quote,
+                        backtick || quote.length() == 3 || (c == '"' && syntax.rustStrings),
+                        !(backtick && syntax.rawBackticks));
+                line += count(code, '\n', start, i);
+                lineStart = line == startLine ? lineStart : code.lastIndexOf('\n', i - 1) + 1;
+                listener.onToken(Kind.STRING, start, i, startLine, indent);
+            } else if (c == '\'' && isCharLiteral(code, i)) {
+                i = endOfString(code, i + 1, "'", false, true);
+                listener.onToken(Kind.STRING, start, i, startLine, indent);
+            } else {
+                i += twoCharPunctuation(code, i) ? 2 : 1;
+                listener.onToken(Kind.PUNCTUATION, start, i, startLine, indent);
+            }
+        }
+        return length == 0 ? 0 : code.charAt(length - 1) == '\n' ? line - 1 : line;
+    }
+
+    /**
+     * Returns the index after the closing quote. Unless the string may span lines, an unterminated string
+     * ends at the end of its line.
+     * @param escapes whether a backslash escapes the next character; raw strings take it literally.
+     */
+    private static int endOfString(String code, int i, String quote, boolean multiline, boolean escapes) {
+        int length = code.length();
+        while (i < length) {
+            char c = code.charAt(i);
+            if (c == '\\' && escapes) {
+                i += 2;
+            } else if (code.startsWith(quote, i)) {
+                return i + quote.length();
+            } else if (c == '\n' && !multiline) {
+                return i;
+            } else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns the index of the opening quote when a Rust raw string ({@code r"}, {@code r#"}, {@code br#"},
+     * {@code cr"}...) starts at i, otherwise -1. An identifier merely starting with r is not one.
+     */
+    private static int rawStringQuote(String code, int i) {
+        if (i > 0 && Character.isJavaIdentifierPart(code.charAt(i - 1))) {
+            return -1;
+        }
+        int j = i;
+        if (j < code.length() && (code.charAt(j) == 'b' || code.charAt(j) == 'c')) {
+            j++;
+        }
+        if (j >= code.length() || code.charAt(j) != 'r') {
+            return -1;
+        }
+        j++;
+        while (j < code.length() && code.charAt(j) == '#') {
+            j++;
+        }
+        return j < code.length() && code.charAt(j) == '"' ? j : -1;
+    }
+
+    /**
+     * Distinguishes a character literal such as 'a' or '\n' from a Rust lifetime such as 'a.
+     */
+    private static boolean isCharLiteral(String code, int i) {
+        if (i + 2 >= code.length()) {
+            return false;
+        }
+        return code.charAt(i + 1) == '\\' || code.charAt(i + 2) == '\''
+                || (Character.isHighSurrogate(code.charAt(i + 1)) && i + 3 < code.length() && code.charAt(i + 3) == '\'');
+    }
+
+    private static boolean twoCharPunctuation(String code, int i) {
+        for (String punctuation : TWO_CHAR_PUNCTUATION) {
+            if (code.startsWith(punctuation, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int count(String text, char c, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Count, average and maximum duration per named pipeline stage.
+ */
+final class StageTimings {
+
+    private final ConcurrentHashMap<String, Stage> stages = new ConcurrentHashMap<>();
+
+    void record(String stage, long startNanos) {
+        stages.computeIfAbsent(stage, name -> new Stage()).add(System.nanoTime() - startNanos);
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        stages.forEach((name, stage) -> stats.put(name, stage.getStats()));
+        return stats;
+    }
+
+    private static final class Stage {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void add(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private Map<String, Object> getStats() {
+            long n = count.get();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", n);
+            stats.put("avgMillis", n == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.get() / n));
+            stats.put("maxMillis", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+            return stats;
+        }
+    }
+}
@@ -43,10 +43,13 @@ public class StartupService {
 
         LOG.info("🚀 Vector Search API ready!");
         LOG.info("📖 Available endpoints:");
-        LOG.info("   - Health: GET /api/v1/documents/health");
-        LOG.info("   - Add Document: POST /api/v1/documents");
-        LOG.info("   - Search: POST /api/v1/documents/search");
-        LOG.info("   - Get All: GET /api/v1/documents");
-        LOG.info("   - Delete: DELETE /api/v1/documents/{id}");
+        LOG.info("   - Health: GET /api/health");
+        LOG.info("   - Add or Update Requirement: POST /api/requirements, PUT /api/requirements/{id}");
+        LOG.info("   - Delete Requirement: DELETE /api/requirements/{id}");
+        LOG.info("   - Search Requirements: POST /api/requirements/search");
+        LOG.info("   - Reindex Requirements: POST /api/requirements/reindex");
+        LOG.info("   - Analyze Implementation: POST /api/implementations (/stream, /jobs)");
+        LOG.info("   - Analysis Job: GET /api/implementations/jobs/{id}");
+        LOG.info("   - Stats: GET /api/stats, Languages: GET /api/languages");
     }
 }
\ No newline at end of file
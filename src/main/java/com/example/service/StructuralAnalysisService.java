@@ -0,0 +1,168 @@
+package com.example.service;
+
+import com.example.dto.CodeImplementation;
+import com.example.dto.StructuralSummary;
+import com.example.dto.StructuralSummary.MethodSummary;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Structural summary of a submission: declared types, method signatures with cyclomatic complexity, call graph
+ * edges and UC- requirement tags. The work is delegated to the {@link LanguageAnalyzer} registered for the
+ * submission's language; summaries are cached by a hash of the language and code.
+ */
+@ApplicationScoped
+public class StructuralAnalysisService {
+
+    private static final Logger LOG = Logger.getLogger(StructuralAnalysisService.class);
+    private static final int MAX_DESCRIBED_METHODS = 200;
+
+    @Inject
+    Instance<LanguageAnalyzer> analyzerBeans;
+
+    @ConfigProperty(name = "app.supported-languages")
+    List<String> supportedLanguages;
+
+    @ConfigProperty(name = "app.structure-cache.size", defaultValue = "1000")
+    int cacheSize;
+
+    private final Map<String, LanguageAnalyzer> analyzers = new HashMap<>();
+
+    private final LinkedHashMap<String, StructuralSummary> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StructuralSummary> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final ConcurrentHashMap<String, Throughput> throughput = new ConcurrentHashMap<>();
+
+    @Inject
+    void initAnalyzers() {
+        for (LanguageAnalyzer analyzer : analyzerBeans) {
+            for (String language : analyzer.languages()) {
+                LanguageAnalyzer previous = analyzers.put(language, analyzer);
+                if (previous != null) {
+                    LOG.warn("Both " + previous.getClass().getSimpleName() + " and " + analyzer.getClass().getSimpleName()
+                            + " analyze " + language + "; using the latter");
+                }
+            }
+        }
+    }
+
+    void onStart(@Observes StartupEvent ev) {
+        for (String language : supportedLanguages) {
+            if (!analyzers.containsKey(language.toLowerCase())) {
+                LOG.warn("No language analyzer for supported language " + language);
+            }
+        }
+        LOG.info("Language analyzers: " + new TreeSet<>(analyzers.keySet()));
+    }
+
+    public StructuralSummary analyze(CodeImplementation implementation) {
+        String language = implementation.getLanguage().toLowerCase();
+        String code = implementation.getCode();
+        String key = ContentHash.sha256(language, code);
+        synchronized (cache) {
+            StructuralSummary cached = cache.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached.copy();
+            }
+        }
+
+        misses.incrementAndGet();
+        LanguageAnalyzer analyzer = analyzers.get(language);
+        long start = System.nanoTime();
+        StructuralSummary summary = analyzer != null
+                ? analyzer.analyze(language, code)
+                : new StructuralSummary(language, (int) code.lines().count(), 1, List.of(), List.of(), List.of());
+        throughput.computeIfAbsent(language, l -> new Throughput()).add(code.length(), System.nanoTime() - start);
+        LOG.debug(language + " structure: " + summary.getTypes().size() + " types, " + summary.getMethods().size()
+                + " methods, complexity " + summary.getComplexity());
+
+        synchronized (cache) {
+            // The cache keeps its own copy so a caller changing the returned summary cannot affect later requests
+            cache.put(key, summary.copy());
+        }
+        return summary;
+    }
+    /**
+     * Compact text form of the summary for prompts.
+     */
+    public String describe(StructuralSummary summary) {
+        StringBuilder text = new StringBuilder();
+        text.append(summary.getLineCount()).append(" lines, cyclomatic complexity ").append(summary.getComplexity()).append('\n');
+        if (!summary.getTypes().isEmpty()) {
+            text.append("Types: ").append(String.join(", ", summary.getTypes())).append('\n');
+        }
+        if (!summary.getRequirementTags().isEmpty()) {
+            text.append("Requirement tags: UC-").append(String.join(", UC-", summary.getRequirementTags())).append('\n');
+        }
+        List<MethodSummary> methods = summary.getMethods();
+        if (!methods.isEmpty()) {
+            text.append("Methods:\n");
+        }
+        for (int i = 0; i < methods.size() && i < MAX_DESCRIBED_METHODS; i++) {
+            MethodSummary method = methods.get(i);
+            text.append("- ").append(method.getSignature()).append(" [complexity ").append(method.getComplexity());
+            if (method.getCalls() != null && !method.getCalls().isEmpty()) {
+                text.append("; calls ").append(String.join(", ", method.getCalls()));
+            }
+            text.append("]\n");
+        }
+        if (methods.size() > MAX_DESCRIBED_METHODS) {
+            text.append("- ... ").append(methods.size() - MAX_DESCRIBED_METHODS).append(" more\n");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Cache statistics plus the analysis throughput of each language, measured on the submissions analysed.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (cache) {
+            stats.put("entries", cache.size());
+        }
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        Map<String, Object> languages = new TreeMap<>();
+        throughput.forEach((language, measured) -> languages.put(language, measured.getStats()));
+        stats.put("languages", languages);
+        return stats;
+    }
+
+    private static final class Throughput {
+        private final AtomicLong analyses = new AtomicLong();
+        private final AtomicLong chars = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+
+        private void add(int length, long elapsedNanos) {
+            analyses.incrementAndGet();
+            chars.addAndGet(length);
+            nanos.addAndGet(elapsedNanos);
+        }
+
+        private Map<String, Object> getStats() {
+            long count = analyses.get();
+            long elapsed = nanos.get();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("analyses", count);
+            stats.put("avgMicros", count == 0 ? 0 : elapsed / count / 1_000);
+            stats.put("charsPerSecond", elapsed == 0 ? 0 : chars.get() * 1_000_000_000L / elapsed);
+            return stats;
+        }
+    }
+}
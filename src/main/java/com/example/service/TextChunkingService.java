@@ -19,13 +19,16 @@ public class TextChunkingService {
 
     private static final Logger LOG = Logger.getLogger(TextChunkingService.class);
     private final HierarchicalDocumentSplitter splitter;
+    private final HierarchicalDocumentSplitter promptSplitter;
+    private final OpenAiTokenizer tokenizer;
 
     public TextChunkingService(
             @ConfigProperty(name = "langchain4j.chunk.size", defaultValue = "50") int chunkSize,
             @ConfigProperty(name = "langchain4j.chunk.overlap", defaultValue = "10") int chunkOverlap
     ) {
-        OpenAiTokenizer tokenizer = new OpenAiTokenizer();
+        this.tokenizer = new OpenAiTokenizer();
         this.splitter = new DocumentBySentenceSplitter(chunkSize, chunkOverlap, tokenizer);
+        this.promptSplitter = new DocumentBySentenceSplitter(chunkSize, 0, tokenizer);
     }
 
     /**
@@ -39,4 +42,24 @@ public class TextChunkingService {
         LOG.debug("Number of chunks: " + segments.size());
         return segments;
     }
+
+    /**
+     * Splits the text into chunks of the same size but without overlap, so a selection of them can be
+     * concatenated into a prompt without repeating text.
+     */
+    public List<TextSegment> chunkTextForPrompt(String text) {
+        return promptSplitter.split(Document.from(text));
+    }
+
+    public int countTokens(String text) {
+        return tokenizer.estimateTokenCountInText(text);
+    }
+
+    /**
+     * Returns the longest prefix of the text that fits in the given number of tokens.
+     */
+    public String truncateToTokens(String text, int maxTokens) {
+        List<Integer> tokens = tokenizer.encode(text, maxTokens);
+        return tokens.size() < maxTokens ? text : tokenizer.decode(tokens);
+    }
 }
@@ -0,0 +1,337 @@
+package com.example.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.keys.KeyScanArgs;
+import io.quarkus.redis.datasource.keys.KeyScanCursor;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rebuilds the vector index from the requirement chunks in Redis, e.g. after {@code redis.vector.dimension} has
+ * changed. The embedding cache holds the full model vectors, keyed by chunk text, so chunks embedded before are
+ * only truncated to the new dimension; the embedding model is called for cache misses alone.
+ * <p>
+ * Every chunk is embedded before the old index is dropped, so a failing model leaves it intact. Ingest waits
+ * for the rebuild; searches meanwhile see a partial index.
+ * <p>
+ * The HNSW store is local to each node, so at startup it is also reconciled with the chunks in Redis: other
+ * nodes may have written requirements while this one was down, or its snapshot may have been discarded.
+ */
+@ApplicationScoped
+public class VectorIndexMigration {
+
+    private static final Logger LOG = Logger.getLogger(VectorIndexMigration.class);
+    private static final String KEY_PREFIX = "requirements:";
+    private static final String META_SUFFIX = ":meta";
+
+    @Inject
+    EmbeddingService embeddingService;
+
+    @Inject
+    EmbeddingCache embeddingCache;
+
+    @Inject
+    Redis redis;
+
+    @Inject
+    RedisDataSource redisDataSource;
+
+    @ConfigProperty(name = "app.embedding.batch-size", defaultValue = "32")
+    int embeddingBatchSize;
+
+    @ConfigProperty(name = "app.vector-store.hnsw.reconcile-on-start", defaultValue = "true")
+    boolean reconcileOnStart;
+
+    void onStart(@Observes StartupEvent ev) {
+        if (reconcileOnStart && embeddingService.isNodeLocal()) {
+            try {
+                reconcile();
+            } catch (Exception e) {
+                LOG.error("Failed to reconcile the HNSW vector store with Redis, searches may miss requirements "
+                        + "until POST /api/requirements/reindex: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    public Map<String, Object> rebuild() {
+        long start = System.nanoTime();
+        embeddingService.indexLock().writeLock().lock();
+        try {
+            List<String> ids = scanIds();
+            List<TextSegment> segments = readChunks(ids);
+
+            AtomicLong modelCalls = new AtomicLong();
+            List<Embedding> embeddings = embed(segments, modelCalls);
+            long embedded = modelCalls.get();
+
+            recordVectorIds(segments, embeddingService.replaceIndex(embeddings, segments));
+
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            LOG.infof("Rebuilt the vector index at dimension %d: %d requirements, %d chunks, %d embedded by the "
+                    + "model, in %d ms", embeddingService.dimension(), ids.size(), segments.size(), embedded, millis);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("dimension", embeddingService.dimension());
+            result.put("requirements", ids.size());
+            result.put("chunks", segments.size());
+            result.put("fromCache", segments.size() - embedded);
+            result.put("embedded", embedded);
+            result.put("millis", millis);
+            return result;
+        } finally {
+            embeddingService.indexLock().writeLock().unlock();
+        }
+    }
+
+    /**
+     * Brings the HNSW stores in line with the requirement chunks in Redis. A vector is kept when a chunk with
+     * its requirement, index, tenant, kind and content hash is stored; the other vectors are removed, and the
+     * chunks left without a vector are embedded and added. Only the content of those chunks is read.
+     */
+    public Map<String, Object> reconcile() {
+        long start = System.nanoTime();
+        embeddingService.indexLock().writeLock().lock();
+        try {
+            List<String> ids = scanIds();
+            Map<String, StoredChunk> stored = readChunkHashes(ids);
+            Set<String> tenants = new HashSet<>();
+            for (StoredChunk chunk : stored.values()) {
+                tenants.add(chunk.tenant);
+            }
+
+            Map<String, TextSegment> local = embeddingService.localSegments(tenants);
+            List<String> stale = new ArrayList<>();
+            Set<String> current = new HashSet<>();
+            for (Map.Entry<String, TextSegment> vector : local.entrySet()) {
+                TextSegment segment = vector.getValue();
+                String key = segment == null ? null : segment.metadata().getString("requirementId") + ":"
+                        + segment.metadata().getString("chunkIndex");
+                StoredChunk chunk = key == null ? null : stored.get(key);
+                if (chunk != null && chunk.hash != null && chunk.hash.equals(ContentHash.sha256(segment.text()))
+                        && chunk.tenant.equals(segment.metadata().getString("tenant"))
+                        && Objects.equals(chunk.type, segment.metadata().getString("metadata")) && current.add(key)) {
+                    continue;
+                }
+                stale.add(vector.getKey());
+            }
+
+            List<StoredChunk> missing = new ArrayList<>();
+            for (Map.Entry<String, StoredChunk> chunk : stored.entrySet()) {
+                if (!current.contains(chunk.getKey())) {
+                    missing.add(chunk.getValue());
+                }
+            }
+            List<TextSegment> segments = readSegments(missing);
+
+            AtomicLong modelCalls = new AtomicLong();
+            List<Embedding> embeddings = embed(segments, modelCalls);
+            long embedded = modelCalls.get();
+            embeddingService.updateLocal(stale, embeddings, segments);
+
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            LOG.infof("Reconciled the HNSW vector store with Redis: %d requirements, %d chunks current, %d added "
+                    + "(%d embedded by the model), %d stale vectors removed, in %d ms", ids.size(), current.size(),
+                    segments.size(), embedded, stale.size(), millis);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("requirements", ids.size());
+            result.put("current", current.size());
+            result.put("added", segments.size());
+            result.put("embedded", embedded);
+            result.put("removed", stale.size());
+            result.put("millis", millis);
+            return result;
+        } finally {
+            embeddingService.indexLock().writeLock().unlock();
+        }
+    }
+
+    private List<Embedding> embed(List<TextSegment> segments, AtomicLong modelCalls) {
+        List<Embedding> embeddings = new ArrayList<>(segments.size());
+        for (int from = 0; from < segments.size(); from += embeddingBatchSize) {
+            List<TextSegment> batch = segments.subList(from, Math.min(from + embeddingBatchSize, segments.size()));
+            embeddings.addAll(EmbeddingService.truncateAll(embeddingCache.embedAll(batch, modelCalls),
+                    embeddingService.dimension()));
+        }
+        return embeddings;
+    }
+
+    private List<String> scanIds() {
+        List<String> ids = new ArrayList<>();
+        KeyScanCursor<String> cursor = redisDataSource.key()
+                .scan(new KeyScanArgs().match(KEY_PREFIX + "*" + META_SUFFIX).count(1000));
+        while (cursor.hasNext()) {
+            for (String key : cursor.next()) {
+                ids.add(key.substring(KEY_PREFIX.length(), key.length() - META_SUFFIX.length()));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Reads the content hash of every chunk of the given requirements, with the kind and tenant of its
+     * requirement, keyed by requirement id and chunk index: the meta hashes in one pipeline, then the chunks.
+     */
+    private Map<String, StoredChunk> readChunkHashes(List<String> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        List<Response> metaReplies = redis.batchAndAwait(metaReads(ids));
+
+        List<StoredChunk> chunks = new ArrayList<>();
+        List<Request> reads = new ArrayList<>();
+        for (int r = 0; r < ids.size(); r++) {
+            Response count = metaReplies.get(r).get(0);
+            Response type = metaReplies.get(r).get(1);
+            Response tenant = metaReplies.get(r).get(2);
+            for (int i = 0; i < (count == null ? 0 : count.toInteger()); i++) {
+                chunks.add(new StoredChunk(ids.get(r), i, type == null ? null : type.toString(),
+                        tenant == null ? embeddingService.defaultTenant() : tenant.toString()));
+                reads.add(Request.cmd(Command.HGET).arg(chunkKey(ids.get(r), i)).arg("contentHash"));
+            }
+        }
+        List<Response> hashes = reads.isEmpty() ? List.of() : redis.batchAndAwait(reads);
+
+        Map<String, StoredChunk> byKey = new HashMap<>(chunks.size() * 2);
+        for (int c = 0; c < chunks.size(); c++) {
+            StoredChunk chunk = chunks.get(c);
+            // Chunks stored before hashes were recorded are re-embedded, mostly from the embedding cache
+            chunk.hash = hashes.get(c) == null ? null : hashes.get(c).toString();
+            byKey.put(chunk.requirementId + ":" + chunk.index, chunk);
+        }
+        return byKey;
+    }
+
+    private List<TextSegment> readSegments(List<StoredChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return List.of();
+        }
+        List<Request> reads = new ArrayList<>(chunks.size());
+        for (StoredChunk chunk : chunks) {
+            reads.add(Request.cmd(Command.HGET).arg(chunkKey(chunk.requirementId, chunk.index)).arg("content"));
+        }
+        List<Response> contents = redis.batchAndAwait(reads);
+        List<TextSegment> segments = new ArrayList<>(chunks.size());
+        for (int c = 0; c < chunks.size(); c++) {
+            StoredChunk chunk = chunks.get(c);
+            if (contents.get(c) != null) {
+                segments.add(EmbeddingService.chunkSegment(chunk.requirementId, chunk.index,
+                        contents.get(c).toString(), chunk.type, chunk.tenant));
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Writes the new vector id and the content hash of every chunk into its hash, so updates can tell which
+     * vectors to keep. Ids of a node-local store are this node's alone, so there only the content hash is written
+     * and an id recorded before is dropped.
+     */
+    private void recordVectorIds(List<TextSegment> segments, List<String> vectorIds) {
+        boolean nodeLocal = embeddingService.isNodeLocal();
+        List<Request> writes = new ArrayList<>(segments.size() * (nodeLocal ? 2 : 1));
+        for (int i = 0; i < segments.size(); i++) {
+            TextSegment segment = segments.get(i);
+            String chunkKey = chunkKey(segment.metadata().getString("requirementId"),
+                    Integer.parseInt(segment.metadata().getString("chunkIndex")));
+            Request write = Request.cmd(Command.HSET).arg(chunkKey)
+                    .arg("contentHash").arg(ContentHash.sha256(segment.text()));
+            if (nodeLocal) {
+                writes.add(write);
+                writes.add(Request.cmd(Command.HDEL).arg(chunkKey).arg("vectorId"));
+            } else {
+                writes.add(write.arg("vectorId").arg(vectorIds.get(i)));
+            }
+        }
+        for (int from = 0; from < writes.size(); from += 1000) {
+            redis.batchAndAwait(writes.subList(from, Math.min(from + 1000, writes.size())));
+        }
+    }
+
+    /**
+     * Reads the chunk segments of the given requirements in two pipelines: chunk count, metadata and tenant from
+     * the meta hashes, then every chunk's content.
+     */
+    private List<TextSegment> readChunks(List<String> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        List<Response> metaReplies = redis.batchAndAwait(metaReads(ids));
+
+        List<Request> reads = new ArrayList<>();
+        for (int r = 0; r < ids.size(); r++) {
+            Response count = metaReplies.get(r).get(0);
+            for (int i = 0; i < (count == null ? 0 : count.toInteger()); i++) {
+                reads.add(Request.cmd(Command.HGET).arg(chunkKey(ids.get(r), i)).arg("content"));
+            }
+        }
+        List<Response> chunks = reads.isEmpty() ? List.of() : redis.batchAndAwait(reads);
+
+        List<TextSegment> segments = new ArrayList<>(chunks.size());
+        int next = 0;
+        for (int r = 0; r < ids.size(); r++) {
+            Response count = metaReplies.get(r).get(0);
+            Response metadata = metaReplies.get(r).get(1);
+            // Requirements stored before tenants existed belong to the default tenant
+            Response tenant = metaReplies.get(r).get(2);
+            for (int i = 0; i < (count == null ? 0 : count.toInteger()); i++) {
+                Response chunk = chunks.get(next++);
+                if (chunk != null) {
+                    segments.add(EmbeddingService.chunkSegment(ids.get(r), i, chunk.toString(),
+                            metadata == null ? null : metadata.toString(),
+                            tenant == null ? embeddingService.defaultTenant() : tenant.toString()));
+                }
+            }
+        }
+        return segments;
+    }
+
+    private static List<Request> metaReads(List<String> ids) {
+        List<Request> metas = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            metas.add(Request.cmd(Command.HMGET).arg(KEY_PREFIX + id + META_SUFFIX)
+                    .arg("chunkCount").arg("metadata").arg("tenant"));
+        }
+        return metas;
+    }
+
+    private static String chunkKey(String requirementId, int index) {
+        return KEY_PREFIX + requirementId + ":chunk:" + index;
+    }
+
+    private static final class StoredChunk {
+        private final String requirementId;
+        private final int index;
+        private final String type;
+        private final String tenant;
+        private String hash;
+
+        private StoredChunk(String requirementId, int index, String type, String tenant) {
+            this.requirementId = requirementId;
+            this.index = index;
+            this.type = type;
+            this.tenant = tenant;
+        }
+    }
+}
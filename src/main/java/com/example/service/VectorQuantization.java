@@ -0,0 +1,9 @@
+package com.example.service;
+
+/**
+ * Encoding of the vectors an {@link HnswEmbeddingStore} searches its graph with. {@code INT8} keeps one byte per
+ * dimension, {@code BINARY} one bit; both re-rank their candidates with full-precision vectors kept off-heap.
+ */
+public enum VectorQuantization {
+    NONE, INT8, BINARY
+}
@@ -0,0 +1,84 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Bm25IndexTest {
+
+    private final Bm25Index index = new Bm25Index(new IdentifierTokenizer(true), 1.2, 0.75);
+
+    @Test
+    void ranksRareTermsAboveCommonOnes() {
+        index.put("R1", null, null, List.of("The order service places an order for the customer"));
+        index.put("R2", null, null, List.of("The customer can view the invoice"));
+        index.put("R3", null, null, List.of("The customer can update the profile"));
+
+        List<Bm25Index.Hit> hits = index.search("customer invoice", 10);
+
+        assertEquals("R2", hits.get(0).chunk.requirementId);
+        assertEquals(3, hits.size());
+        assertTrue(hits.get(0).score > hits.get(1).score);
+    }
+
+    @Test
+    void prefersTheShorterChunkForTheSameMatch() {
+        index.put("SHORT", null, null, List.of("refund payment"));
+        index.put("LONG", null, null, List.of("refund payment once the warehouse confirms the parcel was returned intact"));
+
+        List<Bm25Index.Hit> hits = index.search("refund", 10);
+
+        assertEquals(List.of("SHORT", "LONG"), ids(hits));
+    }
+
+    @Test
+    void matchesIdentifierPartsAgainstRequirementWords() {
+        index.put("R1", null, null, List.of("Place an order"));
+        index.put("R2", null, null, List.of("Cancel a subscription"));
+
+        List<Bm25Index.Hit> hits = index.search("void placeOrder(Cart cart)", 10);
+
+        assertEquals(List.of("R1"), ids(hits));
+    }
+
+    @Test
+    void appliesTheFilterBeforeRanking() {
+        index.put("A", "acme", "functional", List.of("export report as csv"));
+        index.put("B", "globex", "functional", List.of("export report as csv"));
+        index.put("C", "acme", "security", List.of("export report as csv file"));
+
+        List<Bm25Index.Hit> hits = index.search("export csv", 1, chunk -> "acme".equals(chunk.tenant)
+                && "security".equals(chunk.type));
+
+        assertEquals(List.of("C"), ids(hits));
+    }
+
+    @Test
+    void putReplacesAndRemoveDropsARequirement() {
+        index.put("R1", null, null, List.of("login with password"));
+        index.put("R1", null, null, List.of("login with single sign on"));
+        index.put("R2", null, null, List.of("reset password"));
+
+        assertEquals(List.of("R2"), ids(index.search("password", 10)));
+
+        index.remove("R2");
+        assertTrue(index.search("password", 10).isEmpty());
+        assertEquals(List.of("R1"), ids(index.search("login", 10)));
+    }
+
+    @Test
+    void limitsTheNumberOfHits() {
+        for (int i = 0; i < 5; i++) {
+            index.put("R" + i, null, null, List.of("audit log entry " + i));
+        }
+
+        assertEquals(2, index.search("audit", 2).size());
+    }
+
+    private static List<String> ids(List<Bm25Index.Hit> hits) {
+        return hits.stream().map(hit -> hit.chunk.requirementId).toList();
+    }
+}
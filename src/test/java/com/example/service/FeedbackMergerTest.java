@@ -0,0 +1,32 @@
+package com.example.service;
+
+import com.example.dto.FeedbackResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FeedbackMergerTest {
+
+    @Test
+    void keepsTheMissesOfEveryUnitWithoutDuplicates() {
+        FeedbackResponse first = review(8, "No refund path", "Discount codes are not validated");
+        FeedbackResponse second = review(6, "Discount codes are not validated.", "No audit log");
+        FeedbackResponse third = review(7);
+        third.setRequirementMiss(null);
+
+        FeedbackResponse merged = FeedbackMerger.mergeUnits(List.of(first, second, third), List.of(100, 100, 200));
+
+        assertEquals(List.of("No refund path", "Discount codes are not validated", "No audit log"),
+                merged.getRequirementMiss());
+        assertEquals(7.0, merged.getAlignmentScore());
+    }
+
+    private static FeedbackResponse review(double score, String... misses) {
+        FeedbackResponse review = new FeedbackResponse();
+        review.setAlignmentScore(score);
+        review.setRequirementMiss(List.of(misses));
+        return review;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Float16VectorFileTest {
+
+    private static final int DIMENSION = 64;
+
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(3);
+
+    @Test
+    void encodesAndDecodesWithinHalfPrecision() throws IOException {
+        float[][] vectors = new float[20][];
+        try (Float16VectorFile file = new Float16VectorFile(dir.resolve("test.rerank"), DIMENSION)) {
+            for (int node = 0; node < vectors.length; node++) {
+                vectors[node] = randomUnitVector();
+                file.put(node, vectors[node]);
+            }
+            for (int node = 0; node < vectors.length; node++) {
+                float[] decoded = file.get(node);
+                for (int i = 0; i < DIMENSION; i++) {
+                    // 11 significant bits: a relative error of at most 2^-11, plus subnormal steps near zero
+                    assertEquals(vectors[node][i], decoded[i], Math.abs(vectors[node][i]) / 2048 + 1e-7);
+                }
+            }
+        }
+    }
+
+    @Test
+    void dotMatchesTheFullPrecisionInnerProduct() throws IOException {
+        try (Float16VectorFile file = new Float16VectorFile(dir.resolve("test.rerank"), DIMENSION)) {
+            float[] stored = randomUnitVector();
+            file.put(0, stored);
+            float[] query = randomUnitVector();
+
+            double exact = 0;
+            for (int i = 0; i < DIMENSION; i++) {
+                exact += query[i] * stored[i];
+            }
+            assertEquals(exact, file.dot(query, 0), 1e-3);
+            assertEquals(1.0, file.dot(stored, 0), 1e-3);
+        }
+    }
+
+    @Test
+    void keepsVectorsAcrossReopening() throws IOException {
+        Path path = dir.resolve("test.rerank");
+        float[] vector = randomUnitVector();
+        try (Float16VectorFile file = new Float16VectorFile(path, DIMENSION)) {
+            file.put(7, vector);
+        }
+        try (Float16VectorFile file = new Float16VectorFile(path, DIMENSION)) {
+            assertTrue(file.capacity() >= 8);
+            float[] decoded = file.get(7);
+            for (int i = 0; i < DIMENSION; i++) {
+                assertEquals(vector[i], decoded[i], Math.abs(vector[i]) / 2048 + 1e-7);
+            }
+        }
+    }
+
+    @Test
+    void encodesRedisQueryVectorsAsTheIndexType() {
+        float[] vector = {1.0f, -0.5f, 0.1f, 3.14159f};
+
+        ByteBuffer float16 = ByteBuffer.wrap(RedisVectorType.FLOAT16.encode(vector)).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer bfloat16 = ByteBuffer.wrap(RedisVectorType.BFLOAT16.encode(vector)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(vector.length * Float.BYTES, RedisVectorType.FLOAT32.encode(vector).length);
+        for (float value : vector) {
+            assertEquals(value, Float.float16ToFloat(float16.getShort()), Math.abs(value) / 2048);
+            // bfloat16 keeps 8 significant bits
+            assertEquals(value, Float.intBitsToFloat(bfloat16.getShort() << 16), Math.abs(value) / 256);
+        }
+    }
+
+    private float[] randomUnitVector() {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+}
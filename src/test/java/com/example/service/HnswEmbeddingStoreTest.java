@@ -0,0 +1,250 @@
+package com.example.service;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswEmbeddingStoreTest {
+
+    private static final int DIMENSION = 32;
+    private static final int VECTORS = 2000;
+    private static final int QUERIES = 50;
+    private static final int K = 10;
+
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(7);
+    private final Map<String, float[]> vectors = new LinkedHashMap<>();
+    private HnswEmbeddingStore store;
+
+    @AfterEach
+    void close() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void recallMatchesBruteForce() {
+        store = open(VectorQuantization.NONE, 1.0);
+        addRandom(VECTORS);
+
+        assertTrue(recall() >= 0.95, "recall " + recall());
+    }
+
+    @Test
+    void recallHoldsAfterDeletesAndNeverReturnsDeleted() throws IOException {
+        store = open(VectorQuantization.NONE, 1.0);
+        addRandom(VECTORS);
+        List<String> removed = removeRandom(VECTORS / 3);
+
+        assertTrue(recall() >= 0.95, "recall " + recall());
+        assertNoneReturned(removed);
+        assertFalse(store.compact(), "below the compaction ratio");
+    }
+
+    @Test
+    void compactionDropsTombstonesAndKeepsRecall() throws IOException {
+        store = open(VectorQuantization.NONE, 0.2);
+        addRandom(VECTORS);
+        List<String> removed = removeRandom(VECTORS / 2);
+
+        assertTrue(store.compact());
+        assertEquals(VECTORS / 2, store.getStats().get("vectors"));
+        assertEquals(0, store.getStats().get("deleted"));
+        assertEquals(vectors.keySet(), store.liveSegments().keySet());
+        assertTrue(recall() >= 0.95, "recall " + recall());
+        assertNoneReturned(removed);
+    }
+
+    @Test
+    void quantizedStoreRecallsThroughReRankingAfterCompaction() throws IOException {
+        store = open(VectorQuantization.INT8, 0.2);
+        addRandom(VECTORS);
+        removeRandom(VECTORS / 2);
+        assertTrue(store.compact());
+
+        assertTrue(recall() >= 0.9, "recall " + recall());
+    }
+
+    @Test
+    void reopensFromSnapshot() throws IOException {
+        store = open(VectorQuantization.INT8, 0.2);
+        addRandom(500);
+        removeRandom(100);
+        store.close();
+
+        store = open(VectorQuantization.INT8, 0.2);
+        assertFalse(store.isSnapshotDiscarded());
+        assertEquals(vectors.keySet(), store.liveSegments().keySet());
+        assertTrue(recall() >= 0.9, "recall " + recall());
+    }
+
+    @Test
+    void discardsASnapshotThatDoesNotMatchInsteadOfFailing() throws IOException {
+        store = open(VectorQuantization.NONE, 0.2);
+        addRandom(100);
+        store.close();
+
+        // Another quantization than the snapshot was written with
+        store = open(VectorQuantization.BINARY, 0.2);
+        assertTrue(store.isSnapshotDiscarded());
+        assertTrue(store.liveSegments().isEmpty());
+        store.close();
+
+        Path graph = dir.resolve("test.hnsw");
+        byte[] truncated = Files.readAllBytes(graph);
+        Files.write(graph, Arrays.copyOf(truncated, truncated.length / 2));
+        store = open(VectorQuantization.BINARY, 0.2);
+        assertTrue(store.isSnapshotDiscarded());
+    }
+
+    @Test
+    void removeAllDropsTheSnapshotAndReRankFiles() throws IOException {
+        store = open(VectorQuantization.INT8, 0.2);
+        addRandom(200);
+        store.snapshot();
+        Path rerank = dir.resolve("test.hnsw.rerank");
+        long before = Files.size(rerank);
+
+        store.removeAll();
+        vectors.clear();
+        assertFalse(Files.exists(dir.resolve("test.hnsw")));
+        assertTrue(Files.size(rerank) < before);
+
+        addRandom(100);
+        assertTrue(recall() >= 0.9, "recall " + recall());
+        store.close();
+        store = open(VectorQuantization.INT8, 0.2);
+        assertFalse(store.isSnapshotDiscarded());
+        assertEquals(vectors.keySet(), store.liveSegments().keySet());
+    }
+
+    @Test
+    void findSegmentsReturnsOnlyLiveMatchingEntries() {
+        store = open(VectorQuantization.NONE, 0.2);
+        addRandom(50);
+        String removed = store.findIds(metadata -> "R7".equals(((Metadata) metadata).getString("requirementId"))).get(0);
+        addRandom(1);
+        store.remove(removed);
+
+        Map<String, TextSegment> found = store.findSegments(
+                metadata -> "R0".equals(((Metadata) metadata).getString("requirementId")));
+        assertEquals(2, found.size());
+        found.values().forEach(segment -> assertEquals("chunk 0", segment.text()));
+        assertTrue(store.findSegments(
+                metadata -> "R7".equals(((Metadata) metadata).getString("requirementId"))).isEmpty());
+    }
+
+    private HnswEmbeddingStore open(VectorQuantization quantization, double compactRatio) {
+        return HnswEmbeddingStore.open(dir.resolve("test.hnsw"), DIMENSION, 16, 100, 64, quantization, 0,
+                compactRatio, Duration.ofHours(1));
+    }
+
+    private void addRandom(int count) {
+        List<Embedding> embeddings = new ArrayList<>(count);
+        List<TextSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = randomUnitVector();
+            embeddings.add(Embedding.from(vector));
+            segments.add(TextSegment.from("chunk " + i, Metadata.from("requirementId", "R" + i)));
+        }
+        List<String> ids = store.addAll(embeddings, segments);
+        for (int i = 0; i < count; i++) {
+            vectors.put(ids.get(i), embeddings.get(i).vector());
+        }
+    }
+
+    private List<String> removeRandom(int count) {
+        List<String> ids = new ArrayList<>(vectors.keySet());
+        Collections.shuffle(ids, random);
+        List<String> removed = ids.subList(0, count);
+        store.removeAll(removed);
+        removed.forEach(vectors::remove);
+        return removed;
+    }
+
+    /**
+     * Fraction of the exact top K, by brute force over the live vectors, that the store returns.
+     */
+    private double recall() {
+        int found = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = randomUnitVector();
+            Set<String> exact = new HashSet<>();
+            vectors.entrySet().stream()
+                    .sorted(Comparator.comparingDouble((Map.Entry<String, float[]> e) -> -dot(query, e.getValue())))
+                    .limit(K)
+                    .forEach(e -> exact.add(e.getKey()));
+            for (EmbeddingMatch<TextSegment> match : search(query, K)) {
+                if (exact.contains(match.embeddingId())) {
+                    found++;
+                }
+            }
+        }
+        return (double) found / (QUERIES * K);
+    }
+
+    private void assertNoneReturned(List<String> removed) {
+        Set<String> gone = new HashSet<>(removed);
+        for (int q = 0; q < QUERIES; q++) {
+            for (EmbeddingMatch<TextSegment> match : search(randomUnitVector(), K)) {
+                assertFalse(gone.contains(match.embeddingId()), "returned removed " + match.embeddingId());
+            }
+        }
+    }
+
+    private List<EmbeddingMatch<TextSegment>> search(float[] query, int k) {
+        return store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(query))
+                .maxResults(k)
+                .minScore(0.0)
+                .build()).matches();
+    }
+
+    private float[] randomUnitVector() {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JavaSourceTest {
+
+    private static final String CODE = """
+            package shop;
+
+            import java.util.List;
+
+            public class Cart {
+                private final List<String> items = new java.util.ArrayList<>();
+
+                public void add(String item) {
+                    items.add(item);
+                }
+
+                public int size() {
+                    return items.size();
+                }
+            }
+            """;
+
+    @Test
+    void splitsAlongTheOutlineOfTheParsedUnit() {
+        List<String> units = JavaSource.splitUnits(CODE, JavaSource.outline(JavaSource.parse(CODE)), 60);
+
+        assertEquals(3, units.size());
+        for (String unit : units) {
+            assertTrue(unit.startsWith("package shop;"), unit);
+            assertTrue(unit.contains("public class Cart {"), unit);
+        }
+        assertTrue(units.get(1).contains("void add(String item)"));
+        assertTrue(units.get(1).contains("reviewed separately: items, size()"), units.get(1));
+    }
+
+    @Test
+    void keepsCodeThatFitsInOneUnitWhole() {
+        assertEquals(List.of(CODE), JavaSource.splitUnits(CODE, JavaSource.outline(JavaSource.parse(CODE)), 10_000));
+    }
+
+    @Test
+    void javaAnalyzerKeepsTheOutlineThroughCopies() {
+        JavaLanguageAnalyzer analyzer = new JavaLanguageAnalyzer();
+
+        assertTrue(analyzer.analyze("java", CODE).copy() instanceof JavaStructuralSummary summary
+                && JavaSource.splitUnits(CODE, summary.outline(), 60).size() == 3);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QuantizedVectorsTest {
+
+    private static final int DIMENSION = 100;
+    private static final int COUNT = 50;
+
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(11);
+
+    @Test
+    void int8RoundTripsWithinHalfAStep() {
+        QuantizedVectors vectors = QuantizedVectors.create(VectorQuantization.INT8, DIMENSION, 1);
+        for (int node = 0; node < COUNT; node++) {
+            float[] unit = randomUnitVector();
+            vectors.ensureCapacity(node + 1);
+            vectors.set(node, unit);
+
+            float step = maxAbs(unit) / 127f;
+            float[] decoded = vectors.decode(node);
+            for (int i = 0; i < DIMENSION; i++) {
+                assertEquals(unit[i], decoded[i], step / 2 + 1e-6f);
+            }
+            assertEquals(1.0, vectors.similarity(vectors.encodeQuery(unit), node), 0.01);
+        }
+    }
+
+    @Test
+    void int8SimilarityApproximatesTheInnerProduct() {
+        QuantizedVectors vectors = QuantizedVectors.create(VectorQuantization.INT8, DIMENSION, COUNT);
+        float[][] stored = fill(vectors);
+        float[] query = randomUnitVector();
+        Object encoded = vectors.encodeQuery(query);
+        for (int node = 0; node < COUNT; node++) {
+            assertEquals(dot(query, stored[node]), vectors.similarity(encoded, node), 0.01);
+        }
+    }
+
+    @Test
+    void binaryKeepsTheSignsAndMapsHammingDistanceToCosine() {
+        QuantizedVectors vectors = QuantizedVectors.create(VectorQuantization.BINARY, DIMENSION, COUNT);
+        float[][] stored = fill(vectors);
+        for (int node = 0; node < COUNT; node++) {
+            float[] decoded = vectors.decode(node);
+            for (int i = 0; i < DIMENSION; i++) {
+                assertEquals(stored[node][i] >= 0, decoded[i] > 0, "sign of " + i);
+            }
+            assertEquals(1.0, vectors.similarity(vectors.encodeQuery(stored[node]), node), 1e-6);
+            assertEquals(-1.0, vectors.similarity(vectors.encodeQuery(negate(stored[node])), node), 1e-6);
+        }
+
+        int differing = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            if ((stored[0][i] >= 0) != (stored[1][i] >= 0)) {
+                differing++;
+            }
+        }
+        assertEquals(Math.cos(Math.PI * differing / DIMENSION), vectors.similarity(0, 1), 1e-6);
+    }
+
+    @ParameterizedTest
+    @EnumSource(VectorQuantization.class)
+    void writesAndReadsBackTheSameVectors(VectorQuantization quantization) throws IOException {
+        QuantizedVectors vectors = QuantizedVectors.create(quantization, DIMENSION, COUNT);
+        fill(vectors);
+        Path file = dir.resolve(quantization + ".vectors");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeLong(0); // a header, so the vectors start at an offset as in a snapshot
+            vectors.write(out, COUNT);
+        }
+
+        QuantizedVectors read = QuantizedVectors.create(quantization, DIMENSION, COUNT);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            read.read(channel, Long.BYTES, COUNT);
+        }
+        for (int node = 0; node < COUNT; node++) {
+            assertArrayEquals(vectors.decode(node), read.decode(node));
+        }
+    }
+
+    private float[][] fill(QuantizedVectors vectors) {
+        float[][] stored = new float[COUNT][];
+        for (int node = 0; node < COUNT; node++) {
+            stored[node] = randomUnitVector();
+            vectors.set(node, stored[node]);
+        }
+        return stored;
+    }
+
+    private float[] randomUnitVector() {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    private static float[] negate(float[] vector) {
+        float[] negated = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            negated[i] = -vector[i];
+        }
+        return negated;
+    }
+
+    private static float maxAbs(float[] vector) {
+        float max = 0;
+        for (float value : vector) {
+            max = Math.max(max, Math.abs(value));
+        }
+        return max;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RedisVectorIndexTest {
+
+    @Test
+    void parsesTheDocumentVectorWithOrWithoutTheJsonPathWrapper() {
+        float[] expected = {0.25f, -1.5f, 3e-4f};
+
+        assertArrayEquals(expected, RedisVectorIndex.parseVector("[0.25,-1.5,3.0E-4]"));
+        assertArrayEquals(expected, RedisVectorIndex.parseVector("[[0.25, -1.5, 0.0003]]"));
+        assertNull(RedisVectorIndex.parseVector(null));
+        assertNull(RedisVectorIndex.parseVector("[0.25,\"x\"]"));
+    }
+
+    @Test
+    void reportsIndexMemoryPerChunkFromFtInfo() {
+        RedisVectorIndex index = new RedisVectorIndex(null, "requirements", "requirements:vector:");
+        String info = "{index_name=requirements, num_docs=2048, max_doc_id=2100, vector_index_sz_mb=3.5, "
+                + "attributes=[[identifier, $.vector, attribute, vector, type, VECTOR, data_type, FLOAT16, dim, 384]]}";
+
+        Map<String, Object> stats = index.getStats(info);
+
+        assertEquals(2048L, stats.get("chunks"));
+        assertEquals(3_670_016L, stats.get("vectorIndexBytes"));
+        assertEquals(1792L, stats.get("vectorIndexBytesPerChunk"));
+        assertEquals(0L, stats.get("reRankedSearches"));
+        assertNull(stats.get("reRankRecall"));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.service;
+
+import com.example.dto.RequirementMatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequirementSearchServiceTest {
+
+    private final Bm25Index index = new Bm25Index(new IdentifierTokenizer(true), 1.2, 0.75);
+
+    @Test
+    void fusesBothRankingsWithTheTopOfBothScoringOne() {
+        index.put("R1", null, null, List.of("apply discount code at checkout"));
+        index.put("R2", null, null, List.of("print shipping label"));
+        List<RequirementMatch> vector = List.of(new RequirementMatch("R1", 0.8, 0.8, 2, "apply discount"));
+
+        List<RequirementMatch> fused = RequirementSearchService.fuse(vector, index.search("discount code", 10), 60, 0);
+
+        assertEquals("R1", fused.get(0).getRequirementId());
+        assertEquals(1.0, fused.get(0).getScore(), 1e-9);
+    }
+
+    @Test
+    void dropsWeakLexicalOnlyMatches() {
+        index.put("R1", null, null, List.of("apply discount code at checkout"));
+        index.put("R2", null, null, List.of("print shipping label"));
+        index.put("R3", null, null, List.of("cancel order"));
+        List<Bm25Index.Hit> hits = index.search("discount", 10);
+        double score = hits.get(0).score;
+
+        assertEquals(List.of("R1"), ids(RequirementSearchService.fuse(List.of(), hits, 60, score)));
+        assertTrue(RequirementSearchService.fuse(List.of(), hits, 60, score + 0.01).isEmpty());
+    }
+
+    @Test
+    void keepsVectorMatchesWhateverTheirLexicalScore() {
+        index.put("R1", null, null, List.of("apply discount code at checkout"));
+        index.put("R2", null, null, List.of("print shipping label"));
+        List<RequirementMatch> vector = List.of(new RequirementMatch("R2", 0.7, 0.7, 1, "print shipping label"));
+
+        List<RequirementMatch> fused = RequirementSearchService.fuse(vector, index.search("label discount", 10), 60, 100);
+
+        assertEquals(List.of("R2"), ids(fused));
+        assertTrue(fused.get(0).getLexicalScore() > 0);
+    }
+
+    private static List<String> ids(List<RequirementMatch> matches) {
+        return matches.stream().map(RequirementMatch::getRequirementId).toList();
+    }
+}
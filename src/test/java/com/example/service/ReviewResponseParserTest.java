@@ -0,0 +1,150 @@
+package com.example.service;
+
+import com.example.dto.FeedbackResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReviewResponseParserTest {
+
+    private static final String REVIEW = """
+            {
+              "alignmentScore": 8.5,
+              "requirementMiss": ["No refund path"],
+              "edgeCases": ["Empty cart", "Negative quantity"],
+              "codeFeedback": {
+                "quality": "Readable",
+                "optimizations": ["Cache the tax table"],
+                "standards": "Follows the style guide"
+              },
+              "warnings": ["Prices use double"]
+            }""";
+
+    private ReviewResponseParser parser;
+
+    @BeforeEach
+    void setUp() {
+        parser = new ReviewResponseParser();
+        parser.objectMapper = new ObjectMapper();
+        parser.initReader();
+    }
+
+    @Test
+    void bindsJsonInsideAMarkdownFence() {
+        FeedbackResponse response = parser.parse("Here is my review:\n```json\n" + REVIEW + "\n```\nHope it helps.");
+
+        assertReview(response);
+        assertEquals(0L, parser.getStats().get("sectionFallbacks"));
+    }
+
+    @Test
+    void skipsBracesInProseBeforeTheObject() {
+        assertReview(parser.parse("The loop `if (x) { y(); }` is fine.\n" + REVIEW));
+        assertReview(parser.parse("Calls {@code run} twice; see {@link Cart}.\n\n" + REVIEW));
+        assertReview(parser.parse("A map literal {a: 1} is not the review.\n" + REVIEW));
+    }
+
+    @Test
+    void closesATruncatedObject() {
+        // Cut off inside a string inside an array
+        String truncated = REVIEW.substring(0, REVIEW.indexOf("Negative") + "Neg".length());
+
+        FeedbackResponse response = parser.parse(truncated);
+
+        assertEquals(8.5, response.getAlignmentScore());
+        assertEquals(List.of("No refund path"), response.getRequirementMiss());
+        assertEquals(List.of("Empty cart", "Neg"), response.getEdgeCases());
+        assertEquals(1L, parser.getStats().get("repaired"));
+    }
+
+    @Test
+    void acceptsTrailingCommasSingleQuotesAndComments() {
+        FeedbackResponse response = parser.parse("""
+                {
+                  // score first
+                  alignmentScore: 7,
+                  'requirementMiss': ['No audit log',],
+                  "warnings": [],
+                }""");
+
+        assertEquals(7.0, response.getAlignmentScore());
+        assertEquals(List.of("No audit log"), response.getRequirementMiss());
+        assertTrue(response.getWarnings().isEmpty());
+    }
+
+    @Test
+    void fallsBackToSectionHeadersWithoutJson() {
+        FeedbackResponse response = parser.parse("""
+                **Alignment Score (0-10):** 6
+                Requirement Misses:
+                - No refund path
+                - No audit log
+                Edge Cases:
+                1. Empty cart
+                Code Feedback
+                Quality: Readable but long
+                Optimizations:
+                - Cache the tax table
+                Warnings: none
+                """);
+
+        assertEquals(6.0, response.getAlignmentScore());
+        assertEquals(List.of("No refund path", "No audit log"), response.getRequirementMiss());
+        assertEquals(List.of("Empty cart"), response.getEdgeCases());
+        assertEquals("Readable but long", response.getCodeFeedback().getQuality());
+        assertEquals(List.of("Cache the tax table"), response.getCodeFeedback().getOptimizations());
+        assertEquals(List.of("none"), response.getWarnings());
+        assertEquals(1L, parser.getStats().get("sectionFallbacks"));
+    }
+
+    @Test
+    void fallsBackWhenNoObjectCarriesAReviewField() {
+        FeedbackResponse response = parser.parse("Use {\"retries\": 3} in the config.\nAlignment Score: 4");
+
+        assertEquals(4.0, response.getAlignmentScore());
+        assertNull(response.getRequirementMiss());
+    }
+
+    /**
+     * Throughput over a mix of the output shapes above; the floor is far below what the single-pass parser
+     * reaches, so only a regression to per-line regexes or repeated scans fails it.
+     */
+    @Test
+    void parsesSampleOutputsAtSeveralMegabytesPerSecond() {
+        List<String> samples = List.of(
+                "```json\n" + REVIEW + "\n```",
+                "Note that `if (x) { y(); }` is fine.\n" + REVIEW,
+                REVIEW.substring(0, REVIEW.length() / 2),
+                "Alignment Score: 6\nRequirement Misses:\n- No refund path\nEdge Cases:\n- Empty cart\n"
+                        + "Quality: Readable\nWarnings: none\n".repeat(20));
+        for (int i = 0; i < 2_000; i++) {
+            parser.parse(samples.get(i % samples.size()));
+        }
+
+        long chars = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < 20_000; i++) {
+            String sample = samples.get(i % samples.size());
+            parser.parse(sample);
+            chars += sample.length();
+        }
+        double charsPerSecond = chars * 1e9 / (System.nanoTime() - start);
+
+        assertTrue(charsPerSecond > 2_000_000, "chars/sec " + (long) charsPerSecond);
+    }
+
+    private static void assertReview(FeedbackResponse response) {
+        assertEquals(8.5, response.getAlignmentScore());
+        assertEquals(List.of("No refund path"), response.getRequirementMiss());
+        assertEquals(List.of("Empty cart", "Negative quantity"), response.getEdgeCases());
+        assertEquals("Readable", response.getCodeFeedback().getQuality());
+        assertEquals(List.of("Cache the tax table"), response.getCodeFeedback().getOptimizations());
+        assertEquals(List.of("Prices use double"), response.getWarnings());
+    }
+}